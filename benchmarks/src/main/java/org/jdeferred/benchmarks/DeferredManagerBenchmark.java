@@ -0,0 +1,94 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.benchmarks;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DefaultDeferredManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Round trip of {@link DefaultDeferredManager#when(Callable)}: submission, execution on the
+ * pool, resolution and a callback waking up the caller.
+ *
+ * @author Ray Tsang
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class DeferredManagerBenchmark {
+	private static final Callable<Integer> CALLABLE = new Callable<Integer>() {
+		@Override
+		public Integer call() {
+			return 1;
+		}
+	};
+
+	@Param({ "fixed", "cached" })
+	String pool;
+
+	private ExecutorService executor;
+	private DefaultDeferredManager deferredManager;
+
+	@Setup
+	public void setUp() {
+		executor = "fixed".equals(pool)
+				? Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors())
+				: Executors.newCachedThreadPool();
+		deferredManager = new DefaultDeferredManager(executor);
+	}
+
+	@TearDown
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Benchmark
+	public Promise.State whenCallable() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(1);
+		Promise<Integer, Throwable, Void> promise = deferredManager.when(CALLABLE);
+		promise.always(new AlwaysCallback<Integer, Throwable>() {
+			@Override
+			public void onAlways(Promise.State state, Integer resolved, Throwable rejected) {
+				latch.countDown();
+			}
+		});
+		latch.await();
+		return promise.state();
+	}
+}
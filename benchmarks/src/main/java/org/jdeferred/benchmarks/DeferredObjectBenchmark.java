@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jdeferred.DoneCallback;
+import org.jdeferred.impl.DeferredObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Registering callbacks on a {@link DeferredObject} before and after it settled. Creating
+ * and resolving it without callbacks is measured by {@link DeferredObjectCreationBenchmark}.
+ *
+ * @author Ray Tsang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeferredObjectBenchmark {
+	@Param({ "1", "10" })
+	int callbacks;
+
+	private final Sink sink = new Sink();
+	private DeferredObject<Integer, Void, Void> resolved;
+
+	@Setup
+	public void setUp() {
+		resolved = new DeferredObject<Integer, Void, Void>();
+		resolved.resolve(1);
+	}
+
+	/**
+	 * Registers the callbacks while pending, then resolves.
+	 */
+	@Benchmark
+	public int createAndResolve() {
+		DeferredObject<Integer, Void, Void> deferred = new DeferredObject<Integer, Void, Void>();
+		for (int i = 0; i < callbacks; i++) {
+			deferred.done(sink);
+		}
+		deferred.resolve(1);
+		return sink.sum;
+	}
+
+	/**
+	 * Registers the callbacks on a promise that is already resolved, they run right away.
+	 */
+	@Benchmark
+	public int registerAfterResolve() {
+		for (int i = 0; i < callbacks; i++) {
+			resolved.done(sink);
+		}
+		return sink.sum;
+	}
+
+	static final class Sink implements DoneCallback<Integer> {
+		int sum;
+
+		@Override
+		public void onDone(Integer result) {
+			sum += result;
+		}
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jdeferred.impl.DeferredObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Creating a {@link DeferredObject}, and resolving it without callbacks, the baseline of
+ * {@link DeferredObjectBenchmark}.
+ *
+ * @author Ray Tsang
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeferredObjectCreationBenchmark {
+	@Benchmark
+	public DeferredObject<Integer, Void, Void> create() {
+		return new DeferredObject<Integer, Void, Void>();
+	}
+
+	@Benchmark
+	public DeferredObject<Integer, Void, Void> createAndResolve() {
+		DeferredObject<Integer, Void, Void> deferred = new DeferredObject<Integer, Void, Void>();
+		deferred.resolve(1);
+		return deferred;
+	}
+}
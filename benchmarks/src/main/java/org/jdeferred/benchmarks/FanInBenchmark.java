@@ -0,0 +1,66 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DeferredObject;
+import org.jdeferred.multiple.MasterDeferredObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fan-in of many promises into a {@link MasterDeferredObject}, including the creation
+ * and resolution of the children.
+ *
+ * @author Ray Tsang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FanInBenchmark {
+	@Param({ "10", "100", "1000", "10000", "100000" })
+	int children;
+
+	@Param({ "true", "false" })
+	boolean notifyProgress;
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Benchmark
+	public Promise.State resolveAll() {
+		DeferredObject[] deferreds = new DeferredObject[children];
+		for (int i = 0; i < children; i++) {
+			deferreds[i] = new DeferredObject();
+		}
+		MasterDeferredObject master = new MasterDeferredObject(notifyProgress, deferreds);
+		for (int i = 0; i < children; i++) {
+			deferreds[i].resolve(i);
+		}
+		return master.state();
+	}
+}
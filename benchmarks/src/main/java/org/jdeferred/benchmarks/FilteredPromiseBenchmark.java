@@ -0,0 +1,79 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jdeferred.DoneCallback;
+import org.jdeferred.DoneFilter;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DeferredObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building a chain of <code>then(DoneFilter)</code> stages and resolving its head.
+ *
+ * @author Ray Tsang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilteredPromiseBenchmark {
+	private static final DoneFilter<Integer, Integer> INCREMENT = new DoneFilter<Integer, Integer>() {
+		@Override
+		public Integer filterDone(Integer result) {
+			return result + 1;
+		}
+	};
+
+	@Param({ "1", "4", "16", "64" })
+	int depth;
+
+	private final Sink sink = new Sink();
+
+	@Benchmark
+	public int chainAndResolve() {
+		DeferredObject<Integer, Void, Void> head = new DeferredObject<Integer, Void, Void>();
+		Promise<Integer, Void, Void> tail = head;
+		for (int i = 0; i < depth; i++) {
+			tail = tail.then(INCREMENT);
+		}
+		tail.done(sink);
+		head.resolve(0);
+		return sink.last;
+	}
+
+	static final class Sink implements DoneCallback<Integer> {
+		int last;
+
+		@Override
+		public void onDone(Integer result) {
+			last = result;
+		}
+	}
+}
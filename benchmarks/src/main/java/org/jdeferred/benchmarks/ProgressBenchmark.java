@@ -0,0 +1,75 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jdeferred.ProgressCallback;
+import org.jdeferred.impl.DeferredObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of <code>notify()</code> on a pending {@link DeferredObject}.
+ *
+ * @author Ray Tsang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgressBenchmark {
+	@Param({ "0", "1", "10" })
+	int callbacks;
+
+	private final Sink sink = new Sink();
+	private DeferredObject<Void, Void, Integer> deferred;
+	private int progress;
+
+	@Setup
+	public void setUp() {
+		deferred = new DeferredObject<Void, Void, Integer>();
+		for (int i = 0; i < callbacks; i++) {
+			deferred.progress(sink);
+		}
+	}
+
+	@Benchmark
+	public int notifyProgress() {
+		deferred.notify(progress++);
+		return sink.last;
+	}
+
+	static final class Sink implements ProgressCallback<Integer> {
+		int last;
+
+		@Override
+		public void onProgress(Integer progress) {
+			last = progress;
+		}
+	}
+}
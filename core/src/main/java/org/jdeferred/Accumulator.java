@@ -0,0 +1,30 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred;
+
+/**
+ * Merges a result into an accumulated value, see
+ * {@link DeferredManager#foldAsync(Object, Accumulator, Promise...)}.
+ * Calls are never concurrent, so the accumulator may be mutated and returned.
+ * 
+ * @author Ray Tsang
+ *
+ * @param <A> Type of the accumulated value
+ * @param <T> Type of the results
+ */
+public interface Accumulator<A, T> {
+	public A accumulate(final A accumulator, final T value);
+}
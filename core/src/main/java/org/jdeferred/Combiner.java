@@ -0,0 +1,31 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred;
+
+/**
+ * Combines two results into one, see
+ * {@link DeferredManager#reduceAsync(Combiner, Promise...)}.
+ * The combiner is called concurrently and may be called again with the same values
+ * when another thread got there first, so it must be associative, commutative and
+ * free of side effects, and must not modify its arguments.
+ * 
+ * @author Ray Tsang
+ *
+ * @param <T> Type of the results
+ */
+public interface Combiner<T> {
+	public T combine(final T first, final T second);
+}
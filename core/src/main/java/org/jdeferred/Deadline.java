@@ -0,0 +1,170 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jdeferred.impl.DaemonThreadFactory;
+
+/**
+ * Point in time after which the result of a task is no longer needed.
+ *
+ * <pre>
+ * <code>
+ * Deadline previous = Deadline.after(2, TimeUnit.SECONDS).attach();
+ * try {
+ *   deferredManager.when(new Callable() { ... }).then(...);
+ * } finally {
+ *   Deadline.restore(previous);
+ * }
+ * </code>
+ * </pre>
+ *
+ * The deadline attached to the current thread is captured by every
+ * {@link DeferredFutureTask} created on it, and by every stage created with
+ * {@link Promise#then(DoneFilter)}. A task whose deadline passed is not started, and a
+ * running task is interrupted when its deadline passes; either way its promise is
+ * rejected with {@link DeadlineExceededException#INSTANCE}. Stages are not rejected, but
+ * while a task or the filters of a stage run, the deadline is attached to the thread, so
+ * that tasks created from them inherit it.
+ *
+ * @author Ray Tsang
+ */
+public final class Deadline {
+	private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<Deadline>();
+
+	private final long nanoTime;
+	private final Object lock = new Object();
+	private Set<Runnable> listeners;
+	private boolean fired;
+
+	private Deadline(long nanoTime) {
+		this.nanoTime = nanoTime;
+	}
+
+	/**
+	 * @param duration
+	 * @param unit
+	 * @return a deadline the given duration from now
+	 */
+	public static Deadline after(long duration, TimeUnit unit) {
+		return new Deadline(System.nanoTime() + unit.toNanos(duration));
+	}
+
+	/**
+	 * @return the deadline attached to the current thread, or <code>null</code>
+	 */
+	public static Deadline current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Attaches this deadline to the current thread, unless the attached one is earlier:
+	 * nested work can shorten a deadline but never extend it.
+	 *
+	 * @return the previously attached deadline, to be passed to {@link #restore(Deadline)}
+	 */
+	public Deadline attach() {
+		Deadline previous = CURRENT.get();
+		if (previous == null || isBefore(previous))
+			CURRENT.set(this);
+		return previous;
+	}
+
+	/**
+	 * @param previous the value returned by {@link #attach()}
+	 */
+	public static void restore(Deadline previous) {
+		if (previous == null)
+			CURRENT.remove();
+		else
+			CURRENT.set(previous);
+	}
+
+	public boolean isExpired() {
+		return nanoTime - System.nanoTime() <= 0;
+	}
+
+	/**
+	 * @param unit
+	 * @return time left until the deadline, <code>0</code> if it passed
+	 */
+	public long timeRemaining(TimeUnit unit) {
+		return unit.convert(Math.max(0, nanoTime - System.nanoTime()), TimeUnit.NANOSECONDS);
+	}
+
+	public boolean isBefore(Deadline other) {
+		return nanoTime - other.nanoTime < 0;
+	}
+
+	/**
+	 * Runs the listener on a shared daemon timer once the deadline passed, unless it is
+	 * removed before. The timer is scheduled once per deadline, on its first listener, so
+	 * that listeners removed early are not retained until the deadline.
+	 */
+	void addExpiryListener(Runnable listener) {
+		synchronized (lock) {
+			if (fired)
+				return;
+			if (listeners == null) {
+				listeners = new HashSet<Runnable>();
+				Timer.INSTANCE.schedule(new Runnable() {
+					@Override
+					public void run() {
+						fire();
+					}
+				}, nanoTime - System.nanoTime(), TimeUnit.NANOSECONDS);
+			}
+			listeners.add(listener);
+		}
+	}
+
+	void removeExpiryListener(Runnable listener) {
+		synchronized (lock) {
+			if (listeners != null)
+				listeners.remove(listener);
+		}
+	}
+
+	private void fire() {
+		Runnable[] expired;
+		synchronized (lock) {
+			fired = true;
+			expired = listeners.toArray(new Runnable[listeners.size()]);
+			listeners = null;
+		}
+		for (Runnable listener : expired) {
+			listener.run();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Deadline [" + timeRemaining(TimeUnit.MILLISECONDS) + "ms remaining]";
+	}
+
+	/**
+	 * Started on the first deadline that has to be watched.
+	 */
+	private static final class Timer {
+		static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(
+				new DaemonThreadFactory("jdeferred-deadline"));
+	}
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred;
+
+/**
+ * Rejection of tasks whose {@link Deadline} passed before they started or while they
+ * were running. There is a single instance without a stack trace, so that expiring many
+ * tasks at once allocates nothing.
+ *
+ * @author Ray Tsang
+ */
+public final class DeadlineExceededException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	public static final DeadlineExceededException INSTANCE = new DeadlineExceededException();
+
+	private DeadlineExceededException() {
+		super("Deadline exceeded");
+	}
+
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		return this;
+	}
+}
@@ -21,11 +21,16 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
 
 import org.jdeferred.DeferredManager.StartPolicy;
+import org.jdeferred.impl.CompletionSignal;
+import org.jdeferred.impl.ContextPropagator;
 import org.jdeferred.impl.DeferredObject;
+import org.jdeferred.impl.Instrumentation;
 
 /**
  * FutureTask can wrap around {@link Callable} and {@link Runnable}.
- * In these two cases, a new {@link Deferred} object will be created.
+ * In these two cases, a new {@link Deferred} object will be created: a {@link DeferredObject}
+ * for a {@link Callable}, and a {@link CompletionSignal}, which has no progress, for a
+ * {@link Runnable}.
  * This class will override {@link FutureTask#done} to trigger the 
  * appropriate {@link Deferred} actions.
  * 
@@ -35,6 +40,12 @@ import org.jdeferred.impl.DeferredObject;
  * When a task is canceled, {@link Deferred#reject(Object)} will be called with an instance of {@link CancellationException}
  * If any Exception occured, {@link Deferred#reject(Object)} will be called with the Exception instance.
  * 
+ * The {@link Deadline} of the thread creating the task is captured. When it passes, the task
+ * is not started, or is interrupted, and {@link Deferred#reject(Object)} will be called with
+ * {@link DeadlineExceededException#INSTANCE}.
+ * 
+ * The {@link ContextPropagator} context of the thread creating the task is restored while it runs.
+ * 
  * @author Ray Tsang
  *
  * @param <D> Type used for {@link Deferred#resolve(Object)}
@@ -43,23 +54,40 @@ import org.jdeferred.impl.DeferredObject;
 public class DeferredFutureTask<D, P> extends FutureTask<D> {
 	protected final Deferred<D, Throwable, P> deferred;
 	protected final StartPolicy startPolicy;
+	private final Object task;
+	protected final Deadline deadline = Deadline.current();
+	private final Object context = ContextPropagator.get().capture();
+	private volatile boolean deadlineExceeded;
+	private final Runnable expiry = new Runnable() {
+		@Override
+		public void run() {
+			expire(true);
+		}
+	};
+	private long submitted;
 	
 	public DeferredFutureTask(Callable<D> callable) {
 		super(callable);
 		this.deferred = new DeferredObject<D, Throwable, P>();
 		this.startPolicy = StartPolicy.DEFAULT;
+		this.task = callable;
+		watchDeadline();
 	}
 	
 	public DeferredFutureTask(Runnable runnable) {
 		super(runnable, null);
-		this.deferred = new DeferredObject<D, Throwable, P>();
+		this.deferred = new CompletionSignal<D, P>();
 		this.startPolicy = StartPolicy.DEFAULT;
+		this.task = runnable;
+		watchDeadline();
 	}
 	
 	public DeferredFutureTask(DeferredCallable<D, P> callable) {
 		super(callable);
 		this.deferred = callable.getDeferred();
 		this.startPolicy = callable.getStartPolicy();
+		this.task = callable;
+		watchDeadline();
 	}
 	
 	@SuppressWarnings("unchecked")
@@ -67,17 +95,75 @@ public class DeferredFutureTask<D, P> extends FutureTask<D> {
 		super(runnable, null);
 		this.deferred = (Deferred<D, Throwable, P>) runnable.getDeferred();
 		this.startPolicy = runnable.getStartPolicy();
+		this.task = runnable;
+		watchDeadline();
 	}
 	
 	public Promise<D, Throwable, P> promise() {
 		return deferred.promise();
 	}
 	
+	/**
+	 * @return the {@link Callable} or {@link Runnable} run by this task
+	 */
+	public Object getTask() {
+		return task;
+	}
+	
+	/**
+	 * @return the deadline captured when the task was created, or <code>null</code>
+	 */
+	public Deadline getDeadline() {
+		return deadline;
+	}
+	
+	/**
+	 * Called by the {@link DeferredManager} right before it submits the task, see
+	 * {@link Instrumentation#taskSubmitted(DeferredFutureTask)}.
+	 */
+	public void markSubmitted() {
+		submitted = Instrumentation.get().taskSubmitted(this);
+	}
+	
+	@Override
+	public void run() {
+		final Instrumentation instrumentation = Instrumentation.get();
+		final long started = instrumentation.taskStarted(this, submitted);
+		final ContextPropagator propagator = ContextPropagator.get();
+		final Object previous = propagator.restore(context);
+		try {
+			runWithinDeadline();
+		} finally {
+			propagator.reset(previous);
+			instrumentation.taskFinished(this, submitted, started);
+		}
+	}
+	
+	private void runWithinDeadline() {
+		if (deadline == null) {
+			super.run();
+			return;
+		}
+		if (deadline.isExpired()) {
+			expire(false);
+			return;
+		}
+		Deadline previous = deadline.attach();
+		try {
+			super.run();
+		} finally {
+			Deadline.restore(previous);
+		}
+	}
+	
 	@Override
 	protected void done() {
+		if (deadline != null)
+			deadline.removeExpiryListener(expiry);
 		try {
 			if (isCancelled()) {
-				deferred.reject(new CancellationException());
+				deferred.reject(deadlineExceeded ? DeadlineExceededException.INSTANCE : new CancellationException());
+				return;
 			}
 			D result = get();
 			deferred.resolve(result);
@@ -90,4 +176,16 @@ public class DeferredFutureTask<D, P> extends FutureTask<D> {
 	public StartPolicy getStartPolicy() {
 		return startPolicy;
 	}
+	
+	private void watchDeadline() {
+		if (deadline == null || deadline.isExpired())
+			return;
+		deadline.addExpiryListener(expiry);
+	}
+	
+	private void expire(boolean interrupt) {
+		deadlineExceeded = true;
+		if (!cancel(interrupt))
+			deadlineExceeded = false;
+	}
 }
@@ -15,14 +15,31 @@
  */
 package org.jdeferred;
 
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 
 import org.jdeferred.impl.DefaultDeferredManager;
+import org.jdeferred.multiple.AllSettledDeferredObject;
+import org.jdeferred.multiple.AllValues;
+import org.jdeferred.multiple.AnyDeferredObject;
+import org.jdeferred.multiple.FoldDeferredObject;
+import org.jdeferred.multiple.JoinDeferredObject;
+import org.jdeferred.multiple.MapDeferredObject;
 import org.jdeferred.multiple.MasterDeferredObject;
 import org.jdeferred.multiple.MasterProgress;
 import org.jdeferred.multiple.MultipleResults;
 import org.jdeferred.multiple.OneReject;
+import org.jdeferred.multiple.OneResult;
+import org.jdeferred.multiple.RaceDeferredObject;
+import org.jdeferred.multiple.ReduceDeferredObject;
+import org.jdeferred.multiple.SomeDeferredObject;
+import org.jdeferred.multiple.StreamDeferredObject;
+import org.jdeferred.multiple.Tuple2;
+import org.jdeferred.multiple.Tuple3;
+import org.jdeferred.multiple.Tuple4;
+import org.jdeferred.multiple.Tuple5;
 
 /**
  * {@link DeferredManager} is especially useful when dealing with asynchronous
@@ -166,6 +183,38 @@ public interface DeferredManager {
 	public abstract Promise<MultipleResults, OneReject, MasterProgress> when(
 			Promise... promises);
 
+	/**
+	 * Same as {@link #when(Promise...)}, for a large number of promises that are already
+	 * held in a collection. A {@link java.util.Collection} is observed without copying,
+	 * any other {@link Iterable} is copied into a list first.
+	 * 
+	 * @param promises
+	 * @return {@link MasterDeferredObject}
+	 */
+	public abstract Promise<MultipleResults, OneReject, MasterProgress> when(
+			Iterable<? extends Promise> promises);
+
+	/**
+	 * Same as {@link #when(Promise...)}, except that the returned promise never notifies
+	 * progress. The progress of the individual promises is not observed, so no progress
+	 * objects are created for large numbers of promises.
+	 * 
+	 * @param promises
+	 * @return {@link MasterDeferredObject}
+	 */
+	public abstract Promise<MultipleResults, OneReject, MasterProgress> whenWithoutProgress(
+			Promise... promises);
+
+	/**
+	 * Same as {@link #when(Iterable)}, except that the returned promise never notifies
+	 * progress, see {@link #whenWithoutProgress(Promise...)}.
+	 * 
+	 * @param promises
+	 * @return {@link MasterDeferredObject}
+	 */
+	public abstract Promise<MultipleResults, OneReject, MasterProgress> whenWithoutProgress(
+			Iterable<? extends Promise> promises);
+
 	/**
 	 * Wraps {@link Runnable} with {@link DeferredFutureTask}
 	 * 
@@ -215,4 +264,249 @@ public interface DeferredManager {
 	public abstract Promise<MultipleResults, OneReject, MasterProgress> when(
 			Future<?> ... futures);
 
+	/**
+	 * This will return a {@link RaceDeferredObject}, which resolves or rejects like
+	 * the first of the promises that resolves or rejects.
+	 * 
+	 * @param promises
+	 * @return {@link RaceDeferredObject}
+	 */
+	public abstract Promise<OneResult, OneReject, MasterProgress> race(
+			Promise... promises);
+
+	/**
+	 * Wraps {@link Callable} with {@link DeferredFutureTask}, see {@link #race(Promise...)}.
+	 * The tasks that are still running once the race is decided are cancelled.
+	 * 
+	 * @param callables
+	 * @return {@link RaceDeferredObject}
+	 */
+	public abstract Promise<OneResult, OneReject, MasterProgress> race(
+			Callable<?>... callables);
+
+	/**
+	 * This will return an {@link AnyDeferredObject}, which resolves with the first
+	 * of the promises that resolves, and rejects with {@link AllValues} if all of them
+	 * reject.
+	 * 
+	 * @param promises
+	 * @return {@link AnyDeferredObject}
+	 */
+	public abstract Promise<OneResult, AllValues, MasterProgress> any(
+			Promise... promises);
+
+	/**
+	 * Wraps {@link Callable} with {@link DeferredFutureTask}, see {@link #any(Promise...)}.
+	 * The tasks that are still running once one of them resolved are cancelled.
+	 * 
+	 * @param callables
+	 * @return {@link AnyDeferredObject}
+	 */
+	public abstract Promise<OneResult, AllValues, MasterProgress> any(
+			Callable<?>... callables);
+
+	/**
+	 * This will return an {@link AllSettledDeferredObject}, which resolves with
+	 * {@link AllValues} once all promises either resolved or rejected. It never rejects.
+	 * 
+	 * @param promises
+	 * @return {@link AllSettledDeferredObject}
+	 */
+	public abstract Promise<AllValues, Void, MasterProgress> allSettled(
+			Promise... promises);
+
+	/**
+	 * Wraps {@link Callable} with {@link DeferredFutureTask}, see {@link #allSettled(Promise...)}.
+	 * 
+	 * @param callables
+	 * @return {@link AllSettledDeferredObject}
+	 */
+	public abstract Promise<AllValues, Void, MasterProgress> allSettled(
+			Callable<?>... callables);
+
+	/**
+	 * This will return a {@link SomeDeferredObject}, which resolves as soon as
+	 * <code>count</code> promises resolved, and rejects as soon as too many promises
+	 * rejected for that to happen.
+	 * 
+	 * @param count number of promises that need to resolve
+	 * @param promises
+	 * @return {@link SomeDeferredObject}
+	 */
+	public abstract Promise<AllValues, AllValues, MasterProgress> some(
+			int count, Promise... promises);
+
+	/**
+	 * Wraps {@link Callable} with {@link DeferredFutureTask}, see {@link #some(int, Promise...)}.
+	 * The tasks that are still running once the quorum is decided are cancelled.
+	 * 
+	 * @param count number of tasks that need to succeed
+	 * @param callables
+	 * @return {@link SomeDeferredObject}
+	 */
+	public abstract Promise<AllValues, AllValues, MasterProgress> some(
+			int count, Callable<?>... callables);
+
+	/**
+	 * This will return a {@link StreamDeferredObject}, which hands every result to the
+	 * consumer in the order the promises resolve, without waiting for the slowest one
+	 * and without keeping the results. It resolves with the number of results, and
+	 * rejects as soon as any promise rejects.
+	 * 
+	 * @param consumer called with each {@link OneResult}, never concurrently
+	 * @param promises
+	 * @return {@link StreamDeferredObject}
+	 */
+	public abstract Promise<Integer, OneReject, MasterProgress> stream(
+			DoneCallback<OneResult> consumer, Promise... promises);
+
+	/**
+	 * Wraps {@link Callable} with {@link DeferredFutureTask}, see {@link #stream(DoneCallback, Promise...)}.
+	 * The tasks that are still running once one of them failed are cancelled.
+	 * 
+	 * @param consumer called with each {@link OneResult}, never concurrently
+	 * @param callables
+	 * @return {@link StreamDeferredObject}
+	 */
+	public abstract Promise<Integer, OneReject, MasterProgress> stream(
+			DoneCallback<OneResult> consumer, Callable<?>... callables);
+
+	/**
+	 * Puts every result into the queue in the order the promises resolve,
+	 * see {@link #stream(DoneCallback, Promise...)}. With a bounded queue, the threads
+	 * resolving the promises wait for the reader to catch up.
+	 * 
+	 * @param queue receives each {@link OneResult}
+	 * @param promises
+	 * @return {@link StreamDeferredObject}
+	 */
+	public abstract Promise<Integer, OneReject, MasterProgress> stream(
+			BlockingQueue<? super OneResult> queue, Promise... promises);
+
+	/**
+	 * Joins 2 promises into a {@link Tuple2}, without wrapping each result in a
+	 * {@link OneResult}. Rejects with {@link OneReject} as soon as any promise rejects.
+	 * 
+	 * @param p1 promise of the first result
+	 * @param p2 promise of the second result
+	 * @return {@link JoinDeferredObject}
+	 */
+	public abstract <A, B> Promise<Tuple2<A, B>, OneReject, Void> join(
+			Promise<A, ?, ?> p1, Promise<B, ?, ?> p2);
+
+	/**
+	 * Joins 3 promises into a {@link Tuple3}, see {@link #join(Promise, Promise)}.
+	 * 
+	 * @param p1 promise of the first result
+	 * @param p2 promise of the second result
+	 * @param p3 promise of the third result
+	 * @return {@link JoinDeferredObject}
+	 */
+	public abstract <A, B, C> Promise<Tuple3<A, B, C>, OneReject, Void> join(
+			Promise<A, ?, ?> p1, Promise<B, ?, ?> p2, Promise<C, ?, ?> p3);
+
+	/**
+	 * Joins 4 promises into a {@link Tuple4}, see {@link #join(Promise, Promise)}.
+	 * 
+	 * @param p1 promise of the first result
+	 * @param p2 promise of the second result
+	 * @param p3 promise of the third result
+	 * @param p4 promise of the fourth result
+	 * @return {@link JoinDeferredObject}
+	 */
+	public abstract <A, B, C, D> Promise<Tuple4<A, B, C, D>, OneReject, Void> join(
+			Promise<A, ?, ?> p1, Promise<B, ?, ?> p2, Promise<C, ?, ?> p3, Promise<D, ?, ?> p4);
+
+	/**
+	 * Joins 5 promises into a {@link Tuple5}, see {@link #join(Promise, Promise)}.
+	 * 
+	 * @param p1 promise of the first result
+	 * @param p2 promise of the second result
+	 * @param p3 promise of the third result
+	 * @param p4 promise of the fourth result
+	 * @param p5 promise of the fifth result
+	 * @return {@link JoinDeferredObject}
+	 */
+	public abstract <A, B, C, D, E> Promise<Tuple5<A, B, C, D, E>, OneReject, Void> join(
+			Promise<A, ?, ?> p1, Promise<B, ?, ?> p2, Promise<C, ?, ?> p3, Promise<D, ?, ?> p4, Promise<E, ?, ?> p5);
+
+	/**
+	 * Applies the function to every item in the background, with at most
+	 * <code>maxInFlight</code> items in flight, and collects the results in the order
+	 * of the items. Items are pulled from the iterator only when a slot is free.
+	 * Rejects with {@link OneReject} as soon as the function throws for any item.
+	 * 
+	 * @param items
+	 * @param function called for each item on a background thread
+	 * @param maxInFlight maximum number of items processed at the same time
+	 * @return promise of the results
+	 * @see MapDeferredObject
+	 */
+	public abstract <T, R> Promise<List<R>, OneReject, Void> mapAsync(
+			Iterable<? extends T> items, DoneFilter<? super T, ? extends R> function, int maxInFlight);
+
+	/**
+	 * Same as {@link #mapAsync(Iterable, DoneFilter, int)}, except that every result is
+	 * handed to the consumer as soon as it is available instead of being collected, so
+	 * memory stays proportional to <code>maxInFlight</code>.
+	 * 
+	 * @param items
+	 * @param function called for each item on a background thread
+	 * @param maxInFlight maximum number of items processed at the same time
+	 * @param consumer called with each {@link OneResult}, never concurrently
+	 * @return {@link MapDeferredObject}, resolved with the number of items
+	 */
+	public abstract <T, R> Promise<Integer, OneReject, Void> mapAsync(
+			Iterable<? extends T> items, DoneFilter<? super T, ? extends R> function, int maxInFlight,
+			DoneCallback<OneResult> consumer);
+
+	/**
+	 * This will return a {@link FoldDeferredObject}, which merges every result into the
+	 * accumulated value as soon as its promise resolves, and resolves with the accumulated
+	 * value once all promises resolved. Results are not kept, and the accumulator is never
+	 * called concurrently. Rejects as soon as any promise rejects.
+	 * 
+	 * @param initial initial accumulated value
+	 * @param accumulator
+	 * @param promises
+	 * @return {@link FoldDeferredObject}
+	 */
+	public abstract <A, T> Promise<A, OneReject, MasterProgress> foldAsync(
+			A initial, Accumulator<A, T> accumulator, Promise... promises);
+
+	/**
+	 * Same as {@link #foldAsync(Object, Accumulator, Promise...)}, for promises held in
+	 * a collection, see {@link #when(Iterable)}.
+	 * 
+	 * @param initial initial accumulated value
+	 * @param accumulator
+	 * @param promises
+	 * @return {@link FoldDeferredObject}
+	 */
+	public abstract <A, T> Promise<A, OneReject, MasterProgress> foldAsync(
+			A initial, Accumulator<A, T> accumulator, Iterable<? extends Promise> promises);
+
+	/**
+	 * This will return a {@link ReduceDeferredObject}, which combines every result with
+	 * the current value as soon as its promise resolves, without locking, and resolves
+	 * with the reduced value once all promises resolved. Results are not kept. Rejects as
+	 * soon as any promise rejects.
+	 * 
+	 * @param combiner called concurrently, see {@link Combiner}
+	 * @param promises
+	 * @return {@link ReduceDeferredObject}
+	 */
+	public abstract <T> Promise<T, OneReject, MasterProgress> reduceAsync(
+			Combiner<T> combiner, Promise... promises);
+
+	/**
+	 * Same as {@link #reduceAsync(Combiner, Promise...)}, for promises held in
+	 * a collection, see {@link #when(Iterable)}.
+	 * 
+	 * @param combiner called concurrently, see {@link Combiner}
+	 * @param promises
+	 * @return {@link ReduceDeferredObject}
+	 */
+	public abstract <T> Promise<T, OneReject, MasterProgress> reduceAsync(
+			Combiner<T> combiner, Iterable<? extends Promise> promises);
 }
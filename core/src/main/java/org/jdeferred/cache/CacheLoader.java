@@ -0,0 +1,31 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.cache;
+
+/**
+ * Computes the value of a {@link PromiseCache} entry.
+ * The loader is executed in the background by the cache's
+ * {@link org.jdeferred.DeferredManager}, both for the initial load and for refreshes.
+ *
+ * @see PromiseCache
+ * @author Ray Tsang
+ *
+ * @param <K> Type of the key
+ * @param <V> Type of the loaded value
+ */
+public interface CacheLoader<K, V> {
+	public V load(final K key) throws Exception;
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.jdeferred.DeferredCallable;
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.DeferredManager;
+import org.jdeferred.DeferredManager.StartPolicy;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+
+/**
+ * Memoizes asynchronous lookups as {@link Promise} objects.
+ *
+ * <pre>
+ * <code>
+ * {@link PromiseCache} cache = new {@link PromiseCache}(deferredManager, new {@link CacheLoader}() { ... });
+ * cache.setMaximumSize(10000);
+ * cache.setExpireAfterWrite(10, TimeUnit.MINUTES);
+ * cache.setRefreshAfterWrite(1, TimeUnit.MINUTES);
+ *
+ * cache.get(key).done(new DoneCallback() { ... });
+ * </code>
+ * </pre>
+ *
+ * <ul>
+ * <li>Concurrent {@link #get(Object)} calls for the same key share a single load.</li>
+ * <li>Rejected promises are evicted as soon as they fail, and treated as absent until
+ * then, so failures are never cached.</li>
+ * <li>When {@link #setMaximumSize(long)} is exceeded, the least recently used entry is
+ * evicted, unless it has been requested more often than the new entry, in which case
+ * the new entry is not retained.</li>
+ * <li>After {@link #setRefreshAfterWrite(long, TimeUnit)} has elapsed, the next
+ * {@link #get(Object)} reloads the value in the background through the
+ * {@link DeferredManager} while still returning the old value.</li>
+ * </ul>
+ *
+ * Entries whose load is still pending never expire.
+ *
+ * @author Ray Tsang
+ *
+ * @param <K> Type of the key
+ * @param <V> Type of the cached value
+ */
+public class PromiseCache<K, V> {
+	private static final long UNSET = -1;
+
+	private final DeferredManager deferredManager;
+	private final CacheLoader<K, V> loader;
+	private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+
+	private long maximumSize = UNSET;
+	private long expireAfterWriteNanos = UNSET;
+	private long expireAfterAccessNanos = UNSET;
+	private long refreshAfterWriteNanos = UNSET;
+	private FrequencySketch sketch;
+
+	public PromiseCache(DeferredManager deferredManager, CacheLoader<K, V> loader) {
+		if (deferredManager == null || loader == null)
+			throw new IllegalArgumentException("DeferredManager and CacheLoader must not be null");
+		this.deferredManager = deferredManager;
+		this.loader = loader;
+	}
+
+	/**
+	 * Returns the promise cached for the key, or starts loading it.
+	 *
+	 * @param key
+	 * @return a promise of the value, which may already be resolved
+	 */
+	public Promise<V, Throwable, Void> get(final K key) {
+		final Entry<V> entry;
+		final Promise<V, Throwable, Void> promise;
+		DeferredFutureTask<V, Void> load = null;
+		boolean refresh = false;
+		synchronized (this) {
+			final long now = ticker();
+			if (sketch != null)
+				sketch.increment(key);
+
+			Entry<V> existing = entries.get(key);
+			if (existing != null && isExpired(existing, now)) {
+				entries.remove(key);
+				existing = null;
+			}
+
+			if (existing != null) {
+				existing.accessTime = now;
+				if (isRefreshDue(existing, now)) {
+					existing.refreshing = true;
+					refresh = true;
+				}
+				entry = existing;
+			} else {
+				load = newLoadTask(key);
+				entry = new Entry<V>(load.promise(), now);
+				entries.put(key, entry);
+				evict(key);
+			}
+			promise = entry.promise;
+		}
+
+		if (load != null) {
+			startLoad(key, entry, load);
+		} else if (refresh) {
+			startRefresh(key, entry);
+		}
+		return promise;
+	}
+
+	/**
+	 * @param key
+	 * @return the promise cached for the key, or <code>null</code> if there is none
+	 */
+	public synchronized Promise<V, Throwable, Void> getIfPresent(K key) {
+		final long now = ticker();
+		Entry<V> existing = entries.get(key);
+		if (existing == null)
+			return null;
+
+		if (isExpired(existing, now)) {
+			entries.remove(key);
+			return null;
+		}
+		existing.accessTime = now;
+		return existing.promise;
+	}
+
+	public synchronized void invalidate(K key) {
+		entries.remove(key);
+	}
+
+	public synchronized void invalidateAll() {
+		entries.clear();
+	}
+
+	/**
+	 * Removes all expired entries. Expired entries are otherwise only removed
+	 * when they are looked up or chosen for eviction.
+	 */
+	public synchronized void cleanUp() {
+		final long now = ticker();
+		for (Iterator<Entry<V>> it = entries.values().iterator(); it.hasNext();) {
+			if (isExpired(it.next(), now))
+				it.remove();
+		}
+	}
+
+	/**
+	 * @return number of entries, including pending loads and expired entries that
+	 * have not been cleaned up yet
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @param maximumSize maximum number of entries, <code>0</code> disables caching
+	 */
+	public synchronized void setMaximumSize(long maximumSize) {
+		if (maximumSize < 0)
+			throw new IllegalArgumentException("Maximum size must not be negative");
+		this.maximumSize = maximumSize;
+		this.sketch = new FrequencySketch(maximumSize);
+	}
+
+	public synchronized void setExpireAfterWrite(long duration, TimeUnit unit) {
+		this.expireAfterWriteNanos = toNanos(duration, unit);
+	}
+
+	public synchronized void setExpireAfterAccess(long duration, TimeUnit unit) {
+		this.expireAfterAccessNanos = toNanos(duration, unit);
+	}
+
+	/**
+	 * Resolved entries older than the given duration are reloaded in the background
+	 * on their next access. Until the reload succeeds, the old value keeps being
+	 * returned; if the reload fails, the old value is kept.
+	 *
+	 * @param duration
+	 * @param unit
+	 */
+	public synchronized void setRefreshAfterWrite(long duration, TimeUnit unit) {
+		this.refreshAfterWriteNanos = toNanos(duration, unit);
+	}
+
+	/**
+	 * Time source used for expiration and refresh, in nanoseconds.
+	 *
+	 * @return {@link System#nanoTime()}
+	 */
+	protected long ticker() {
+		return System.nanoTime();
+	}
+
+	private DeferredFutureTask<V, Void> newLoadTask(final K key) {
+		// AUTO: the task is submitted by startLoad(), outside of the lock
+		return new DeferredFutureTask<V, Void>(new DeferredCallable<V, Void>(StartPolicy.AUTO) {
+			@Override
+			public V call() throws Exception {
+				return loader.load(key);
+			}
+		});
+	}
+
+	private void startLoad(final K key, final Entry<V> entry, DeferredFutureTask<V, Void> task) {
+		deferredManager.when(task).done(new DoneCallback<V>() {
+			@Override
+			public void onDone(V result) {
+				synchronized (PromiseCache.this) {
+					entry.writeTime = ticker();
+				}
+			}
+		}).fail(new FailCallback<Throwable>() {
+			@Override
+			public void onFail(Throwable result) {
+				synchronized (PromiseCache.this) {
+					if (entries.get(key) == entry)
+						entries.remove(key);
+				}
+			}
+		});
+	}
+
+	private void startRefresh(final K key, final Entry<V> entry) {
+		final Promise<V, Throwable, Void> refreshed = deferredManager.when(new Callable<V>() {
+			@Override
+			public V call() throws Exception {
+				return loader.load(key);
+			}
+		});
+		refreshed.done(new DoneCallback<V>() {
+			@Override
+			public void onDone(V result) {
+				synchronized (PromiseCache.this) {
+					entry.promise = refreshed;
+					entry.writeTime = ticker();
+					entry.refreshing = false;
+				}
+			}
+		}).fail(new FailCallback<Throwable>() {
+			@Override
+			public void onFail(Throwable result) {
+				// keep serving the old value, the next access will try again
+				synchronized (PromiseCache.this) {
+					entry.refreshing = false;
+				}
+			}
+		});
+	}
+
+	private void evict(K candidate) {
+		if (maximumSize == UNSET)
+			return;
+
+		final long now = ticker();
+		while (entries.size() > maximumSize) {
+			Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+			Map.Entry<K, Entry<V>> victim = it.next();
+			K victimKey = victim.getKey();
+
+			if (victimKey.equals(candidate)
+					|| isExpired(victim.getValue(), now)
+					|| sketch.frequency(candidate) > sketch.frequency(victimKey)) {
+				it.remove();
+			} else {
+				entries.remove(candidate);
+			}
+		}
+	}
+
+	private boolean isExpired(Entry<V> entry, long now) {
+		if (entry.promise.isPending())
+			return false;
+		// the fail callback evicting it may not have run yet
+		if (entry.promise.isRejected())
+			return true;
+		if (expireAfterWriteNanos != UNSET && now - entry.writeTime >= expireAfterWriteNanos)
+			return true;
+		if (expireAfterAccessNanos != UNSET && now - entry.accessTime >= expireAfterAccessNanos)
+			return true;
+		return false;
+	}
+
+	private boolean isRefreshDue(Entry<V> entry, long now) {
+		return refreshAfterWriteNanos != UNSET
+				&& !entry.refreshing
+				&& entry.promise.isResolved()
+				&& now - entry.writeTime >= refreshAfterWriteNanos;
+	}
+
+	private static long toNanos(long duration, TimeUnit unit) {
+		if (duration < 0)
+			throw new IllegalArgumentException("Duration must not be negative");
+		return unit.toNanos(duration);
+	}
+
+	private static final class Entry<V> {
+		private Promise<V, Throwable, Void> promise;
+		private long writeTime;
+		private long accessTime;
+		private boolean refreshing;
+
+		Entry(Promise<V, Throwable, Void> promise, long now) {
+			this.promise = promise;
+			this.writeTime = now;
+			this.accessTime = now;
+		}
+	}
+}
@@ -15,19 +15,43 @@
  */
 package org.jdeferred.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
+import org.jdeferred.Accumulator;
+import org.jdeferred.Combiner;
 import org.jdeferred.DeferredCallable;
 import org.jdeferred.DeferredFutureTask;
 import org.jdeferred.DeferredManager;
 import org.jdeferred.DeferredRunnable;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.DoneFilter;
 import org.jdeferred.Promise;
+import org.jdeferred.multiple.AllSettledDeferredObject;
+import org.jdeferred.multiple.AllValues;
+import org.jdeferred.multiple.AnyDeferredObject;
+import org.jdeferred.multiple.FoldDeferredObject;
+import org.jdeferred.multiple.JoinDeferredObject;
+import org.jdeferred.multiple.MapDeferredObject;
 import org.jdeferred.multiple.MasterProgress;
 import org.jdeferred.multiple.MasterDeferredObject;
 import org.jdeferred.multiple.MultipleResults;
 import org.jdeferred.multiple.OneReject;
+import org.jdeferred.multiple.OneResult;
+import org.jdeferred.multiple.RaceDeferredObject;
+import org.jdeferred.multiple.ReduceDeferredObject;
+import org.jdeferred.multiple.QueueConsumer;
+import org.jdeferred.multiple.SomeDeferredObject;
+import org.jdeferred.multiple.StreamDeferredObject;
+import org.jdeferred.multiple.Tuple2;
+import org.jdeferred.multiple.Tuple3;
+import org.jdeferred.multiple.Tuple4;
+import org.jdeferred.multiple.Tuple5;
 
 @SuppressWarnings({ "rawtypes", "unchecked" })
 public abstract class AbstractDeferredManager implements DeferredManager {
@@ -138,6 +162,22 @@ public abstract class AbstractDeferredManager implements DeferredManager {
 		return new MasterDeferredObject(promises).promise();
 	}
 
+	@Override
+	public Promise<MultipleResults, OneReject, MasterProgress> whenWithoutProgress(Promise... promises) {
+		assertNotEmpty(promises);
+		return new MasterDeferredObject(false, promises).promise();
+	}
+
+	@Override
+	public Promise<MultipleResults, OneReject, MasterProgress> when(Iterable<? extends Promise> promises) {
+		return new MasterDeferredObject(true, toCollection(promises)).promise();
+	}
+
+	@Override
+	public Promise<MultipleResults, OneReject, MasterProgress> whenWithoutProgress(Iterable<? extends Promise> promises) {
+		return new MasterDeferredObject(false, toCollection(promises)).promise();
+	}
+
 	@Override
 	public <D, F, P> Promise<D, F, P> when(Promise<D, F, P> promise) {
 		return promise;
@@ -166,12 +206,23 @@ public abstract class AbstractDeferredManager implements DeferredManager {
 	@Override
 	public <D, P> Promise<D, Throwable, P> when(
 			DeferredFutureTask<D, P> task) {
-		if (task.getStartPolicy() == StartPolicy.AUTO 
-				|| (task.getStartPolicy() == StartPolicy.DEFAULT && isAutoSubmit()))
+		if (shouldSubmit(task)) {
+			task.markSubmitted();
 			submit(task);
+		}
 		
 		return task.promise();
 	}
+
+	/**
+	 * @param task
+	 * @return whether the task should be submitted, according to its {@link StartPolicy}
+	 * and {@link #isAutoSubmit()}
+	 */
+	protected boolean shouldSubmit(DeferredFutureTask<?, ?> task) {
+		return task.getStartPolicy() == StartPolicy.AUTO
+				|| (task.getStartPolicy() == StartPolicy.DEFAULT && isAutoSubmit());
+	}
 	
 	@Override
 	public <D> Promise<D, Throwable, Void> when(final Future<D> future) {
@@ -193,6 +244,182 @@ public abstract class AbstractDeferredManager implements DeferredManager {
 		});
 	}
 	
+	@Override
+	public Promise<OneResult, OneReject, MasterProgress> race(Promise... promises) {
+		assertNotEmpty(promises);
+		return new RaceDeferredObject(promises).promise();
+	}
+
+	@Override
+	public Promise<OneResult, OneReject, MasterProgress> race(Callable<?>... callables) {
+		DeferredFutureTask[] tasks = toTasks(callables);
+		return new RaceDeferredObject(promisesOf(tasks), tasks).promise();
+	}
+
+	@Override
+	public Promise<OneResult, AllValues, MasterProgress> any(Promise... promises) {
+		assertNotEmpty(promises);
+		return new AnyDeferredObject(promises).promise();
+	}
+
+	@Override
+	public Promise<OneResult, AllValues, MasterProgress> any(Callable<?>... callables) {
+		DeferredFutureTask[] tasks = toTasks(callables);
+		return new AnyDeferredObject(promisesOf(tasks), tasks).promise();
+	}
+
+	@Override
+	public Promise<AllValues, Void, MasterProgress> allSettled(Promise... promises) {
+		assertNotEmpty(promises);
+		return new AllSettledDeferredObject(promises).promise();
+	}
+
+	@Override
+	public Promise<AllValues, Void, MasterProgress> allSettled(Callable<?>... callables) {
+		DeferredFutureTask[] tasks = toTasks(callables);
+		return new AllSettledDeferredObject(promisesOf(tasks)).promise();
+	}
+
+	@Override
+	public Promise<AllValues, AllValues, MasterProgress> some(int count, Promise... promises) {
+		assertNotEmpty(promises);
+		return new SomeDeferredObject(count, promises).promise();
+	}
+
+	@Override
+	public Promise<AllValues, AllValues, MasterProgress> some(int count, Callable<?>... callables) {
+		DeferredFutureTask[] tasks = toTasks(callables);
+		return new SomeDeferredObject(count, promisesOf(tasks), tasks).promise();
+	}
+
+	@Override
+	public Promise<Integer, OneReject, MasterProgress> stream(DoneCallback<OneResult> consumer, Promise... promises) {
+		assertNotEmpty(promises);
+		return new StreamDeferredObject(consumer, promises).promise();
+	}
+
+	@Override
+	public Promise<Integer, OneReject, MasterProgress> stream(DoneCallback<OneResult> consumer, Callable<?>... callables) {
+		DeferredFutureTask[] tasks = toTasks(callables);
+		return new StreamDeferredObject(consumer, promisesOf(tasks), tasks).promise();
+	}
+
+	@Override
+	public Promise<Integer, OneReject, MasterProgress> stream(BlockingQueue<? super OneResult> queue, Promise... promises) {
+		return stream(new QueueConsumer(queue), promises);
+	}
+
+	@Override
+	public <A, B> Promise<Tuple2<A, B>, OneReject, Void> join(
+			Promise<A, ?, ?> p1, Promise<B, ?, ?> p2) {
+		return new JoinDeferredObject<Tuple2<A, B>>(p1, p2).promise();
+	}
+
+	@Override
+	public <A, B, C> Promise<Tuple3<A, B, C>, OneReject, Void> join(
+			Promise<A, ?, ?> p1, Promise<B, ?, ?> p2, Promise<C, ?, ?> p3) {
+		return new JoinDeferredObject<Tuple3<A, B, C>>(p1, p2, p3).promise();
+	}
+
+	@Override
+	public <A, B, C, D> Promise<Tuple4<A, B, C, D>, OneReject, Void> join(
+			Promise<A, ?, ?> p1, Promise<B, ?, ?> p2, Promise<C, ?, ?> p3, Promise<D, ?, ?> p4) {
+		return new JoinDeferredObject<Tuple4<A, B, C, D>>(p1, p2, p3, p4).promise();
+	}
+
+	@Override
+	public <A, B, C, D, E> Promise<Tuple5<A, B, C, D, E>, OneReject, Void> join(
+			Promise<A, ?, ?> p1, Promise<B, ?, ?> p2, Promise<C, ?, ?> p3, Promise<D, ?, ?> p4, Promise<E, ?, ?> p5) {
+		return new JoinDeferredObject<Tuple5<A, B, C, D, E>>(p1, p2, p3, p4, p5).promise();
+	}
+
+	@Override
+	public <T, R> Promise<List<R>, OneReject, Void> mapAsync(
+			Iterable<? extends T> items, DoneFilter<? super T, ? extends R> function, int maxInFlight) {
+		final List<R> results = new ArrayList<R>();
+		return mapAsync(items, function, maxInFlight, new DoneCallback<OneResult>() {
+			@Override
+			public void onDone(OneResult result) {
+				// results arrive in completion order, never concurrently
+				int index = result.getIndex();
+				while (results.size() <= index) {
+					results.add(null);
+				}
+				results.set(index, (R) result.getResult());
+			}
+		}).then(new DoneFilter<Integer, List<R>>() {
+			@Override
+			public List<R> filterDone(Integer count) {
+				return results;
+			}
+		});
+	}
+
+	@Override
+	public <T, R> Promise<Integer, OneReject, Void> mapAsync(
+			Iterable<? extends T> items, DoneFilter<? super T, ? extends R> function, int maxInFlight,
+			DoneCallback<OneResult> consumer) {
+		return new MapDeferredObject<T, R>(this, items, function, maxInFlight, consumer).promise();
+	}
+
+	@Override
+	public <A, T> Promise<A, OneReject, MasterProgress> foldAsync(
+			A initial, Accumulator<A, T> accumulator, Promise... promises) {
+		assertNotEmpty(promises);
+		return new FoldDeferredObject<A, T>(initial, accumulator, promises).promise();
+	}
+
+	@Override
+	public <A, T> Promise<A, OneReject, MasterProgress> foldAsync(
+			A initial, Accumulator<A, T> accumulator, Iterable<? extends Promise> promises) {
+		return new FoldDeferredObject<A, T>(initial, accumulator, toCollection(promises)).promise();
+	}
+
+	@Override
+	public <T> Promise<T, OneReject, MasterProgress> reduceAsync(Combiner<T> combiner, Promise... promises) {
+		assertNotEmpty(promises);
+		return new ReduceDeferredObject<T>(combiner, promises).promise();
+	}
+
+	@Override
+	public <T> Promise<T, OneReject, MasterProgress> reduceAsync(Combiner<T> combiner, Iterable<? extends Promise> promises) {
+		return new ReduceDeferredObject<T>(combiner, toCollection(promises)).promise();
+	}
+
+	private DeferredFutureTask[] toTasks(Callable<?>[] callables) {
+		assertNotEmpty(callables);
+
+		DeferredFutureTask[] tasks = new DeferredFutureTask[callables.length];
+		for (int i = 0; i < callables.length; i++) {
+			if (callables[i] instanceof DeferredCallable)
+				tasks[i] = new DeferredFutureTask((DeferredCallable) callables[i]);
+			else
+				tasks[i] = new DeferredFutureTask(callables[i]);
+		}
+		return tasks;
+	}
+
+	private Promise[] promisesOf(DeferredFutureTask[] tasks) {
+		Promise[] promises = new Promise[tasks.length];
+		for (int i = 0; i < tasks.length; i++) {
+			promises[i] = when(tasks[i]);
+		}
+		return promises;
+	}
+
+	private Collection<? extends Promise> toCollection(Iterable<? extends Promise> promises) {
+		if (promises == null)
+			throw new IllegalArgumentException("Promises is null");
+		if (promises instanceof Collection)
+			return (Collection<? extends Promise>) promises;
+
+		List<Promise> list = new ArrayList<Promise>();
+		for (Promise promise : promises) {
+			list.add(promise);
+		}
+		return list;
+	}
+
 	protected void assertNotEmpty(Object[] objects) {
 		if (objects == null || objects.length == 0)
 			throw new IllegalArgumentException(
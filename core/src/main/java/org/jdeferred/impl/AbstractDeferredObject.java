@@ -20,6 +20,7 @@ public abstract class AbstractDeferredObject<D, F, P> extends AbstractPromise<D,
 
     public AbstractDeferredObject(ExceptionHandler exceptionHandler, boolean copyOnWriteLists, List<DoneCallback<D>> doneCallbacks, List<FailCallback<F>> failCallbacks, List<ProgressCallback<P>> progressCallbacks, List<AlwaysCallback<D, F>> alwaysCallbacks) {
         super(exceptionHandler, copyOnWriteLists, doneCallbacks, failCallbacks, progressCallbacks, alwaysCallbacks);
+        Instrumentation.get().promiseCreated(this);
     }
 
     @Override
@@ -32,10 +33,18 @@ public abstract class AbstractDeferredObject<D, F, P> extends AbstractPromise<D,
             this.state = state = State.RESOLVED;
             this.resolveResult = resolve;
         }
+        Instrumentation.get().promiseSettled(this, state);
+        if (leakTracker != null)
+            leakTracker.settled();
+        final Object context = enterContext();
         try {
             triggerDone(resolve);
         } finally {
-            triggerAlways(state, resolve, null);
+            try {
+                triggerAlways(state, resolve, null);
+            } finally {
+                exitContext(context);
+            }
         }
         return this;
     }
@@ -48,7 +57,12 @@ public abstract class AbstractDeferredObject<D, F, P> extends AbstractPromise<D,
 
             state = State.PENDING;
         }
-        triggerProgress(progress);
+        final Object context = enterContext();
+        try {
+            triggerProgress(progress);
+        } finally {
+            exitContext(context);
+        }
         return this;
     }
 
@@ -61,10 +75,18 @@ public abstract class AbstractDeferredObject<D, F, P> extends AbstractPromise<D,
             this.state = state = State.REJECTED;
             this.rejectResult = reject;
         }
+        Instrumentation.get().promiseSettled(this, state);
+        if (leakTracker != null)
+            leakTracker.settled();
+        final Object context = enterContext();
         try {
             triggerFail(reject);
         } finally {
-            triggerAlways(state, null, reject);
+            try {
+                triggerAlways(state, null, reject);
+            } finally {
+                exitContext(context);
+            }
         }
         return this;
     }
@@ -30,7 +30,7 @@ public abstract class AbstractPromise<D, F, P> implements Promise<D, F, P> {
     /**
      * @param exceptionHandler Add a custom exception handler that's to be called if a handler inside a trigger-method fails. <code>null</code> is allowed.
      * @param copyOnWriteLists Set this to <code>true</code> if the list-implementations are copy-on-write lists. Set this to <code>false</code> if the implementations are not copy-on-write lists.
-     * <strong>Important</strong>: <code>false</code> is only allowed in a single-threaded environment.
+     * Callbacks are only added while holding the lock of this promise and, unless the lists are copy-on-write, progress callbacks are iterated from a snapshot.
      * @param doneCallbacks List implementation. List has to be empty.
      * @param failCallbacks List implementation. List has to be empty.
      * @param progressCallbacks List implementation. List has to be empty.
@@ -51,10 +51,19 @@ public abstract class AbstractPromise<D, F, P> implements Promise<D, F, P> {
     protected final List<AlwaysCallback<D, F>> alwaysCallbacks;
     private final ExceptionHandler exceptionHandler;
     private final boolean copyOnWriteLists;
+    /* null unless sampled by the LeakDetector */
+    final LeakDetector.Tracker leakTracker = LeakDetector.track(this);
 
     protected D resolveResult;
     protected F rejectResult;
 
+    /* progressCallbacks as of the last progress(), unless copyOnWriteLists */
+    private volatile Object[] progressSnapshot = NO_CALLBACKS;
+
+    private static final Object[] NO_CALLBACKS = new Object[0];
+    private static final Object NOT_CAPTURED = new Object();
+    private volatile Object context = NOT_CAPTURED;
+
     @Override
     public State state() {
         return state;
@@ -62,122 +71,189 @@ public abstract class AbstractPromise<D, F, P> implements Promise<D, F, P> {
 
     @Override
     public Promise<D, F, P> done(DoneCallback<D> callback) {
-        if (this.copyOnWriteLists) {
-            doneCallbacks.add(callback);
-        }
-
+        final Object snapshot = callbackAdded();
         final D result;
-        final boolean resolved;
         synchronized (this) {
-            resolved = isResolved();
-            result = resolveResult;
-            if (!this.copyOnWriteLists) {
-                /* Don't add it to the doneCallbacks to prevent ConcurrentModificationException when triggerDone() */
-                if (isPending()) {
-                    doneCallbacks.add(callback);
-                }
+            /* Either kept for resolve() or run right here, never both: the state only changes under this lock */
+            if (isPending()) {
+                doneCallbacks.add(sharesContext(snapshot) ? callback : new Contextual<D, F, P>(callback, snapshot));
+                return this;
             }
+            if (!isResolved())
+                return this;
+            result = resolveResult;
         }
-        if (resolved)
-            callback.onDone(result);
-
+        callback.onDone(result);
         return this;
     }
 
     @Override
     public Promise<D, F, P> fail(FailCallback<F> callback) {
-        if (this.copyOnWriteLists) {
-            failCallbacks.add(callback);
-        }
-
+        final Object snapshot = callbackAdded();
         final F result;
-        final boolean rejected;
         synchronized (this) {
-            rejected = isRejected();
-            result = rejectResult;
-            if (!this.copyOnWriteLists) {
-                /* Don't add it to the doneCallbacks to prevent ConcurrentModificationException when triggerDone() */
-                if (isPending()) {
-                    failCallbacks.add(callback);
-                }
+            if (isPending()) {
+                failCallbacks.add(sharesContext(snapshot) ? callback : new Contextual<D, F, P>(callback, snapshot));
+                return this;
             }
+            if (!isRejected())
+                return this;
+            result = rejectResult;
         }
-        if (rejected)
-            callback.onFail(result);
-
+        callback.onFail(result);
         return this;
     }
 
     @Override
     public Promise<D, F, P> always(AlwaysCallback<D, F> callback) {
-        if (this.copyOnWriteLists) {
-            alwaysCallbacks.add(callback);
-        }
-
+        final Object snapshot = callbackAdded();
         final State state;
         final D resolveResult;
         final F rejectResult;
         synchronized (this) {
+            if (isPending()) {
+                alwaysCallbacks.add(sharesContext(snapshot) ? callback : new Contextual<D, F, P>(callback, snapshot));
+                return this;
+            }
             state = this.state;
             resolveResult = this.resolveResult;
             rejectResult = this.rejectResult;
-            if (!this.copyOnWriteLists) {
-                /* Don't add it to the doneCallbacks to prevent ConcurrentModificationException when triggerDone() */
-                if (isPending()) {
-                    alwaysCallbacks.add(callback);
-                }
-            }
         }
-
-        if (state != State.PENDING)
-            callback.onAlways(state, resolveResult, rejectResult);
+        callback.onAlways(state, resolveResult, rejectResult);
         return this;
     }
 
     protected void triggerDone(D resolved) {
+        final Instrumentation instrumentation = Instrumentation.get();
         for (DoneCallback<D> callback : doneCallbacks) {
+            final Object target = unwrap(callback);
+            final long started = instrumentation.callbackStarted(this, target);
             try {
                 callback.onDone(resolved);
             } catch (Exception e) {
-                invokeOnException(Location.doneCallback, e, callback);
+                invokeOnException(Location.doneCallback, e, target);
                 log.log(Level.SEVERE, "an uncaught exception occured in a DoneCallback", e);
+            } finally {
+                instrumentation.callbackFinished(this, target, started);
             }
         }
     }
 
     protected void triggerFail(F rejected) {
+        final Instrumentation instrumentation = Instrumentation.get();
         for (FailCallback<F> callback : failCallbacks) {
+            final Object target = unwrap(callback);
+            final long started = instrumentation.callbackStarted(this, target);
             try {
                 callback.onFail(rejected);
             } catch (Exception e) {
-                invokeOnException(Location.failCallback, e, callback);
+                invokeOnException(Location.failCallback, e, target);
                 log.log(Level.SEVERE, "an uncaught exception occured in a FailCallback", e);
+            } finally {
+                instrumentation.callbackFinished(this, target, started);
             }
         }
     }
 
+    @SuppressWarnings("unchecked")
     protected void triggerProgress(P progress) {
-        for (ProgressCallback<P> callback : progressCallbacks) {
-            try {
-                callback.onProgress(progress);
-            } catch (Exception e) {
-                invokeOnException(Location.progressCallback, e, callback);
-                log.log(Level.SEVERE, "an uncaught exception occured in a ProgressCallback", e);
-            }
+        final Instrumentation instrumentation = Instrumentation.get();
+        if (this.copyOnWriteLists) {
+            for (ProgressCallback<P> callback : progressCallbacks)
+                triggerProgress(instrumentation, callback, progress);
+        } else {
+            /* progress() may add callbacks meanwhile, iterate the snapshot it published */
+            for (Object callback : progressSnapshot)
+                triggerProgress(instrumentation, (ProgressCallback<P>) callback, progress);
+        }
+    }
+
+    private void triggerProgress(Instrumentation instrumentation, ProgressCallback<P> callback, P progress) {
+        final Object target = unwrap(callback);
+        final long started = instrumentation.callbackStarted(this, target);
+        try {
+            callback.onProgress(progress);
+        } catch (Exception e) {
+            invokeOnException(Location.progressCallback, e, target);
+            log.log(Level.SEVERE, "an uncaught exception occured in a ProgressCallback", e);
+        } finally {
+            instrumentation.callbackFinished(this, target, started);
         }
     }
 
     protected void triggerAlways(State state, D resolve, F reject) {
+        final Instrumentation instrumentation = Instrumentation.get();
         for (AlwaysCallback<D, F> callback : alwaysCallbacks) {
+            final Object target = unwrap(callback);
+            final long started = instrumentation.callbackStarted(this, target);
             try {
                 callback.onAlways(state, resolve, reject);
             } catch (Exception e) {
-                invokeOnException(Location.alwaysCallback, e, callback);
+                invokeOnException(Location.alwaysCallback, e, target);
                 log.log(Level.SEVERE, "an uncaught exception occured in a AlwaysCallback", e);
+            } finally {
+                instrumentation.callbackFinished(this, target, started);
             }
         }
     }
 
+    /**
+     * Called when a callback is registered.
+     * 
+     * @return the registering thread's context if the callback may be kept, see {@link ContextPropagator}
+     */
+    private Object callbackAdded() {
+        if (leakTracker != null)
+            leakTracker.callbackAdded();
+        /* the state never goes back to pending, settled promises run the callback right away */
+        return isPending() ? ContextPropagator.get().capture() : NOT_CAPTURED;
+    }
+
+    /**
+     * Makes the first snapshot the promise's own. Must hold the lock.
+     * 
+     * @return <code>true</code> if the callback can run in the promise's context
+     */
+    private boolean sharesContext(Object snapshot) {
+        if (context == NOT_CAPTURED) {
+            context = snapshot;
+            return true;
+        }
+        return snapshot == null ? context == null : snapshot.equals(context);
+    }
+
+    private static Object unwrap(Object callback) {
+        return callback instanceof Contextual ? ((Contextual<?, ?, ?>) callback).callback : callback;
+    }
+
+    /**
+     * Shares the context snapshot of the promise this one is chained to, so that a chain
+     * captures it only once.
+     * 
+     * @param promise
+     */
+    protected void adoptContext(Promise<?, ?, ?> promise) {
+        if (promise instanceof AbstractPromise)
+            context = ((AbstractPromise<?, ?, ?>) promise).context;
+    }
+
+    /**
+     * Restores the captured context before triggering callbacks.
+     * 
+     * @return to be passed to {@link #exitContext(Object)}
+     */
+    protected Object enterContext() {
+        Object snapshot = context;
+        if (snapshot == NOT_CAPTURED)
+            return NOT_CAPTURED;
+        return ContextPropagator.get().restore(snapshot);
+    }
+
+    protected void exitContext(Object previous) {
+        if (previous != NOT_CAPTURED)
+            ContextPropagator.get().reset(previous);
+    }
+
     private void invokeOnException(Location location, Exception exception, Object handler) {
         if (this.exceptionHandler != null) {
             try {
@@ -191,10 +267,29 @@ public abstract class AbstractPromise<D, F, P> implements Promise<D, F, P> {
 
     @Override
     public Promise<D, F, P> progress(ProgressCallback<P> callback) {
-        progressCallbacks.add(callback);
+        final Object snapshot = callbackAdded();
+        synchronized (this) {
+            /* A finished promise never notifies progress again, don't keep the callback */
+            if (isPending()) {
+                progressCallbacks.add(sharesContext(snapshot) ? callback : new Contextual<D, F, P>(callback, snapshot));
+                if (!this.copyOnWriteLists)
+                    progressSnapshot = progressCallbacks.toArray();
+            }
+        }
         return this;
     }
 
+    /**
+     * Lets subclasses skip building progress objects nobody listens to.
+     * 
+     * @return <code>true</code> if at least one {@link ProgressCallback} has been registered
+     */
+    protected boolean hasProgressCallbacks() {
+        if (this.copyOnWriteLists)
+            return !progressCallbacks.isEmpty();
+        return progressSnapshot.length != 0;
+    }
+
     @Override
     public Promise<D, F, P> then(DoneCallback<D> callback) {
         return done(callback);
@@ -244,4 +339,59 @@ public abstract class AbstractPromise<D, F, P> implements Promise<D, F, P> {
     public boolean isRejected() {
         return state == State.REJECTED;
     }
+
+    /**
+     * A callback registered in another context than the one the promise captured first,
+     * e.g. by the second caller sharing a pending promise.
+     */
+    @SuppressWarnings("unchecked")
+    private static final class Contextual<D, F, P> implements DoneCallback<D>, FailCallback<F>, ProgressCallback<P>, AlwaysCallback<D, F> {
+        final Object callback;
+        final Object context;
+
+        Contextual(Object callback, Object context) {
+            this.callback = callback;
+            this.context = context;
+        }
+
+        @Override
+        public void onDone(D result) {
+            final Object previous = ContextPropagator.get().restore(context);
+            try {
+                ((DoneCallback<D>) callback).onDone(result);
+            } finally {
+                ContextPropagator.get().reset(previous);
+            }
+        }
+
+        @Override
+        public void onFail(F result) {
+            final Object previous = ContextPropagator.get().restore(context);
+            try {
+                ((FailCallback<F>) callback).onFail(result);
+            } finally {
+                ContextPropagator.get().reset(previous);
+            }
+        }
+
+        @Override
+        public void onProgress(P progress) {
+            final Object previous = ContextPropagator.get().restore(context);
+            try {
+                ((ProgressCallback<P>) callback).onProgress(progress);
+            } finally {
+                ContextPropagator.get().reset(previous);
+            }
+        }
+
+        @Override
+        public void onAlways(State state, D resolved, F rejected) {
+            final Object previous = ContextPropagator.get().restore(context);
+            try {
+                ((AlwaysCallback<D, F>) callback).onAlways(state, resolved, rejected);
+            } finally {
+                ContextPropagator.get().reset(previous);
+            }
+        }
+    }
 }
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.DeferredCallable;
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.DeferredRunnable;
+import org.jdeferred.Promise;
+
+/**
+ * Stops submitting tasks to another {@link AbstractDeferredManager} while they keep
+ * failing or being slow.
+ *
+ * <ul>
+ * <li>{@link State#CLOSED}: tasks are submitted, and the outcome and duration of the
+ * last {@link #setSlidingWindowSize(int)} tasks are recorded. Once at least
+ * {@link #setMinimumNumberOfCalls(int)} have been recorded and either the failure rate
+ * or the slow call rate reaches its threshold, the circuit opens.</li>
+ * <li>{@link State#OPEN}: tasks are not submitted, every call returns the same promise,
+ * rejected with {@link CircuitBreakerOpenException#INSTANCE}. After
+ * {@link #setWaitDurationInOpenState(long, TimeUnit)} the circuit becomes half open.</li>
+ * <li>{@link State#HALF_OPEN}: only {@link #setPermittedCallsInHalfOpenState(int)} trial
+ * tasks are submitted, the others are rejected as if open. Once all trial tasks finished,
+ * the circuit opens again if the rates still reach their thresholds, or closes.</li>
+ * </ul>
+ *
+ * The duration of a task is measured from the call to <code>when</code> until its promise
+ * is resolved or rejected. Only tasks started in the current state are recorded. A
+ * {@link DeferredFutureTask} passed in while the circuit is open is cancelled.
+ *
+ * @author Ray Tsang
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class CircuitBreakerDeferredManager extends DelegatingDeferredManager {
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private static final Promise OPEN_PROMISE = new DeferredObject().reject(CircuitBreakerOpenException.INSTANCE).promise();
+
+	private double failureRateThreshold = 0.5;
+	private double slowCallRateThreshold = 1.0;
+	private long slowCallDurationNanos = TimeUnit.SECONDS.toNanos(60);
+	private int slidingWindowSize = 100;
+	private int minimumNumberOfCalls = 10;
+	private long waitDurationInOpenStateNanos = TimeUnit.SECONDS.toNanos(60);
+	private int permittedCallsInHalfOpenState = 10;
+
+	private volatile State state = State.CLOSED;
+	private volatile long openedAt;
+	private volatile int generation;
+	private int halfOpenPermits;
+	private OutcomeWindow window = new OutcomeWindow(slidingWindowSize);
+
+	public CircuitBreakerDeferredManager(AbstractDeferredManager delegate) {
+		super(delegate);
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * @param failureRateThreshold fraction of failed calls that opens the circuit, between 0 and 1, defaults to 0.5
+	 */
+	public synchronized void setFailureRateThreshold(double failureRateThreshold) {
+		this.failureRateThreshold = checkRate(failureRateThreshold);
+	}
+
+	/**
+	 * @param slowCallRateThreshold fraction of slow calls that opens the circuit, between 0 and 1, defaults to 1
+	 */
+	public synchronized void setSlowCallRateThreshold(double slowCallRateThreshold) {
+		this.slowCallRateThreshold = checkRate(slowCallRateThreshold);
+	}
+
+	/**
+	 * @param duration calls taking at least this long are slow, defaults to 60 seconds
+	 * @param unit
+	 */
+	public synchronized void setSlowCallDuration(long duration, TimeUnit unit) {
+		this.slowCallDurationNanos = checkDuration(duration, unit);
+	}
+
+	/**
+	 * Resets the recorded outcomes.
+	 *
+	 * @param slidingWindowSize number of recent calls the rates are computed from, defaults to 100
+	 */
+	public synchronized void setSlidingWindowSize(int slidingWindowSize) {
+		if (slidingWindowSize < 1)
+			throw new IllegalArgumentException("Sliding window size must be at least 1");
+		this.slidingWindowSize = slidingWindowSize;
+		if (state == State.CLOSED)
+			transitionTo(State.CLOSED);
+	}
+
+	/**
+	 * At most {@link #setSlidingWindowSize(int)} calls are ever recorded, a larger minimum
+	 * is clamped to the sliding window size.
+	 *
+	 * @param minimumNumberOfCalls number of calls needed before the circuit may open, defaults to 10
+	 */
+	public synchronized void setMinimumNumberOfCalls(int minimumNumberOfCalls) {
+		if (minimumNumberOfCalls < 1)
+			throw new IllegalArgumentException("Minimum number of calls must be at least 1");
+		this.minimumNumberOfCalls = minimumNumberOfCalls;
+	}
+
+	/**
+	 * @param duration how long the circuit stays open before allowing trial calls, defaults to 60 seconds
+	 * @param unit
+	 */
+	public synchronized void setWaitDurationInOpenState(long duration, TimeUnit unit) {
+		this.waitDurationInOpenStateNanos = checkDuration(duration, unit);
+	}
+
+	/**
+	 * @param permittedCallsInHalfOpenState number of trial calls while half open, defaults to 10
+	 */
+	public synchronized void setPermittedCallsInHalfOpenState(int permittedCallsInHalfOpenState) {
+		if (permittedCallsInHalfOpenState < 1)
+			throw new IllegalArgumentException("Permitted calls in half open state must be at least 1");
+		this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+	}
+
+	/**
+	 * Closes the circuit and forgets the recorded outcomes.
+	 */
+	public synchronized void reset() {
+		transitionTo(State.CLOSED);
+	}
+
+	@Override
+	public <D, P> Promise<D, Throwable, P> when(DeferredFutureTask<D, P> task) {
+		int permit = acquire();
+		if (permit < 0) {
+			task.cancel(false);
+			return OPEN_PROMISE;
+		}
+		return observe(task, permit);
+	}
+
+	@Override
+	public <D, P> Promise<D, Throwable, P> when(DeferredCallable<D, P> callable) {
+		int permit = acquire();
+		if (permit < 0)
+			return OPEN_PROMISE;
+		return observe(new DeferredFutureTask<D, P>(callable), permit);
+	}
+
+	@Override
+	public <P> Promise<Void, Throwable, P> when(DeferredRunnable<P> runnable) {
+		int permit = acquire();
+		if (permit < 0)
+			return OPEN_PROMISE;
+		return observe(new DeferredFutureTask<Void, P>(runnable), permit);
+	}
+
+	@Override
+	public <D> Promise<D, Throwable, Void> when(Callable<D> callable) {
+		int permit = acquire();
+		if (permit < 0)
+			return OPEN_PROMISE;
+		return observe(new DeferredFutureTask<D, Void>(callable), permit);
+	}
+
+	@Override
+	public Promise<Void, Throwable, Void> when(Runnable runnable) {
+		int permit = acquire();
+		if (permit < 0)
+			return OPEN_PROMISE;
+		return observe(new DeferredFutureTask<Void, Void>(runnable), permit);
+	}
+
+	/**
+	 * Whether a rejection counts as a failure. Override to ignore, e.g., validation errors.
+	 *
+	 * @param reject
+	 * @return <code>true</code>
+	 */
+	protected boolean isFailure(Throwable reject) {
+		return true;
+	}
+
+	/**
+	 * Time source for durations and the open state, in nanoseconds.
+	 *
+	 * @return {@link System#nanoTime()}
+	 */
+	protected long ticker() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * @return the generation of the current state if the call may proceed, <code>-1</code> otherwise
+	 */
+	private int acquire() {
+		// generation is written before state, a stale generation only means the outcome is ignored
+		int permit = generation;
+		State current = state;
+		if (current == State.CLOSED)
+			return permit;
+		if (current == State.OPEN && ticker() - openedAt < waitDurationInOpenStateNanos)
+			return -1;
+
+		synchronized (this) {
+			if (state == State.OPEN) {
+				if (ticker() - openedAt < waitDurationInOpenStateNanos)
+					return -1;
+				transitionTo(State.HALF_OPEN);
+			}
+			if (state == State.HALF_OPEN) {
+				if (halfOpenPermits == 0)
+					return -1;
+				halfOpenPermits--;
+			}
+			return generation;
+		}
+	}
+
+	private <D, P> Promise<D, Throwable, P> observe(DeferredFutureTask<D, P> task, final int permit) {
+		final long start = ticker();
+		task.promise().always(new AlwaysCallback<D, Throwable>() {
+			@Override
+			public void onAlways(Promise.State state, D resolved, Throwable rejected) {
+				boolean failure = state == Promise.State.REJECTED && isFailure(rejected);
+				record(permit, failure, ticker() - start);
+			}
+		});
+		return super.when(task);
+	}
+
+	private synchronized void record(int permit, boolean failure, long durationNanos) {
+		if (permit != generation)
+			return;
+
+		window.record(failure, durationNanos >= slowCallDurationNanos);
+		if (state == State.CLOSED) {
+			if (window.calls() >= Math.min(minimumNumberOfCalls, slidingWindowSize) && isAboveThreshold())
+				transitionTo(State.OPEN);
+		} else if (state == State.HALF_OPEN && window.isFull()) {
+			transitionTo(isAboveThreshold() ? State.OPEN : State.CLOSED);
+		}
+	}
+
+	private boolean isAboveThreshold() {
+		return window.failureRate() >= failureRateThreshold
+				|| window.slowCallRate() >= slowCallRateThreshold;
+	}
+
+	private void transitionTo(State next) {
+		generation++;
+		if (next == State.OPEN) {
+			openedAt = ticker();
+		} else if (next == State.HALF_OPEN) {
+			halfOpenPermits = permittedCallsInHalfOpenState;
+			window = new OutcomeWindow(permittedCallsInHalfOpenState);
+		} else {
+			window = new OutcomeWindow(slidingWindowSize);
+		}
+		state = next;
+	}
+
+	private static double checkRate(double rate) {
+		if (!(rate > 0 && rate <= 1))
+			throw new IllegalArgumentException("Rate threshold must be greater than 0 and at most 1");
+		return rate;
+	}
+
+	private static long checkDuration(long duration, TimeUnit unit) {
+		if (duration < 0)
+			throw new IllegalArgumentException("Duration must not be negative");
+		return unit.toNanos(duration);
+	}
+}
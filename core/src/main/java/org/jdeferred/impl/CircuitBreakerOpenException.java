@@ -0,0 +1,38 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+/**
+ * Rejection of calls that a {@link CircuitBreakerDeferredManager} did not even submit
+ * because its circuit is open. There is a single instance without a stack trace, so
+ * rejecting a call allocates nothing.
+ *
+ * @author Ray Tsang
+ */
+public final class CircuitBreakerOpenException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	public static final CircuitBreakerOpenException INSTANCE = new CircuitBreakerOpenException();
+
+	private CircuitBreakerOpenException() {
+		super("Circuit breaker is open");
+	}
+
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		return this;
+	}
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.Deferred;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.DoneFilter;
+import org.jdeferred.FailCallback;
+import org.jdeferred.FailFilter;
+import org.jdeferred.ProgressCallback;
+import org.jdeferred.ProgressFilter;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.ExceptionHandler.Location;
+
+/**
+ * {@link Deferred} that only signals completion: it resolves without a value, or rejects
+ * with a {@link Throwable}. Used by {@link org.jdeferred.DeferredFutureTask} for
+ * {@link Runnable}s.
+ *
+ * Everything is kept in a single word, updated by compare-and-set: while pending, the
+ * registered callbacks as a chain of small nodes, and afterwards the outcome. There are
+ * no callback lists, no lock and no progress: progress callbacks are never called and
+ * {@link #notify(Object)} discards the progress.
+ *
+ * Callbacks are triggered in the order they were registered, done and fail callbacks
+ * before always callbacks, like {@link DeferredObject}, and use its exception handler.
+ * Signals are sampled by the {@link LeakDetector} like other promises.
+ *
+ * @author Ray Tsang
+ *
+ * @param <D> Type used for {@link #resolve(Object)}, which only accepts <code>null</code>
+ * @param <P> Type used for {@link #notify(Object)}
+ */
+@SuppressWarnings({ "unchecked", "rawtypes" })
+public class CompletionSignal<D, P> implements Deferred<D, Throwable, P> {
+	private static final Logger log = Logger.getLogger(CompletionSignal.class.getName());
+	private static final AtomicReferenceFieldUpdater<CompletionSignal, Object> STATE =
+			AtomicReferenceFieldUpdater.newUpdater(CompletionSignal.class, Object.class, "state");
+
+	private static final Object RESOLVED = new Object();
+	private static final Object REJECTED_WITH_NULL = new Object();
+	private static final Object NOT_CAPTURED = new Object();
+	private static final int DONE = 0;
+	private static final int FAIL = 1;
+	private static final int ALWAYS = 2;
+
+	/* null or the last registered Waiter while pending, then RESOLVED, or the rejection */
+	private volatile Object state;
+	/* null unless sampled by the LeakDetector */
+	private final LeakDetector.Tracker leakTracker = LeakDetector.track(this);
+
+	public CompletionSignal() {
+		Instrumentation.get().promiseCreated(this);
+	}
+
+	@Override
+	public State state() {
+		Object state = this.state;
+		if (isPending(state))
+			return State.PENDING;
+		return state == RESOLVED ? State.RESOLVED : State.REJECTED;
+	}
+
+	@Override
+	public boolean isPending() {
+		return isPending(state);
+	}
+
+	@Override
+	public boolean isResolved() {
+		return state == RESOLVED;
+	}
+
+	@Override
+	public boolean isRejected() {
+		Object state = this.state;
+		return !isPending(state) && state != RESOLVED;
+	}
+
+	/**
+	 * @param resolve has to be <code>null</code>
+	 */
+	@Override
+	public Deferred<D, Throwable, P> resolve(D resolve) {
+		if (resolve != null)
+			throw new IllegalArgumentException("A completion signal cannot be resolved with a value");
+		settle(RESOLVED, "resolve");
+		return this;
+	}
+
+	@Override
+	public Deferred<D, Throwable, P> reject(Throwable reject) {
+		settle(reject == null ? REJECTED_WITH_NULL : reject, "reject");
+		return this;
+	}
+
+	@Override
+	public Deferred<D, Throwable, P> notify(P progress) {
+		if (!isPending())
+			throw new IllegalStateException("Deferred object already finished, cannot notify progress");
+		return this;
+	}
+
+	@Override
+	public Promise<D, Throwable, P> promise() {
+		return this;
+	}
+
+	@Override
+	public Promise<D, Throwable, P> done(DoneCallback<D> callback) {
+		register(callback, DONE);
+		return this;
+	}
+
+	@Override
+	public Promise<D, Throwable, P> fail(FailCallback<Throwable> callback) {
+		register(callback, FAIL);
+		return this;
+	}
+
+	@Override
+	public Promise<D, Throwable, P> always(AlwaysCallback<D, Throwable> callback) {
+		register(callback, ALWAYS);
+		return this;
+	}
+
+	/**
+	 * Never called, since there is no progress.
+	 */
+	@Override
+	public Promise<D, Throwable, P> progress(ProgressCallback<P> callback) {
+		return this;
+	}
+
+	@Override
+	public Promise<D, Throwable, P> then(DoneCallback<D> callback) {
+		return done(callback);
+	}
+
+	@Override
+	public Promise<D, Throwable, P> then(DoneCallback<D> doneCallback, FailCallback<Throwable> failCallback) {
+		done(doneCallback);
+		fail(failCallback);
+		return this;
+	}
+
+	@Override
+	public Promise<D, Throwable, P> then(DoneCallback<D> doneCallback, FailCallback<Throwable> failCallback, ProgressCallback<P> progressCallback) {
+		done(doneCallback);
+		fail(failCallback);
+		return this;
+	}
+
+	@Override
+	public <D_OUT, F_OUT, P_OUT> Promise<D_OUT, F_OUT, P_OUT> then(DoneFilter<D, D_OUT> doneFilter) {
+		return new FilteredPromise<D, Throwable, P, D_OUT, F_OUT, P_OUT>(this, doneFilter, null, null);
+	}
+
+	@Override
+	public <D_OUT, F_OUT, P_OUT> Promise<D_OUT, F_OUT, P_OUT> then(DoneFilter<D, D_OUT> doneFilter, FailFilter<Throwable, F_OUT> failFilter) {
+		return new FilteredPromise<D, Throwable, P, D_OUT, F_OUT, P_OUT>(this, doneFilter, failFilter, null);
+	}
+
+	@Override
+	public <D_OUT, F_OUT, P_OUT> Promise<D_OUT, F_OUT, P_OUT> then(DoneFilter<D, D_OUT> doneFilter, FailFilter<Throwable, F_OUT> failFilter, ProgressFilter<P, P_OUT> progressFilter) {
+		return new FilteredPromise<D, Throwable, P, D_OUT, F_OUT, P_OUT>(this, doneFilter, failFilter, progressFilter);
+	}
+
+	private static boolean isPending(Object state) {
+		return state == null || state instanceof Waiter;
+	}
+
+	private void register(Object callback, int kind) {
+		Object context = NOT_CAPTURED;
+		for (;;) {
+			Object state = this.state;
+			if (!isPending(state)) {
+				invoke(callback, kind, state);
+				return;
+			}
+			// each callback runs in the context it was registered in, see ContextPropagator
+			if (context == NOT_CAPTURED)
+				context = ContextPropagator.get().capture();
+			Waiter waiter = new Waiter(callback, kind, (Waiter) state, context);
+			if (STATE.compareAndSet(this, state, waiter)) {
+				if (leakTracker != null)
+					leakTracker.callbackAdded();
+				return;
+			}
+		}
+	}
+
+	private void settle(Object outcome, String action) {
+		Object state;
+		do {
+			state = this.state;
+			if (!isPending(state))
+				throw new IllegalStateException("Deferred object already finished, cannot " + action + " again");
+		} while (!STATE.compareAndSet(this, state, outcome));
+
+		if (leakTracker != null)
+			leakTracker.settled();
+		Instrumentation.get().promiseSettled(this, outcome == RESOLVED ? State.RESOLVED : State.REJECTED);
+		if (state != null)
+			trigger(reverse((Waiter) state), outcome);
+	}
+
+	/* the chain is no longer reachable by other threads once the outcome replaced it */
+	private static Waiter reverse(Waiter last) {
+		Waiter first = null;
+		while (last != null) {
+			Waiter previous = last.next;
+			last.next = first;
+			first = last;
+			last = previous;
+		}
+		return first;
+	}
+
+	private void trigger(Waiter first, Object outcome) {
+		final Instrumentation instrumentation = Instrumentation.get();
+		final ContextPropagator propagator = ContextPropagator.get();
+		final Object previous = propagator.restore(first.context);
+		try {
+			for (Waiter waiter = first; waiter != null; waiter = waiter.next) {
+				if (waiter.kind != ALWAYS)
+					trigger(instrumentation, waiter, first.context, outcome);
+			}
+			for (Waiter waiter = first; waiter != null; waiter = waiter.next) {
+				if (waiter.kind == ALWAYS)
+					trigger(instrumentation, waiter, first.context, outcome);
+			}
+		} finally {
+			propagator.reset(previous);
+		}
+	}
+
+	private void trigger(Instrumentation instrumentation, Waiter waiter, Object context, Object outcome) {
+		if (waiter.kind == DONE ? outcome != RESOLVED : waiter.kind == FAIL && outcome == RESOLVED)
+			return;
+
+		/* only callbacks registered in another context than the first one switch */
+		final ContextPropagator propagator = ContextPropagator.get();
+		final Object previous = sameContext(waiter.context, context) ? NOT_CAPTURED : propagator.restore(waiter.context);
+		final long started = instrumentation.callbackStarted(this, waiter.callback);
+		try {
+			invoke(waiter.callback, waiter.kind, outcome);
+		} catch (Exception e) {
+			Location location = waiter.kind == DONE ? Location.doneCallback : waiter.kind == FAIL ? Location.failCallback : Location.alwaysCallback;
+			String type = waiter.kind == DONE ? "DoneCallback" : waiter.kind == FAIL ? "FailCallback" : "AlwaysCallback";
+			ExceptionHandler exceptionHandler = DeferredObject.getExceptionHandler();
+			if (exceptionHandler != null) {
+				try {
+					exceptionHandler.onException(location, e, waiter.callback);
+				} catch (Exception ex) {
+					log.log(Level.SEVERE, "A exception handler has thrown an exception.", ex);
+				}
+			}
+			log.log(Level.SEVERE, "an uncaught exception occured in a " + type, e);
+		} finally {
+			instrumentation.callbackFinished(this, waiter.callback, started);
+			if (previous != NOT_CAPTURED)
+				propagator.reset(previous);
+		}
+	}
+
+	private static boolean sameContext(Object context, Object other) {
+		return context == null ? other == null : context.equals(other);
+	}
+
+	private static void invoke(Object callback, int kind, Object outcome) {
+		Throwable rejection = outcome == RESOLVED || outcome == REJECTED_WITH_NULL ? null : (Throwable) outcome;
+		switch (kind) {
+		case DONE:
+			if (outcome == RESOLVED)
+				((DoneCallback) callback).onDone(null);
+			break;
+		case FAIL:
+			if (outcome != RESOLVED)
+				((FailCallback) callback).onFail(rejection);
+			break;
+		default:
+			((AlwaysCallback) callback).onAlways(outcome == RESOLVED ? State.RESOLVED : State.REJECTED, null, rejection);
+		}
+	}
+
+	private static final class Waiter {
+		final Object callback;
+		final int kind;
+		final Object context;
+		Waiter next;
+
+		Waiter(Object callback, int kind, Waiter next, Object context) {
+			this.callback = callback;
+			this.kind = kind;
+			this.next = next;
+			this.context = context;
+		}
+	}
+}
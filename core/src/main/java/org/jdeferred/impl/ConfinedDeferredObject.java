@@ -0,0 +1,362 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.Deferred;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.DoneFilter;
+import org.jdeferred.FailCallback;
+import org.jdeferred.FailFilter;
+import org.jdeferred.ProgressCallback;
+import org.jdeferred.ProgressFilter;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.ExceptionHandler.Location;
+
+/**
+ * {@link Deferred} for code that runs on a single thread, such as an event loop: there is
+ * no lock, no volatile field and no copy of the callback lists. Stages created by
+ * <code>then(...)</code> filters are confined as well, so a whole chain stays free of
+ * synchronization. Created by {@link DeferredFactory#confined()}.
+ *
+ * Using it from another thread is a bug. With thread checks enabled, which is the default
+ * when assertions are enabled, every method fails with an {@link IllegalStateException}
+ * when called from any thread but the one that created the object.
+ *
+ * Callbacks are triggered like with {@link DeferredObject}, using its exception handler.
+ * {@link org.jdeferred.Deadline}s and {@link ContextPropagator} contexts are not propagated
+ * to stages, since everything already runs on the same thread.
+ *
+ * @author Ray Tsang
+ */
+public class ConfinedDeferredObject<D, F, P> implements Deferred<D, F, P> {
+	private static final Logger log = Logger.getLogger(ConfinedDeferredObject.class.getName());
+	private static final boolean CHECK_THREAD = ConfinedDeferredObject.class.desiredAssertionStatus();
+
+	/* null unless thread checks are enabled */
+	private final Thread owner;
+	private State state = State.PENDING;
+	private D resolveResult;
+	private F rejectResult;
+	/* allocated on first use, dropped once settled */
+	private List<DoneCallback<D>> doneCallbacks;
+	private List<FailCallback<F>> failCallbacks;
+	private List<ProgressCallback<P>> progressCallbacks;
+	private List<AlwaysCallback<D, F>> alwaysCallbacks;
+
+	/**
+	 * Checks the thread if assertions are enabled for this class.
+	 */
+	public ConfinedDeferredObject() {
+		this(CHECK_THREAD);
+	}
+
+	/**
+	 * @param checkThread whether to fail when used from another thread than this one
+	 */
+	public ConfinedDeferredObject(boolean checkThread) {
+		this(checkThread ? Thread.currentThread() : null);
+	}
+
+	private ConfinedDeferredObject(Thread owner) {
+		this.owner = owner;
+		Instrumentation.get().promiseCreated(this);
+	}
+
+	@Override
+	public State state() {
+		checkThread();
+		return state;
+	}
+
+	@Override
+	public boolean isPending() {
+		return state() == State.PENDING;
+	}
+
+	@Override
+	public boolean isResolved() {
+		return state() == State.RESOLVED;
+	}
+
+	@Override
+	public boolean isRejected() {
+		return state() == State.REJECTED;
+	}
+
+	@Override
+	public Deferred<D, F, P> resolve(D resolve) {
+		if (!isPending())
+			throw new IllegalStateException("Deferred object already finished, cannot resolve again");
+		state = State.RESOLVED;
+		resolveResult = resolve;
+		Instrumentation.get().promiseSettled(this, state);
+
+		List<DoneCallback<D>> doneCallbacks = this.doneCallbacks;
+		List<AlwaysCallback<D, F>> alwaysCallbacks = this.alwaysCallbacks;
+		clearCallbacks();
+		final Instrumentation instrumentation = Instrumentation.get();
+		try {
+			if (doneCallbacks != null) {
+				for (int i = 0; i < doneCallbacks.size(); i++) {
+					DoneCallback<D> callback = doneCallbacks.get(i);
+					final long started = instrumentation.callbackStarted(this, callback);
+					try {
+						callback.onDone(resolve);
+					} catch (Exception e) {
+						handleException(Location.doneCallback, e, callback);
+						log.log(Level.SEVERE, "an uncaught exception occured in a DoneCallback", e);
+					} finally {
+						instrumentation.callbackFinished(this, callback, started);
+					}
+				}
+			}
+		} finally {
+			triggerAlways(instrumentation, alwaysCallbacks);
+		}
+		return this;
+	}
+
+	@Override
+	public Deferred<D, F, P> reject(F reject) {
+		if (!isPending())
+			throw new IllegalStateException("Deferred object already finished, cannot reject again");
+		state = State.REJECTED;
+		rejectResult = reject;
+		Instrumentation.get().promiseSettled(this, state);
+
+		List<FailCallback<F>> failCallbacks = this.failCallbacks;
+		List<AlwaysCallback<D, F>> alwaysCallbacks = this.alwaysCallbacks;
+		clearCallbacks();
+		final Instrumentation instrumentation = Instrumentation.get();
+		try {
+			if (failCallbacks != null) {
+				for (int i = 0; i < failCallbacks.size(); i++) {
+					FailCallback<F> callback = failCallbacks.get(i);
+					final long started = instrumentation.callbackStarted(this, callback);
+					try {
+						callback.onFail(reject);
+					} catch (Exception e) {
+						handleException(Location.failCallback, e, callback);
+						log.log(Level.SEVERE, "an uncaught exception occured in a FailCallback", e);
+					} finally {
+						instrumentation.callbackFinished(this, callback, started);
+					}
+				}
+			}
+		} finally {
+			triggerAlways(instrumentation, alwaysCallbacks);
+		}
+		return this;
+	}
+
+	@Override
+	public Deferred<D, F, P> notify(P progress) {
+		if (!isPending())
+			throw new IllegalStateException("Deferred object already finished, cannot notify progress");
+		if (progressCallbacks == null)
+			return this;
+
+		final Instrumentation instrumentation = Instrumentation.get();
+		// by index: a callback may register another one
+		for (int i = 0; i < progressCallbacks.size(); i++) {
+			ProgressCallback<P> callback = progressCallbacks.get(i);
+			final long started = instrumentation.callbackStarted(this, callback);
+			try {
+				callback.onProgress(progress);
+			} catch (Exception e) {
+				handleException(Location.progressCallback, e, callback);
+				log.log(Level.SEVERE, "an uncaught exception occured in a ProgressCallback", e);
+			} finally {
+				instrumentation.callbackFinished(this, callback, started);
+			}
+			if (progressCallbacks == null)
+				break;
+		}
+		return this;
+	}
+
+	@Override
+	public Promise<D, F, P> promise() {
+		return this;
+	}
+
+	@Override
+	public Promise<D, F, P> done(DoneCallback<D> callback) {
+		if (isPending()) {
+			if (doneCallbacks == null)
+				doneCallbacks = new ArrayList<DoneCallback<D>>(2);
+			doneCallbacks.add(callback);
+		} else if (state == State.RESOLVED) {
+			callback.onDone(resolveResult);
+		}
+		return this;
+	}
+
+	@Override
+	public Promise<D, F, P> fail(FailCallback<F> callback) {
+		if (isPending()) {
+			if (failCallbacks == null)
+				failCallbacks = new ArrayList<FailCallback<F>>(2);
+			failCallbacks.add(callback);
+		} else if (state == State.REJECTED) {
+			callback.onFail(rejectResult);
+		}
+		return this;
+	}
+
+	@Override
+	public Promise<D, F, P> always(AlwaysCallback<D, F> callback) {
+		if (isPending()) {
+			if (alwaysCallbacks == null)
+				alwaysCallbacks = new ArrayList<AlwaysCallback<D, F>>(2);
+			alwaysCallbacks.add(callback);
+		} else {
+			callback.onAlways(state, resolveResult, rejectResult);
+		}
+		return this;
+	}
+
+	@Override
+	public Promise<D, F, P> progress(ProgressCallback<P> callback) {
+		/* A finished promise never notifies progress again, don't keep the callback */
+		if (isPending()) {
+			if (progressCallbacks == null)
+				progressCallbacks = new ArrayList<ProgressCallback<P>>(2);
+			progressCallbacks.add(callback);
+		}
+		return this;
+	}
+
+	@Override
+	public Promise<D, F, P> then(DoneCallback<D> callback) {
+		return done(callback);
+	}
+
+	@Override
+	public Promise<D, F, P> then(DoneCallback<D> doneCallback, FailCallback<F> failCallback) {
+		done(doneCallback);
+		fail(failCallback);
+		return this;
+	}
+
+	@Override
+	public Promise<D, F, P> then(DoneCallback<D> doneCallback, FailCallback<F> failCallback, ProgressCallback<P> progressCallback) {
+		done(doneCallback);
+		fail(failCallback);
+		progress(progressCallback);
+		return this;
+	}
+
+	@Override
+	public <D_OUT, F_OUT, P_OUT> Promise<D_OUT, F_OUT, P_OUT> then(DoneFilter<D, D_OUT> doneFilter) {
+		return then(doneFilter, null, null);
+	}
+
+	@Override
+	public <D_OUT, F_OUT, P_OUT> Promise<D_OUT, F_OUT, P_OUT> then(DoneFilter<D, D_OUT> doneFilter, FailFilter<F, F_OUT> failFilter) {
+		return then(doneFilter, failFilter, null);
+	}
+
+	@Override
+	public <D_OUT, F_OUT, P_OUT> Promise<D_OUT, F_OUT, P_OUT> then(DoneFilter<D, D_OUT> doneFilter, FailFilter<F, F_OUT> failFilter, ProgressFilter<P, P_OUT> progressFilter) {
+		Stage<D, F, P, D_OUT, F_OUT, P_OUT> stage = new Stage<D, F, P, D_OUT, F_OUT, P_OUT>(owner, doneFilter, failFilter, progressFilter);
+		fail(stage);
+		progress(stage);
+		done(stage);
+		return stage;
+	}
+
+	private void checkThread() {
+		if (owner != null && owner != Thread.currentThread())
+			throw new IllegalStateException("Confined to thread " + owner.getName() + ", used from thread " + Thread.currentThread().getName());
+	}
+
+	private void clearCallbacks() {
+		doneCallbacks = null;
+		failCallbacks = null;
+		progressCallbacks = null;
+		alwaysCallbacks = null;
+	}
+
+	private void triggerAlways(Instrumentation instrumentation, List<AlwaysCallback<D, F>> callbacks) {
+		if (callbacks == null)
+			return;
+		for (int i = 0; i < callbacks.size(); i++) {
+			AlwaysCallback<D, F> callback = callbacks.get(i);
+			final long started = instrumentation.callbackStarted(this, callback);
+			try {
+				callback.onAlways(state, resolveResult, rejectResult);
+			} catch (Exception e) {
+				handleException(Location.alwaysCallback, e, callback);
+				log.log(Level.SEVERE, "an uncaught exception occured in a AlwaysCallback", e);
+			} finally {
+				instrumentation.callbackFinished(this, callback, started);
+			}
+		}
+	}
+
+	private static void handleException(Location location, Exception exception, Object handler) {
+		ExceptionHandler exceptionHandler = DeferredObject.getExceptionHandler();
+		if (exceptionHandler == null)
+			return;
+		try {
+			exceptionHandler.onException(location, exception, handler);
+		} catch (Exception ex) {
+			/* Catch exceptions the exception handler has thrown */
+			log.log(Level.SEVERE, "A exception handler has thrown an exception.", ex);
+		}
+	}
+
+	/**
+	 * Stage created by <code>then(...)</code> filters, listening to the previous one itself.
+	 * Missing filters pass values through unchanged, like in {@link FilteredPromise}.
+	 */
+	@SuppressWarnings("unchecked")
+	private static final class Stage<D, F, P, D_OUT, F_OUT, P_OUT> extends ConfinedDeferredObject<D_OUT, F_OUT, P_OUT>
+			implements DoneCallback<D>, FailCallback<F>, ProgressCallback<P> {
+		private final DoneFilter<D, D_OUT> doneFilter;
+		private final FailFilter<F, F_OUT> failFilter;
+		private final ProgressFilter<P, P_OUT> progressFilter;
+
+		Stage(Thread owner, DoneFilter<D, D_OUT> doneFilter, FailFilter<F, F_OUT> failFilter, ProgressFilter<P, P_OUT> progressFilter) {
+			super(owner);
+			this.doneFilter = doneFilter;
+			this.failFilter = failFilter;
+			this.progressFilter = progressFilter;
+		}
+
+		@Override
+		public void onDone(D result) {
+			resolve(doneFilter == null ? (D_OUT) result : doneFilter.filterDone(result));
+		}
+
+		@Override
+		public void onFail(F result) {
+			reject(failFilter == null ? (F_OUT) result : failFilter.filterFail(result));
+		}
+
+		@Override
+		public void onProgress(P progress) {
+			notify(progressFilter == null ? (P_OUT) progress : progressFilter.filterProgress(progress));
+		}
+	}
+}
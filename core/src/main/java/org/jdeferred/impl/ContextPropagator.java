@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+/**
+ * Carries thread-bound context, such as the logging MDC or a trace id, to the threads
+ * that run tasks and callbacks.
+ *
+ * <pre>
+ * <code>
+ * {@link ContextPropagator}.set(new {@link MdcContextPropagator}());
+ * </code>
+ * </pre>
+ *
+ * A {@link org.jdeferred.DeferredFutureTask} captures the context when it is created and
+ * restores it while it runs. A promise captures the context when a callback is registered
+ * and restores it while its callbacks are triggered; stages created by <code>then(...)</code>
+ * share the snapshot of the promise they are chained to. A callback registered in another
+ * context than the promise's, e.g. by a second caller waiting on the same pending promise,
+ * runs in its own. Callbacks registered on a promise that already settled run right away
+ * in the registering thread's own context.
+ *
+ * The propagator should be set once at startup, snapshots of one propagator are not
+ * understood by another. By default nothing is captured.
+ *
+ * @author Ray Tsang
+ */
+public abstract class ContextPropagator {
+	private static final ContextPropagator NOOP = new ContextPropagator() {
+		@Override
+		public Object capture() {
+			return null;
+		}
+
+		@Override
+		public Object restore(Object snapshot) {
+			return null;
+		}
+	};
+
+	private static volatile ContextPropagator current = NOOP;
+
+	/**
+	 * @return the propagator in use, never <code>null</code>
+	 */
+	public static ContextPropagator get() {
+		return current;
+	}
+
+	/**
+	 * @param propagator used from now on by all promises and tasks, <code>null</code> to disable
+	 */
+	public static void set(ContextPropagator propagator) {
+		current = propagator == null ? NOOP : propagator;
+	}
+
+	/**
+	 * @return an immutable snapshot of the current thread's context, may be <code>null</code>
+	 */
+	public abstract Object capture();
+
+	/**
+	 * Installs a snapshot in the current thread.
+	 *
+	 * @param snapshot value returned by {@link #capture()}
+	 * @return the context it replaced, passed to {@link #reset(Object)} afterwards
+	 */
+	public abstract Object restore(Object snapshot);
+
+	/**
+	 * Puts back the context replaced by {@link #restore(Object)}.
+	 *
+	 * @param previous value returned by {@link #restore(Object)}
+	 */
+	public void reset(Object previous) {
+		restore(previous);
+	}
+}
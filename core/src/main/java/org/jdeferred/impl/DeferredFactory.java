@@ -0,0 +1,78 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import org.jdeferred.Deferred;
+
+/**
+ * Creates {@link Deferred} objects, so that code can be written once and used either
+ * across threads or confined to a single one.
+ *
+ * <pre>
+ * <code>
+ * {@link DeferredFactory} factory = eventLoop ? {@link DeferredFactory}.confined() : {@link DeferredFactory}.shared();
+ * {@link Deferred}&lt;Integer, Exception, Void&gt; deferred = factory.create();
+ * </code>
+ * </pre>
+ *
+ * @author Ray Tsang
+ */
+public abstract class DeferredFactory {
+	private static final DeferredFactory SHARED = new DeferredFactory() {
+		@Override
+		public <D, F, P> Deferred<D, F, P> create() {
+			return new DeferredObject<D, F, P>();
+		}
+	};
+
+	private static final DeferredFactory CONFINED = new DeferredFactory() {
+		@Override
+		public <D, F, P> Deferred<D, F, P> create() {
+			return new ConfinedDeferredObject<D, F, P>();
+		}
+	};
+
+	public abstract <D, F, P> Deferred<D, F, P> create();
+
+	/**
+	 * @return a factory of {@link DeferredObject}s, which can be used from any thread
+	 */
+	public static DeferredFactory shared() {
+		return SHARED;
+	}
+
+	/**
+	 * @return a factory of {@link ConfinedDeferredObject}s, which check the thread they
+	 * are used from if assertions are enabled
+	 */
+	public static DeferredFactory confined() {
+		return CONFINED;
+	}
+
+	/**
+	 * @param checkThread whether to fail when a deferred object is used from another
+	 * thread than the one that created it
+	 * @return a factory of {@link ConfinedDeferredObject}s
+	 */
+	public static DeferredFactory confined(final boolean checkThread) {
+		return new DeferredFactory() {
+			@Override
+			public <D, F, P> Deferred<D, F, P> create() {
+				return new ConfinedDeferredObject<D, F, P>(checkThread);
+			}
+		};
+	}
+}
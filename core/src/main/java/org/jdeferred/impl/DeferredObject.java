@@ -64,4 +64,11 @@ public class DeferredObject<D, F, P> extends AbstractDeferredObject<D, F, P> {
     public static void setExceptionHandler(ExceptionHandler exceptionHandler) {
         DeferredObject.exceptionHandler = exceptionHandler;
     }
+
+    /**
+     * @return the exception handler set by {@link #setExceptionHandler(ExceptionHandler)}, may be <code>null</code>
+     */
+    public static ExceptionHandler getExceptionHandler() {
+        return exceptionHandler;
+    }
 }
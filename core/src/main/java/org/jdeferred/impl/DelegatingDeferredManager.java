@@ -0,0 +1,58 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Base class of {@link org.jdeferred.DeferredManager}s that decorate how tasks are
+ * submitted, while another {@link AbstractDeferredManager} executes them.
+ * Only {@link #submit(Runnable)}, {@link #submit(Callable)} and {@link #isAutoSubmit()}
+ * forward to the delegate; everything else, e.g. creating the tasks of
+ * <code>when(...)</code>, is done by this manager. Subclasses override the submit methods
+ * to delay, reject or wrap tasks.
+ * 
+ * @author Ray Tsang
+ */
+@SuppressWarnings("rawtypes")
+public class DelegatingDeferredManager extends AbstractDeferredManager {
+	private final AbstractDeferredManager delegate;
+
+	public DelegatingDeferredManager(AbstractDeferredManager delegate) {
+		if (delegate == null)
+			throw new IllegalArgumentException("Delegate must not be null");
+		this.delegate = delegate;
+	}
+
+	public AbstractDeferredManager getDelegate() {
+		return delegate;
+	}
+
+	@Override
+	protected void submit(Runnable runnable) {
+		delegate.submit(runnable);
+	}
+
+	@Override
+	protected void submit(Callable callable) {
+		delegate.submit(callable);
+	}
+
+	@Override
+	public boolean isAutoSubmit() {
+		return delegate.isAutoSubmit();
+	}
+}
@@ -15,6 +15,8 @@
  */
 package org.jdeferred.impl;
 
+import org.jdeferred.Deadline;
+import org.jdeferred.DeadlineExceededException;
 import org.jdeferred.DoneCallback;
 import org.jdeferred.DoneFilter;
 import org.jdeferred.FailCallback;
@@ -23,11 +25,24 @@ import org.jdeferred.ProgressCallback;
 import org.jdeferred.ProgressFilter;
 import org.jdeferred.Promise;
 
+/**
+ * Stage created by {@link Promise#then(DoneFilter, FailFilter, ProgressFilter)}.
+ * 
+ * The {@link Deadline} of the thread creating the stage is attached while the filters run,
+ * so that tasks they create inherit it. The stage itself never expires: only tasks are
+ * rejected with {@link DeadlineExceededException#INSTANCE}, since the rejection type of a
+ * stage is not necessarily a supertype of it.
+ * 
+ * The stage shares the {@link ContextPropagator} snapshot of the promise it is chained to.
+ * 
+ * @author Ray Tsang
+ */
 @SuppressWarnings({ "unchecked", "rawtypes" })
 public class FilteredPromise<D, F, P, D_OUT, F_OUT, P_OUT> extends DeferredObject<D_OUT, F_OUT, P_OUT> implements Promise<D_OUT, F_OUT, P_OUT>{
 	private final DoneFilter<D, D_OUT> doneFilter;
 	private final FailFilter<F, F_OUT> failFilter;
 	private final ProgressFilter<P, P_OUT> progressFilter;
+	private final Deadline deadline = Deadline.current();
 	
 	public FilteredPromise(final Promise<D, F, P> promise, final DoneFilter<D, D_OUT> doneFilter, final FailFilter<F, F_OUT> failFilter, final ProgressFilter<P, P_OUT> progressFilter) {
 		//super(new DeferredObject<D_OUT, F_OUT, P_OUT>());
@@ -38,13 +53,25 @@ public class FilteredPromise<D, F, P, D_OUT, F_OUT, P_OUT> extends DeferredObjec
 		promise.done(new DoneCallback<D>() {
 			@Override
 			public void onDone(D result) {
-				FilteredPromise.this.resolve(FilteredPromise.this.doneFilter.filterDone(result));
+				Deadline previous = deadline == null ? null : deadline.attach();
+				try {
+					FilteredPromise.this.resolve(FilteredPromise.this.doneFilter.filterDone(result));
+				} finally {
+					if (deadline != null)
+						Deadline.restore(previous);
+				}
 			}
 		}).fail(new FailCallback<F>() {
 
 			@Override
 			public void onFail(F result) {
-				FilteredPromise.this.reject(FilteredPromise.this.failFilter.filterFail(result));
+				Deadline previous = deadline == null ? null : deadline.attach();
+				try {
+					FilteredPromise.this.reject(FilteredPromise.this.failFilter.filterFail(result));
+				} finally {
+					if (deadline != null)
+						Deadline.restore(previous);
+				}
 			}
 		}).progress(new ProgressCallback<P>() {
 
@@ -53,6 +80,7 @@ public class FilteredPromise<D, F, P, D_OUT, F_OUT, P_OUT> extends DeferredObjec
 				FilteredPromise.this.notify(FilteredPromise.this.progressFilter.filterProgress(progress));
 			}
 		});
+		adoptContext(promise);
 	}
 	
 	public static final class NoOpDoneFilter<D> implements DoneFilter<D, D> {
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jdeferred.Deadline;
+import org.jdeferred.DeferredCallable;
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.DeferredManager.StartPolicy;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+
+/**
+ * Cuts tail latency by starting a backup copy of a slow call.
+ *
+ * <pre>
+ * <code>
+ * {@link HedgingDeferredManager} dm = new {@link HedgingDeferredManager}(new {@link DefaultDeferredManager}());
+ * dm.setPercentile(0.95);
+ * dm.setHedgeBudget(0.05, 10); // at most 5% extra calls, bursts of 10
+ *
+ * dm.when(new Callable() { ... }).done(...);
+ * </code>
+ * </pre>
+ *
+ * If a call passed to {@link #when(Callable)} has not completed after the hedge delay,
+ * the same {@link Callable} is submitted once more. The first copy to succeed resolves the
+ * promise and the other one is cancelled; the promise is only rejected once every copy
+ * failed. The callable must therefore be safe to call twice. Both copies run with the
+ * {@link Deadline} and the {@link ContextPropagator} context of the caller.
+ *
+ * The hedge delay is {@link #setHedgeDelay(long, TimeUnit)} if set, otherwise the
+ * {@link #setPercentile(double)} of the latencies of recent successful calls. Until
+ * {@link #setMinimumNumberOfCalls(int)} calls succeeded, calls are not hedged. Every call
+ * adds a fraction of a hedge to a budget, and a hedge is only started if the budget has a
+ * whole one left, so a slow backend does not receive twice the load.
+ *
+ * Tasks are submitted even if {@link #isAutoSubmit()} is <code>false</code>, since the
+ * backup copy has to be. Other kinds of tasks are not hedged.
+ *
+ * @author Ray Tsang
+ */
+public class HedgingDeferredManager extends DelegatingDeferredManager {
+	private static final Logger log = Logger.getLogger(HedgingDeferredManager.class.getName());
+	private static final long UNSET = -1;
+	private static final int REFRESH_INTERVAL = 64;
+	private static final int DECAY_INTERVAL = 8192;
+
+	private final ScheduledExecutorService timer;
+	private final boolean ownsTimer;
+	private final LatencyHistogram histogram = new LatencyHistogram();
+	private final AtomicLong recorded = new AtomicLong();
+
+	private volatile double percentile = 0.95;
+	private volatile int minimumNumberOfCalls = 100;
+	private volatile long hedgeDelayNanos = UNSET;
+	private volatile long observedDelayNanos = UNSET;
+
+	private double hedgeRatio = 0.1;
+	private double hedgeBurst = 10;
+	private double budget = hedgeBurst;
+
+	/**
+	 * Creates a timer backed by a single daemon thread, stopped by {@link #shutdown()}.
+	 *
+	 * @param delegate executes the tasks
+	 */
+	public HedgingDeferredManager(AbstractDeferredManager delegate) {
+		this(delegate, Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("jdeferred-hedging")), true);
+	}
+
+	/**
+	 * @param delegate executes the tasks
+	 * @param timer starts backup copies, it only submits them and never runs them
+	 */
+	public HedgingDeferredManager(AbstractDeferredManager delegate, ScheduledExecutorService timer) {
+		this(delegate, timer, false);
+	}
+
+	private HedgingDeferredManager(AbstractDeferredManager delegate, ScheduledExecutorService timer, boolean ownsTimer) {
+		super(delegate);
+		if (timer == null)
+			throw new IllegalArgumentException("Timer must not be null");
+		this.timer = timer;
+		this.ownsTimer = ownsTimer;
+	}
+
+	/**
+	 * Stops the timer created by {@link #HedgingDeferredManager(AbstractDeferredManager)}.
+	 * Calls are no longer hedged, calls in flight keep running. Does nothing if the timer
+	 * was passed in; the delegate is never shut down.
+	 */
+	public void shutdown() {
+		if (ownsTimer)
+			timer.shutdownNow();
+	}
+
+	/**
+	 * @param percentile percentile of the observed latencies used as hedge delay, between 0 and 1, defaults to 0.95
+	 */
+	public void setPercentile(double percentile) {
+		if (!(percentile > 0 && percentile <= 1))
+			throw new IllegalArgumentException("Percentile must be greater than 0 and at most 1");
+		this.percentile = percentile;
+		refresh();
+	}
+
+	/**
+	 * @param minimumNumberOfCalls number of successful calls needed before the observed latency is used, defaults to 100
+	 */
+	public void setMinimumNumberOfCalls(int minimumNumberOfCalls) {
+		if (minimumNumberOfCalls < 1)
+			throw new IllegalArgumentException("Minimum number of calls must be at least 1");
+		this.minimumNumberOfCalls = minimumNumberOfCalls;
+		refresh();
+	}
+
+	/**
+	 * Uses a fixed hedge delay instead of the observed latency.
+	 *
+	 * @param delay
+	 * @param unit
+	 */
+	public void setHedgeDelay(long delay, TimeUnit unit) {
+		if (delay < 0)
+			throw new IllegalArgumentException("Delay must not be negative");
+		this.hedgeDelayNanos = unit.toNanos(delay);
+	}
+
+	/**
+	 * Goes back to using the observed latency as hedge delay.
+	 */
+	public void removeHedgeDelay() {
+		this.hedgeDelayNanos = UNSET;
+	}
+
+	/**
+	 * @return the delay after which calls are currently hedged in nanoseconds, <code>-1</code> if they are not
+	 */
+	public long getHedgeDelayNanos() {
+		long delay = hedgeDelayNanos;
+		return delay != UNSET ? delay : observedDelayNanos;
+	}
+
+	/**
+	 * @param ratio number of hedges allowed per call, between 0 and 1, defaults to 0.1
+	 * @param burst number of hedges that may be started at once, defaults to 10
+	 */
+	public synchronized void setHedgeBudget(double ratio, int burst) {
+		if (!(ratio >= 0 && ratio <= 1))
+			throw new IllegalArgumentException("Ratio must be between 0 and 1");
+		if (burst < 1)
+			throw new IllegalArgumentException("Burst must be at least 1");
+		this.hedgeRatio = ratio;
+		this.hedgeBurst = burst;
+		this.budget = Math.min(budget, burst);
+	}
+
+	@Override
+	public <D> Promise<D, Throwable, Void> when(Callable<D> callable) {
+		deposit();
+		Hedge<D> hedge = new Hedge<D>(callable);
+		hedge.start(getHedgeDelayNanos());
+		return hedge.deferred.promise();
+	}
+
+	/**
+	 * Time source for latencies, in nanoseconds.
+	 *
+	 * @return {@link System#nanoTime()}
+	 */
+	protected long ticker() {
+		return System.nanoTime();
+	}
+
+	private synchronized void deposit() {
+		budget = Math.min(hedgeBurst, budget + hedgeRatio);
+	}
+
+	private synchronized boolean withdraw() {
+		if (budget < 1)
+			return false;
+		budget--;
+		return true;
+	}
+
+	private synchronized void refund() {
+		budget = Math.min(hedgeBurst, budget + 1);
+	}
+
+	private void record(long latencyNanos) {
+		histogram.record(latencyNanos);
+		long count = recorded.incrementAndGet();
+		if (count % DECAY_INTERVAL == 0)
+			histogram.decay();
+		if (count % REFRESH_INTERVAL == 0 || observedDelayNanos == UNSET)
+			refresh();
+	}
+
+	private void refresh() {
+		observedDelayNanos = histogram.getCount() < minimumNumberOfCalls
+				? UNSET : histogram.getValueAtPercentile(percentile);
+	}
+
+	/**
+	 * One call and its backup copy, settles the promise with the first success.
+	 */
+	private class Hedge<D> implements DoneCallback<D>, FailCallback<Throwable>, Runnable {
+		private final DeferredObject<D, Throwable, Void> deferred = new DeferredObject<D, Throwable, Void>();
+		private final Callable<D> callable;
+		private final long start = ticker();
+		// the backup is created on the timer thread, which has neither of them
+		private final Deadline deadline = Deadline.current();
+		private final Object context = ContextPropagator.get().capture();
+		private final Future<?>[] attempts = new Future<?>[2];
+		private int running;
+		private boolean settled;
+		private Future<?> scheduled;
+
+		Hedge(Callable<D> callable) {
+			this.callable = callable;
+		}
+
+		void start(long delayNanos) {
+			attempt(0);
+			if (delayNanos == UNSET)
+				return;
+
+			Future<?> scheduled;
+			try {
+				scheduled = timer.schedule(this, delayNanos, TimeUnit.NANOSECONDS);
+			} catch (RejectedExecutionException e) {
+				// shut down, the call is not hedged
+				return;
+			}
+			synchronized (this) {
+				this.scheduled = scheduled;
+				if (!settled)
+					return;
+			}
+			scheduled.cancel(false);
+		}
+
+		@Override
+		public void run() {
+			final ContextPropagator propagator = ContextPropagator.get();
+			final Object previousContext = propagator.restore(context);
+			final Deadline previousDeadline = deadline == null ? null : deadline.attach();
+			try {
+				attempt(1);
+			} catch (RuntimeException e) {
+				// the primary copy keeps running, e.g. the delegate is saturated
+				log.log(Level.WARNING, "Could not start backup call", e);
+			} finally {
+				if (deadline != null)
+					Deadline.restore(previousDeadline);
+				propagator.reset(previousContext);
+			}
+		}
+
+		/**
+		 * Submits a copy of the call. The backup copy is only submitted, and only takes a
+		 * hedge from the budget, if the call has not settled yet.
+		 */
+		private void attempt(int index) {
+			DeferredFutureTask<D, Void> task = new DeferredFutureTask<D, Void>(new DeferredCallable<D, Void>(StartPolicy.AUTO) {
+				@Override
+				public D call() throws Exception {
+					return callable.call();
+				}
+			});
+			synchronized (this) {
+				if (settled || index > 0 && !withdraw())
+					return;
+				attempts[index] = task;
+				running++;
+			}
+			task.promise().done(this).fail(this);
+			try {
+				HedgingDeferredManager.this.when(task);
+			} catch (RuntimeException e) {
+				synchronized (this) {
+					running--;
+				}
+				if (index > 0)
+					refund();
+				throw e;
+			}
+		}
+
+		@Override
+		public void onDone(D result) {
+			synchronized (this) {
+				if (settled)
+					return;
+				settled = true;
+			}
+			record(ticker() - start);
+			cancelAll();
+			deferred.resolve(result);
+		}
+
+		@Override
+		public void onFail(Throwable reject) {
+			synchronized (this) {
+				running--;
+				if (settled || running > 0)
+					return;
+				settled = true;
+			}
+			cancelAll();
+			deferred.reject(reject);
+		}
+
+		private void cancelAll() {
+			Future<?> scheduled;
+			Future<?>[] attempts;
+			synchronized (this) {
+				scheduled = this.scheduled;
+				attempts = this.attempts.clone();
+			}
+			if (scheduled != null)
+				scheduled.cancel(false);
+			for (Future<?> attempt : attempts) {
+				if (attempt != null)
+					attempt.cancel(true);
+			}
+		}
+	}
+}
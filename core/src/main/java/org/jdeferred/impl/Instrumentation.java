@@ -0,0 +1,130 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.Promise;
+
+/**
+ * Hooks into the lifecycle of promises, callbacks and tasks, e.g. to collect metrics.
+ * All methods do nothing by default, subclasses override the ones they need. They are
+ * called on the thread doing the work and must not block or throw.
+ *
+ * <pre>
+ * <code>
+ * {@link MetricsInstrumentation} metrics = new {@link MetricsInstrumentation}();
+ * {@link Instrumentation}.set(metrics);
+ * </code>
+ * </pre>
+ *
+ * The <code>long</code> returned by the <code>...Started</code> and <code>...Submitted</code>
+ * hooks is handed back to the matching hook at the end, so that no state has to be kept
+ * per promise. Typically it is {@link System#nanoTime()}. The default instance returns
+ * <code>0</code> and is inlined away, so instrumentation costs nothing until it is set.
+ *
+ * @author Ray Tsang
+ */
+public abstract class Instrumentation {
+	private static final Instrumentation NOOP = new Instrumentation() {
+	};
+
+	private static volatile Instrumentation current = NOOP;
+
+	/**
+	 * @return the instrumentation in use, never <code>null</code>
+	 */
+	public static Instrumentation get() {
+		return current;
+	}
+
+	/**
+	 * @param instrumentation used from now on by all promises and tasks, <code>null</code> to disable
+	 */
+	public static void set(Instrumentation instrumentation) {
+		current = instrumentation == null ? NOOP : instrumentation;
+	}
+
+	/**
+	 * Called by the constructor of {@link AbstractDeferredObject}, before subclasses are
+	 * initialized.
+	 *
+	 * @param promise
+	 */
+	public void promiseCreated(Promise<?, ?, ?> promise) {
+	}
+
+	/**
+	 * Called once the promise is resolved or rejected, before its callbacks are triggered.
+	 *
+	 * @param promise
+	 * @param state {@link Promise.State#RESOLVED} or {@link Promise.State#REJECTED}
+	 */
+	public void promiseSettled(Promise<?, ?, ?> promise, Promise.State state) {
+	}
+
+	/**
+	 * Called before a registered callback is triggered.
+	 *
+	 * @param promise
+	 * @param callback
+	 * @return passed to {@link #callbackFinished(Promise, Object, long)}
+	 */
+	public long callbackStarted(Promise<?, ?, ?> promise, Object callback) {
+		return 0;
+	}
+
+	/**
+	 * Called after a registered callback returned or threw.
+	 *
+	 * @param promise
+	 * @param callback
+	 * @param started value returned by {@link #callbackStarted(Promise, Object)}
+	 */
+	public void callbackFinished(Promise<?, ?, ?> promise, Object callback, long started) {
+	}
+
+	/**
+	 * Called by {@link AbstractDeferredManager} right before it submits the task.
+	 *
+	 * @param task
+	 * @return passed to {@link #taskStarted(DeferredFutureTask, long)}
+	 */
+	public long taskSubmitted(DeferredFutureTask<?, ?> task) {
+		return 0;
+	}
+
+	/**
+	 * Called on the executing thread before the task runs.
+	 *
+	 * @param task
+	 * @param submitted value returned by {@link #taskSubmitted(DeferredFutureTask)},
+	 * <code>0</code> if the task was not submitted by a manager
+	 * @return passed to {@link #taskFinished(DeferredFutureTask, long, long)}
+	 */
+	public long taskStarted(DeferredFutureTask<?, ?> task, long submitted) {
+		return 0;
+	}
+
+	/**
+	 * Called on the executing thread once the task ran and its promise is settled.
+	 *
+	 * @param task
+	 * @param submitted value returned by {@link #taskSubmitted(DeferredFutureTask)}
+	 * @param started value returned by {@link #taskStarted(DeferredFutureTask, long)}
+	 */
+	public void taskFinished(DeferredFutureTask<?, ?> task, long submitted, long started) {
+	}
+}
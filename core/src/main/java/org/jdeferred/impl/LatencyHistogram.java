@@ -0,0 +1,114 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent histogram of durations in nanoseconds, with log-linear buckets: every
+ * power of two is split into {@value #SUB_BUCKETS} buckets, so a percentile is
+ * accurate to about 6% whatever the magnitude. Recording is a single atomic increment.
+ *
+ * Counts can be halved with {@link #decay()} so that old samples fade out.
+ *
+ * @author Ray Tsang
+ */
+public final class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	/**
+	 * @param nanos duration, negative values are recorded as <code>0</code>
+	 */
+	public void record(long nanos) {
+		counts.incrementAndGet(indexOf(Math.max(0, nanos)));
+	}
+
+	public void record(long duration, TimeUnit unit) {
+		record(unit.toNanos(duration));
+	}
+
+	/**
+	 * @param percentile between 0 and 1, e.g. 0.95
+	 * @return upper bound of the bucket holding the percentile in nanoseconds, <code>-1</code> if nothing was recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (percentile < 0 || percentile > 1)
+			throw new IllegalArgumentException("Percentile must be between 0 and 1");
+
+		long total = getCount();
+		if (total == 0)
+			return -1;
+
+		long rank = Math.max(1, (long) Math.ceil(percentile * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank)
+				return upperBoundOf(i);
+		}
+		// samples recorded concurrently with the scan
+		return upperBoundOf(BUCKETS - 1);
+	}
+
+	public long getCount() {
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			total += counts.get(i);
+		}
+		return total;
+	}
+
+	/**
+	 * Halves all counts. Samples recorded concurrently may be halved or not.
+	 */
+	public void decay() {
+		for (int i = 0; i < BUCKETS; i++) {
+			long count;
+			do {
+				count = counts.get(i);
+			} while (count != 0 && !counts.compareAndSet(i, count, count >>> 1));
+		}
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+	}
+
+	static int indexOf(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		int msb = 63 - Long.numberOfLeadingZeros(value);
+		int shift = msb - SUB_BUCKET_BITS;
+		int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+		return (shift + 1) * SUB_BUCKETS + sub;
+	}
+
+	static long upperBoundOf(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+		int shift = index / SUB_BUCKETS - 1;
+		long sub = index % SUB_BUCKETS;
+		long upper = ((SUB_BUCKETS + sub + 1) << shift) - 1;
+		return upper < 0 ? Long.MAX_VALUE : upper;
+	}
+}
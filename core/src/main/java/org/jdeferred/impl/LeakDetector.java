@@ -0,0 +1,197 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reports promises that never settle although callbacks are waiting on them.
+ *
+ * <pre>
+ * <code>
+ * {@link LeakDetector} detector = new {@link LeakDetector}();
+ * detector.setSamplingRate(0.01);
+ * detector.setMaxAge(5, TimeUnit.MINUTES);
+ * {@link LeakDetector}.set(detector);
+ * </code>
+ * </pre>
+ *
+ * A fraction of the promises is tracked with a {@link PhantomReference} and the stack
+ * trace of their creation. A tracked promise that has callbacks and is still pending is
+ * reported once, either when it is garbage collected or once it is older than the max age.
+ * Checks happen when promises are sampled, at most once per second for the age, or
+ * explicitly with {@link #check()}; the detector has no thread of its own.
+ *
+ * @author Ray Tsang
+ */
+public class LeakDetector {
+	private static final Logger log = Logger.getLogger(LeakDetector.class.getName());
+	private static final long SCAN_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private static volatile LeakDetector current;
+
+	private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+	private final Set<Tracker> trackers = Collections.newSetFromMap(new ConcurrentHashMap<Tracker, Boolean>());
+	private final AtomicLong created = new AtomicLong();
+	private final AtomicLong lastScan = new AtomicLong(System.nanoTime());
+	private volatile int samplingInterval = 100;
+	private volatile long maxAgeNanos = TimeUnit.MINUTES.toNanos(5);
+
+	/**
+	 * @return the detector in use, or <code>null</code>
+	 */
+	public static LeakDetector get() {
+		return current;
+	}
+
+	/**
+	 * @param detector tracks the promises created from now on, <code>null</code> to disable
+	 */
+	public static void set(LeakDetector detector) {
+		current = detector;
+	}
+
+	/**
+	 * @param rate fraction of promises to track, between 0 and 1, defaults to 0.01
+	 */
+	public void setSamplingRate(double rate) {
+		if (!(rate >= 0 && rate <= 1))
+			throw new IllegalArgumentException("Rate must be between 0 and 1");
+		this.samplingInterval = rate == 0 ? 0 : (int) Math.max(1, Math.round(1 / rate));
+	}
+
+	/**
+	 * @param duration pending promises with callbacks older than this are reported, defaults to 5 minutes
+	 * @param unit
+	 */
+	public void setMaxAge(long duration, TimeUnit unit) {
+		if (duration <= 0)
+			throw new IllegalArgumentException("Duration must be positive");
+		this.maxAgeNanos = unit.toNanos(duration);
+	}
+
+	/**
+	 * @return number of tracked promises that are still pending
+	 */
+	public int getTrackedCount() {
+		return trackers.size();
+	}
+
+	/**
+	 * Reports the tracked promises that were collected or are too old.
+	 */
+	public void check() {
+		reportCollected();
+		reportOld(System.nanoTime());
+	}
+
+	/**
+	 * Called once per leaked promise. Logs a warning by default.
+	 *
+	 * @param message describes the promise and why it is reported
+	 * @param creation stack trace of the creation of the promise
+	 */
+	protected void report(String message, Throwable creation) {
+		log.log(Level.WARNING, message, creation);
+	}
+
+	/**
+	 * Called by every new promise.
+	 *
+	 * @return the tracker of the promise, or <code>null</code> if it is not sampled
+	 */
+	static Tracker track(Object promise) {
+		LeakDetector detector = current;
+		if (detector == null)
+			return null;
+		return detector.sample(promise);
+	}
+
+	private Tracker sample(Object promise) {
+		int interval = samplingInterval;
+		if (interval == 0 || created.incrementAndGet() % interval != 0)
+			return null;
+
+		Tracker tracker = new Tracker(promise, this);
+		trackers.add(tracker);
+		reportCollected();
+
+		long now = System.nanoTime();
+		long last = lastScan.get();
+		if (now - last >= SCAN_INTERVAL_NANOS && lastScan.compareAndSet(last, now))
+			reportOld(now);
+		return tracker;
+	}
+
+	private void reportCollected() {
+		Reference<?> reference;
+		while ((reference = queue.poll()) != null) {
+			Tracker tracker = (Tracker) reference;
+			if (trackers.remove(tracker) && tracker.hasCallbacks && !tracker.reported) {
+				tracker.reported = true;
+				report(tracker.promiseClass + " was garbage collected while pending, its callbacks never ran", tracker.creation);
+			}
+		}
+	}
+
+	private void reportOld(long now) {
+		long maxAge = maxAgeNanos;
+		for (Tracker tracker : trackers) {
+			long age = now - tracker.createdAt;
+			if (tracker.hasCallbacks && !tracker.reported && age >= maxAge) {
+				tracker.reported = true;
+				report(tracker.promiseClass + " is pending with callbacks since "
+						+ TimeUnit.NANOSECONDS.toMillis(age) + "ms", tracker.creation);
+			}
+		}
+	}
+
+	/**
+	 * Tracks one sampled promise until it settles.
+	 */
+	static final class Tracker extends PhantomReference<Object> {
+		private final LeakDetector detector;
+		private final String promiseClass;
+		private final long createdAt = System.nanoTime();
+		private final Throwable creation = new Throwable("Promise created here");
+		private volatile boolean hasCallbacks;
+		private volatile boolean reported;
+
+		Tracker(Object promise, LeakDetector detector) {
+			super(promise, detector.queue);
+			this.detector = detector;
+			this.promiseClass = promise.getClass().getName();
+		}
+
+		void callbackAdded() {
+			hasCallbacks = true;
+		}
+
+		void settled() {
+			detector.trackers.remove(this);
+			clear();
+		}
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.Promise;
+
+/**
+ * {@link Instrumentation} keeping counters of promises, callbacks and tasks, and
+ * {@link LatencyHistogram}s of the time tasks wait in the queue, the time they run
+ * and the time callbacks run. Everything is lock free.
+ *
+ * @author Ray Tsang
+ */
+public class MetricsInstrumentation extends Instrumentation {
+	private final AtomicLong promisesCreated = new AtomicLong();
+	private final AtomicLong promisesResolved = new AtomicLong();
+	private final AtomicLong promisesRejected = new AtomicLong();
+	private final AtomicLong callbacks = new AtomicLong();
+	private final AtomicLong tasksSubmitted = new AtomicLong();
+	private final AtomicLong tasksStarted = new AtomicLong();
+	private final AtomicLong tasksFinished = new AtomicLong();
+	private final LatencyHistogram queueWait = new LatencyHistogram();
+	private final LatencyHistogram executionTime = new LatencyHistogram();
+	private final LatencyHistogram callbackTime = new LatencyHistogram();
+
+	@Override
+	public void promiseCreated(Promise<?, ?, ?> promise) {
+		promisesCreated.incrementAndGet();
+	}
+
+	@Override
+	public void promiseSettled(Promise<?, ?, ?> promise, Promise.State state) {
+		if (state == Promise.State.RESOLVED)
+			promisesResolved.incrementAndGet();
+		else
+			promisesRejected.incrementAndGet();
+	}
+
+	@Override
+	public long callbackStarted(Promise<?, ?, ?> promise, Object callback) {
+		return System.nanoTime();
+	}
+
+	@Override
+	public void callbackFinished(Promise<?, ?, ?> promise, Object callback, long started) {
+		callbacks.incrementAndGet();
+		callbackTime.record(System.nanoTime() - started);
+	}
+
+	@Override
+	public long taskSubmitted(DeferredFutureTask<?, ?> task) {
+		tasksSubmitted.incrementAndGet();
+		return System.nanoTime();
+	}
+
+	@Override
+	public long taskStarted(DeferredFutureTask<?, ?> task, long submitted) {
+		tasksStarted.incrementAndGet();
+		long now = System.nanoTime();
+		if (submitted != 0)
+			queueWait.record(now - submitted);
+		return now;
+	}
+
+	@Override
+	public void taskFinished(DeferredFutureTask<?, ?> task, long submitted, long started) {
+		tasksFinished.incrementAndGet();
+		executionTime.record(System.nanoTime() - started);
+	}
+
+	public long getPromisesCreated() {
+		return promisesCreated.get();
+	}
+
+	public long getPromisesResolved() {
+		return promisesResolved.get();
+	}
+
+	public long getPromisesRejected() {
+		return promisesRejected.get();
+	}
+
+	/**
+	 * @return number of promises created and not settled yet
+	 */
+	public long getPromisesPending() {
+		return promisesCreated.get() - promisesResolved.get() - promisesRejected.get();
+	}
+
+	public long getCallbacks() {
+		return callbacks.get();
+	}
+
+	public long getTasksSubmitted() {
+		return tasksSubmitted.get();
+	}
+
+	public long getTasksStarted() {
+		return tasksStarted.get();
+	}
+
+	public long getTasksFinished() {
+		return tasksFinished.get();
+	}
+
+	/**
+	 * @return time from submission until a task starts running, in nanoseconds
+	 */
+	public LatencyHistogram getQueueWait() {
+		return queueWait;
+	}
+
+	/**
+	 * @return time tasks run, including the callbacks triggered by their promise, in nanoseconds
+	 */
+	public LatencyHistogram getExecutionTime() {
+		return executionTime;
+	}
+
+	/**
+	 * @return time callbacks run, in nanoseconds
+	 */
+	public LatencyHistogram getCallbackTime() {
+		return callbackTime;
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+/**
+ * Outcomes of the last calls, in a ring buffer, with running counts of the failed
+ * and slow ones so that rates are available without scanning the buffer.
+ *
+ * Not thread safe, guarded by the owning {@link CircuitBreakerDeferredManager}.
+ *
+ * @author Ray Tsang
+ */
+final class OutcomeWindow {
+	private static final byte FAILED = 1;
+	private static final byte SLOW = 2;
+
+	private final byte[] outcomes;
+	private int next;
+	private int calls;
+	private int failed;
+	private int slow;
+
+	OutcomeWindow(int size) {
+		this.outcomes = new byte[size];
+	}
+
+	void record(boolean failure, boolean slowCall) {
+		if (calls == outcomes.length) {
+			byte evicted = outcomes[next];
+			if ((evicted & FAILED) != 0)
+				failed--;
+			if ((evicted & SLOW) != 0)
+				slow--;
+		} else {
+			calls++;
+		}
+
+		byte outcome = (byte) ((failure ? FAILED : 0) | (slowCall ? SLOW : 0));
+		outcomes[next] = outcome;
+		if (failure)
+			failed++;
+		if (slowCall)
+			slow++;
+		next = (next + 1) % outcomes.length;
+	}
+
+	int calls() {
+		return calls;
+	}
+
+	boolean isFull() {
+		return calls == outcomes.length;
+	}
+
+	double failureRate() {
+		return calls == 0 ? 0 : (double) failed / calls;
+	}
+
+	double slowCallRate() {
+		return calls == 0 ? 0 : (double) slow / calls;
+	}
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.Promise;
+
+/**
+ * Limits the rate at which tasks are submitted to another {@link AbstractDeferredManager},
+ * using a token bucket per key.
+ *
+ * <pre>
+ * <code>
+ * {@link RateLimitedDeferredManager} dm = new {@link RateLimitedDeferredManager}(new {@link DefaultDeferredManager}());
+ * dm.setRateLimit("billing", 50, 10); // 50 calls per second, bursts of 10
+ * dm.setDefaultRateLimit(500, 100);
+ *
+ * dm.when("billing", new Callable() { ... }).done(...);
+ * </code>
+ * </pre>
+ *
+ * A task over the limit waits in a queue, without holding a thread, until a timer
+ * releases it to the delegate once a token is available. Tasks of the same key are
+ * submitted in order. Tasks submitted without a key, and keys without a limit of their
+ * own, share the default limit, and are not limited at all if there is none.
+ *
+ * @author Ray Tsang
+ */
+@SuppressWarnings("rawtypes")
+public class RateLimitedDeferredManager extends DelegatingDeferredManager {
+	private static final Logger log = Logger.getLogger(RateLimitedDeferredManager.class.getName());
+
+	private final ScheduledExecutorService timer;
+	private final boolean ownsTimer;
+	private final ConcurrentMap<String, Limiter> limiters = new ConcurrentHashMap<String, Limiter>();
+	private volatile Limiter defaultLimiter;
+
+	/**
+	 * Creates a timer backed by a single daemon thread, stopped by {@link #shutdown()}.
+	 *
+	 * @param delegate executes the tasks
+	 */
+	public RateLimitedDeferredManager(AbstractDeferredManager delegate) {
+		this(delegate, Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("jdeferred-rate-limiter")), true);
+	}
+
+	/**
+	 * @param delegate executes the tasks
+	 * @param timer releases queued tasks, it only submits them and never runs them
+	 */
+	public RateLimitedDeferredManager(AbstractDeferredManager delegate, ScheduledExecutorService timer) {
+		this(delegate, timer, false);
+	}
+
+	private RateLimitedDeferredManager(AbstractDeferredManager delegate, ScheduledExecutorService timer, boolean ownsTimer) {
+		super(delegate);
+		if (timer == null)
+			throw new IllegalArgumentException("Timer must not be null");
+		this.timer = timer;
+		this.ownsTimer = ownsTimer;
+	}
+
+	/**
+	 * Stops the timer created by {@link #RateLimitedDeferredManager(AbstractDeferredManager)}.
+	 * Releases already scheduled still run, tasks left in the queue after them are cancelled,
+	 * and tasks over the limit are rejected with a {@link RejectedExecutionException} from
+	 * then on. Does nothing if the timer was passed in; the delegate is never shut down.
+	 */
+	public void shutdown() {
+		if (ownsTimer)
+			timer.shutdown();
+	}
+
+	/**
+	 * Limits the tasks submitted with the given key. Tasks already queued under a
+	 * previous limit of the key are still released at the previous rate.
+	 *
+	 * @param key
+	 * @param permitsPerSecond steady rate
+	 * @param burst number of tasks that may be submitted at once after a quiet period
+	 */
+	public void setRateLimit(String key, double permitsPerSecond, int burst) {
+		if (key == null)
+			throw new IllegalArgumentException("Key must not be null");
+		limiters.put(key, new Limiter(new TokenBucket(permitsPerSecond, burst, ticker())));
+	}
+
+	public void removeRateLimit(String key) {
+		limiters.remove(key);
+	}
+
+	/**
+	 * Limits the tasks submitted without a key, or with a key that has no limit of its own.
+	 *
+	 * @param permitsPerSecond steady rate
+	 * @param burst number of tasks that may be submitted at once after a quiet period
+	 */
+	public void setDefaultRateLimit(double permitsPerSecond, int burst) {
+		defaultLimiter = new Limiter(new TokenBucket(permitsPerSecond, burst, ticker()));
+	}
+
+	public void removeDefaultRateLimit() {
+		defaultLimiter = null;
+	}
+
+	public <D, P> Promise<D, Throwable, P> when(String key, DeferredFutureTask<D, P> task) {
+		if (shouldSubmit(task)) {
+			task.markSubmitted();
+			submit(key, task);
+		}
+		return task.promise();
+	}
+
+	public <D> Promise<D, Throwable, Void> when(String key, Callable<D> callable) {
+		return when(key, new DeferredFutureTask<D, Void>(callable));
+	}
+
+	public Promise<Void, Throwable, Void> when(String key, Runnable runnable) {
+		return when(key, new DeferredFutureTask<Void, Void>(runnable));
+	}
+
+	@Override
+	protected void submit(Runnable runnable) {
+		submit(null, runnable);
+	}
+
+	@Override
+	protected void submit(Callable callable) {
+		submit(null, callable);
+	}
+
+	/**
+	 * @param key may be <code>null</code>
+	 * @param task {@link Runnable} or {@link Callable}
+	 */
+	protected void submit(String key, Object task) {
+		Limiter limiter = key == null ? null : limiters.get(key);
+		if (limiter == null)
+			limiter = defaultLimiter;
+
+		if (limiter == null)
+			release(task);
+		else
+			limiter.submit(task);
+	}
+
+	/**
+	 * Time source of the token buckets, in nanoseconds.
+	 *
+	 * @return {@link System#nanoTime()}
+	 */
+	protected long ticker() {
+		return System.nanoTime();
+	}
+
+	private void release(Object task) {
+		if (task instanceof Runnable)
+			super.submit((Runnable) task);
+		else
+			super.submit((Callable) task);
+	}
+
+	/**
+	 * Queue of the tasks waiting for a token of one bucket. Runs on the timer to release
+	 * as many of them as there are tokens.
+	 */
+	private class Limiter implements Runnable {
+		private final TokenBucket bucket;
+		private final Queue<Object> queue = new LinkedList<Object>();
+		private boolean scheduled;
+
+		Limiter(TokenBucket bucket) {
+			this.bucket = bucket;
+		}
+
+		void submit(Object task) {
+			synchronized (this) {
+				if (!queue.isEmpty() || !bucket.tryAcquire(ticker())) {
+					schedule();
+					queue.add(task);
+					return;
+				}
+			}
+			release(task);
+		}
+
+		@Override
+		public void run() {
+			List<Object> ready = new ArrayList<Object>();
+			List<Object> dropped = new ArrayList<Object>();
+			synchronized (this) {
+				scheduled = false;
+				long now = ticker();
+				while (!queue.isEmpty() && bucket.tryAcquire(now)) {
+					ready.add(queue.poll());
+				}
+				if (!queue.isEmpty()) {
+					try {
+						schedule();
+					} catch (RejectedExecutionException e) {
+						// the timer has been shut down
+						dropped.addAll(queue);
+						queue.clear();
+					}
+				}
+			}
+			for (Object task : dropped) {
+				if (task instanceof Future)
+					((Future) task).cancel(false);
+			}
+			for (Object task : ready) {
+				try {
+					release(task);
+				} catch (RuntimeException e) {
+					// nobody else would notice on the timer thread, e.g. the delegate shut down
+					log.log(Level.WARNING, "could not submit a rate limited task, cancelling it", e);
+					if (task instanceof Future)
+						((Future) task).cancel(false);
+				}
+			}
+		}
+
+		private void schedule() {
+			if (timer.isShutdown())
+				throw new RejectedExecutionException("Rate limiter has been shut down");
+			if (scheduled)
+				return;
+			timer.schedule(this, bucket.nanosUntilAvailable(ticker()), TimeUnit.NANOSECONDS);
+			scheduled = true;
+		}
+	}
+}
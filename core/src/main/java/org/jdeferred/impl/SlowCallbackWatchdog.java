@@ -0,0 +1,240 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.Promise;
+
+/**
+ * Reports callbacks that run longer than a threshold, since they delay the other
+ * callbacks of the promise and block the thread resolving it.
+ *
+ * <pre>
+ * <code>
+ * {@link SlowCallbackWatchdog} watchdog = new {@link SlowCallbackWatchdog}(new {@link MetricsInstrumentation}(), 50, TimeUnit.MILLISECONDS, true);
+ * {@link Instrumentation}.set(watchdog);
+ * </code>
+ * </pre>
+ *
+ * Every callback is timed with {@link System#nanoTime()}. Without stack sampling, a slow
+ * callback is reported with the stack trace of the thread that triggered it, once it
+ * returned. With stack sampling, a daemon thread looks at the threads running callbacks
+ * every half threshold, and takes the stack trace of one that exceeds the threshold while
+ * it is still running, which shows where the callback is stuck.
+ *
+ * All hooks are forwarded to another {@link Instrumentation}, so that the watchdog can be
+ * combined with metrics.
+ *
+ * @author Ray Tsang
+ */
+public class SlowCallbackWatchdog extends Instrumentation {
+	private static final Logger log = Logger.getLogger(SlowCallbackWatchdog.class.getName());
+
+	private final Instrumentation delegate;
+	private final long thresholdNanos;
+	private final Set<Frames> running = Collections.newSetFromMap(new ConcurrentHashMap<Frames, Boolean>());
+	private final ScheduledExecutorService sampler;
+	private final ThreadLocal<Frames> frames = new ThreadLocal<Frames>() {
+		@Override
+		protected Frames initialValue() {
+			Frames frames = new Frames();
+			if (sampler != null)
+				running.add(frames);
+			return frames;
+		}
+	};
+
+	/**
+	 * Reports slow callbacks without sampling stack traces.
+	 *
+	 * @param threshold
+	 * @param unit
+	 */
+	public SlowCallbackWatchdog(long threshold, TimeUnit unit) {
+		this(null, threshold, unit, false);
+	}
+
+	/**
+	 * @param delegate receives all hooks, may be <code>null</code>
+	 * @param threshold callbacks running at least this long are reported
+	 * @param unit
+	 * @param sampleStackTraces whether to sample the stack traces of slow callbacks while they run,
+	 * which starts a daemon thread until {@link #shutdown()}
+	 */
+	public SlowCallbackWatchdog(Instrumentation delegate, long threshold, TimeUnit unit, boolean sampleStackTraces) {
+		if (threshold <= 0)
+			throw new IllegalArgumentException("Threshold must be positive");
+		this.delegate = delegate == null ? new Instrumentation() {
+		} : delegate;
+		this.thresholdNanos = unit.toNanos(threshold);
+		if (sampleStackTraces) {
+			long period = Math.max(TimeUnit.MILLISECONDS.toNanos(1), thresholdNanos / 2);
+			this.sampler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("jdeferred-watchdog"));
+			this.sampler.scheduleAtFixedRate(new Runnable() {
+				@Override
+				public void run() {
+					sample();
+				}
+			}, period, period, TimeUnit.NANOSECONDS);
+		} else {
+			this.sampler = null;
+		}
+	}
+
+	/**
+	 * Stops sampling stack traces.
+	 */
+	public void shutdown() {
+		if (sampler != null)
+			sampler.shutdownNow();
+	}
+
+	/**
+	 * Called for every slow callback, on the thread that triggered it. Logs a warning by default.
+	 *
+	 * @param promise
+	 * @param callback
+	 * @param durationNanos
+	 * @param stackTrace sampled while the callback was running, or taken once it returned
+	 */
+	protected void report(Promise<?, ?, ?> promise, Object callback, long durationNanos, StackTraceElement[] stackTrace) {
+		Throwable trace = new Throwable("Callback stack trace");
+		trace.setStackTrace(stackTrace);
+		log.log(Level.WARNING, "Callback " + callback.getClass().getName() + " of "
+				+ promise.getClass().getName() + " ran for "
+				+ TimeUnit.NANOSECONDS.toMillis(durationNanos) + "ms", trace);
+	}
+
+	@Override
+	public long callbackStarted(Promise<?, ?, ?> promise, Object callback) {
+		frames.get().push(System.nanoTime());
+		return delegate.callbackStarted(promise, callback);
+	}
+
+	@Override
+	public void callbackFinished(Promise<?, ?, ?> promise, Object callback, long started) {
+		delegate.callbackFinished(promise, callback, started);
+
+		Frames frames = this.frames.get();
+		StackTraceElement[] sampled = frames.sampled();
+		long duration = System.nanoTime() - frames.pop();
+		if (duration >= thresholdNanos)
+			report(promise, callback, duration, sampled != null ? sampled : new Throwable().getStackTrace());
+	}
+
+	@Override
+	public void promiseCreated(Promise<?, ?, ?> promise) {
+		delegate.promiseCreated(promise);
+	}
+
+	@Override
+	public void promiseSettled(Promise<?, ?, ?> promise, Promise.State state) {
+		delegate.promiseSettled(promise, state);
+	}
+
+	@Override
+	public long taskSubmitted(DeferredFutureTask<?, ?> task) {
+		return delegate.taskSubmitted(task);
+	}
+
+	@Override
+	public long taskStarted(DeferredFutureTask<?, ?> task, long submitted) {
+		return delegate.taskStarted(task, submitted);
+	}
+
+	@Override
+	public void taskFinished(DeferredFutureTask<?, ?> task, long submitted, long started) {
+		delegate.taskFinished(task, submitted, started);
+	}
+
+	private void sample() {
+		long now = System.nanoTime();
+		for (Iterator<Frames> it = running.iterator(); it.hasNext();) {
+			Frames frames = it.next();
+			if (!frames.thread.isAlive())
+				it.remove();
+			else
+				frames.sample(now, thresholdNanos);
+		}
+	}
+
+	/**
+	 * Start times of the callbacks running on one thread, nested when a callback settles
+	 * another promise. Only the outermost callback is sampled, its stack trace covers the
+	 * nested ones.
+	 */
+	private static final class Frames {
+		private final Thread thread = Thread.currentThread();
+		private long[] starts = new long[4];
+		private volatile int depth;
+		private volatile long outermostStart;
+		private volatile StackTraceElement[] stackTrace;
+		private volatile long sampledStart;
+
+		void push(long now) {
+			int depth = this.depth;
+			if (depth == starts.length) {
+				long[] grown = new long[depth * 2];
+				System.arraycopy(starts, 0, grown, 0, depth);
+				starts = grown;
+			}
+			starts[depth] = now;
+			if (depth == 0)
+				outermostStart = now;
+			this.depth = depth + 1;
+		}
+
+		long pop() {
+			int depth = this.depth - 1;
+			this.depth = depth;
+			return starts[depth];
+		}
+
+		/**
+		 * @return the stack trace sampled during the current outermost callback, or <code>null</code>
+		 */
+		StackTraceElement[] sampled() {
+			StackTraceElement[] stackTrace = this.stackTrace;
+			return sampledStart == outermostStart ? stackTrace : null;
+		}
+
+		/**
+		 * Called by the sampler thread.
+		 */
+		void sample(long now, long thresholdNanos) {
+			long start = outermostStart;
+			if (depth == 0 || now - start < thresholdNanos || sampledStart == start)
+				return;
+			StackTraceElement[] stackTrace = thread.getStackTrace();
+			// the callback may have returned meanwhile, sampled() compares the start times
+			if (depth > 0 && outermostStart == start) {
+				this.sampledStart = 0;
+				this.stackTrace = stackTrace;
+				this.sampledStart = start;
+			}
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out permits at a steady rate, allowing bursts up to a fixed capacity.
+ * Tokens are refilled lazily from the elapsed time whenever the bucket is used.
+ *
+ * Not thread safe, guarded by the owning {@link RateLimitedDeferredManager}.
+ *
+ * @author Ray Tsang
+ */
+final class TokenBucket {
+	private final double permitsPerNano;
+	private final double capacity;
+	private double tokens;
+	private long lastRefill;
+
+	TokenBucket(double permitsPerSecond, int burst, long now) {
+		if (permitsPerSecond <= 0 || Double.isNaN(permitsPerSecond) || Double.isInfinite(permitsPerSecond))
+			throw new IllegalArgumentException("Permits per second must be positive");
+		if (burst < 1)
+			throw new IllegalArgumentException("Burst must be at least 1");
+		this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+		this.capacity = burst;
+		this.tokens = burst;
+		this.lastRefill = now;
+	}
+
+	boolean tryAcquire(long now) {
+		refill(now);
+		if (tokens < 1)
+			return false;
+		tokens -= 1;
+		return true;
+	}
+
+	/**
+	 * @param now
+	 * @return nanoseconds until {@link #tryAcquire(long)} succeeds, <code>0</code> if it would now
+	 */
+	long nanosUntilAvailable(long now) {
+		refill(now);
+		if (tokens >= 1)
+			return 0;
+		return (long) Math.ceil((1 - tokens) / permitsPerNano);
+	}
+
+	private void refill(long now) {
+		long elapsed = now - lastRefill;
+		if (elapsed > 0) {
+			tokens = Math.min(capacity, tokens + elapsed * permitsPerNano);
+			lastRefill = now;
+		}
+	}
+}
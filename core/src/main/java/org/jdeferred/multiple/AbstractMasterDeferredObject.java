@@ -0,0 +1,274 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.multiple;
+
+import java.util.Arrays;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.ProgressCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DeferredObject;
+
+/**
+ * Common base of the promises that combine the outcome of several promises.
+ *
+ * The number of resolved and rejected promises is kept in a single atomic counter,
+ * so every child sees a consistent pair of counts and exactly one child observes
+ * the count that decides the outcome. Subclasses decide in
+ * {@link #onChildDone(int, Promise, Object, int, int)} and
+ * {@link #onChildFail(int, Promise, Object, int, int)} whether to resolve or reject.
+ *
+ * Once the outcome is decided, the remaining tasks can be cancelled, see
+ * {@link #observe(Promise[], boolean, Future[])}.
+ *
+ * @author Ray Tsang
+ *
+ * @param <D> Type used for {@link #resolve(Object)}
+ * @param <F> Type used for {@link #reject(Object)}
+ */
+@SuppressWarnings("rawtypes")
+public abstract class AbstractMasterDeferredObject<D, F> extends
+		DeferredObject<D, F, MasterProgress>
+		implements Promise<D, F, MasterProgress> {
+	private static final long DONE = 1L << 32;
+	private static final long FAIL = 1L;
+
+	/**
+	 * Number of resolved promises passed to the hooks when it is not known, see
+	 * {@link #useCompletionTree()}.
+	 */
+	protected static final int UNKNOWN = -1;
+
+	protected final int numberOfPromises;
+	private final boolean notifyProgress;
+	private final AtomicLong counts = new AtomicLong();
+	private final AtomicBoolean cancelled = new AtomicBoolean();
+	private boolean cancelRemaining;
+	private Future[] tasks;
+	private Iterable<? extends Promise> promises;
+	private CompletionTree completionTree;
+
+	protected AbstractMasterDeferredObject(boolean notifyProgress, Promise... promises) {
+		this(notifyProgress, promises == null ? 0 : promises.length);
+	}
+
+	/**
+	 * @param notifyProgress
+	 * @param numberOfPromises number of promises that will be passed to
+	 * {@link #observe(Iterable, boolean, Future[])}
+	 */
+	protected AbstractMasterDeferredObject(boolean notifyProgress, int numberOfPromises) {
+		if (numberOfPromises <= 0)
+			throw new IllegalArgumentException("Promises is null or empty");
+		this.numberOfPromises = numberOfPromises;
+		this.notifyProgress = notifyProgress;
+	}
+
+	/**
+	 * Called by a child promise that resolved, before it is counted. Values stored here
+	 * are visible to whichever child observes the deciding count. Must not settle this
+	 * promise, which is still notified of the count afterwards: record a failure and
+	 * settle in {@link #onChildDone(int, Promise, Object, int, int)} instead.
+	 *
+	 * @param index index of the promise
+	 * @param promise the promise
+	 * @param result the resolved value
+	 */
+	protected void storeDone(int index, Promise promise, Object result) {
+	}
+
+	/**
+	 * Called by a child promise that rejected, before it is counted, see
+	 * {@link #storeDone(int, Promise, Object)}.
+	 *
+	 * @param index index of the promise
+	 * @param promise the promise
+	 * @param reject the rejection
+	 */
+	protected void storeFail(int index, Promise promise, Object reject) {
+	}
+
+	/**
+	 * Called by a child promise that resolved.
+	 *
+	 * @param index index of the promise
+	 * @param promise the promise
+	 * @param result the resolved value
+	 * @param done number of resolved promises, including this one
+	 * @param fail number of rejected promises
+	 */
+	protected abstract void onChildDone(int index, Promise promise, Object result, int done, int fail);
+
+	/**
+	 * Called by a child promise that rejected.
+	 *
+	 * @param index index of the promise
+	 * @param promise the promise
+	 * @param reject the rejection
+	 * @param done number of resolved promises
+	 * @param fail number of rejected promises, including this one
+	 */
+	protected abstract void onChildFail(int index, Promise promise, Object reject, int done, int fail);
+
+	/**
+	 * Counts resolved promises with a {@link CompletionTree} rather than a single shared
+	 * counter, so that many promises resolving on many threads at once do not contend.
+	 * The number of resolved promises is then only known once all of them resolved: the
+	 * hooks receive {@link #numberOfPromises} for the last one and {@link #UNKNOWN}
+	 * otherwise. Rejections are still counted exactly.
+	 *
+	 * Has to be called before {@link #observe(Iterable, boolean, Future[])}, and only if
+	 * progress is not notified.
+	 */
+	protected void useCompletionTree() {
+		if (notifyProgress)
+			throw new IllegalStateException("Progress needs the exact number of resolved promises");
+		completionTree = new CompletionTree(numberOfPromises);
+	}
+
+	/**
+	 * Registers callbacks on all promises. Has to be called by the subclass constructor,
+	 * after all fields used by {@link #onChildDone(int, Promise, Object, int, int)} and
+	 * {@link #onChildFail(int, Promise, Object, int, int)} are initialized, since promises
+	 * that already finished trigger these methods right away.
+	 *
+	 * @param promises
+	 * @param cancelRemaining whether to cancel the promises that are still pending as soon
+	 * as this promise is resolved or rejected. Only promises that are {@link Future}s
+	 * themselves, or that are backed by one of the tasks, can be cancelled.
+	 * @param tasks tasks backing the promises at the same index, may be <code>null</code>
+	 */
+	protected void observe(Promise[] promises, boolean cancelRemaining, Future[] tasks) {
+		observe(Arrays.asList(promises), cancelRemaining, tasks);
+	}
+
+	/**
+	 * Same as {@link #observe(Promise[], boolean, Future[])}. The promises are iterated
+	 * once to register the callbacks, and once more if they need to be cancelled.
+	 * Exactly {@link #numberOfPromises} promises have to be passed.
+	 *
+	 * @param promises
+	 * @param cancelRemaining
+	 * @param tasks
+	 */
+	@SuppressWarnings("unchecked")
+	protected void observe(Iterable<? extends Promise> promises, boolean cancelRemaining, Future[] tasks) {
+		this.cancelRemaining = cancelRemaining;
+		this.tasks = tasks;
+		if (cancelRemaining)
+			this.promises = promises;
+
+		int index = 0;
+		for (Promise promise : promises) {
+			if (index == numberOfPromises)
+				throw new IllegalArgumentException("More than " + numberOfPromises + " promises");
+
+			// one small listener per promise instead of a closure per callback type
+			Child child = new Child(index++, promise);
+			promise.fail(child);
+			if (notifyProgress)
+				promise.progress(child);
+			promise.done(child);
+		}
+		if (index != numberOfPromises)
+			throw new IllegalArgumentException("Expected " + numberOfPromises + " promises, got " + index);
+	}
+
+	private boolean isProgressObserved() {
+		return notifyProgress && hasProgressCallbacks();
+	}
+
+	private void cancelIfDecided() {
+		if (!cancelRemaining || isPending() || !cancelled.compareAndSet(false, true))
+			return;
+
+		int i = 0;
+		for (Promise promise : promises) {
+			Future task = tasks == null ? null : tasks[i++];
+			if (task != null)
+				task.cancel(true);
+			else if (promise instanceof Future)
+				((Future) promise).cancel(true);
+		}
+		tasks = null;
+		promises = null;
+	}
+
+	/**
+	 * Callbacks of one child promise, which only needs to remember its index and promise.
+	 */
+	private class Child implements DoneCallback<Object>, FailCallback<Object>, ProgressCallback<Object> {
+		private final int index;
+		private final Promise promise;
+
+		Child(int index, Promise promise) {
+			this.index = index;
+			this.promise = promise;
+		}
+
+		public void onDone(Object result) {
+			if (!isPending())
+				return;
+
+			storeDone(index, promise, result);
+			int done;
+			int fail;
+			if (completionTree != null) {
+				done = completionTree.arrive(index) ? numberOfPromises : UNKNOWN;
+				fail = (int) counts.get();
+			} else {
+				long counts = AbstractMasterDeferredObject.this.counts.addAndGet(DONE);
+				done = (int) (counts >>> 32);
+				fail = (int) counts;
+			}
+			if (isProgressObserved())
+				AbstractMasterDeferredObject.this.notify(new MasterProgress(done, fail, numberOfPromises));
+
+			onChildDone(index, promise, result, done, fail);
+			cancelIfDecided();
+		}
+
+		public void onFail(Object result) {
+			if (!isPending())
+				return;
+
+			storeFail(index, promise, result);
+			long counts = AbstractMasterDeferredObject.this.counts.addAndGet(FAIL);
+			int done = completionTree != null ? UNKNOWN : (int) (counts >>> 32);
+			int fail = (int) counts;
+			if (isProgressObserved())
+				AbstractMasterDeferredObject.this.notify(new MasterProgress(done, fail, numberOfPromises));
+
+			onChildFail(index, promise, result, done, fail);
+			cancelIfDecided();
+		}
+
+		public void onProgress(Object progress) {
+			if (!isPending() || !hasProgressCallbacks())
+				return;
+
+			long counts = AbstractMasterDeferredObject.this.counts.get();
+			AbstractMasterDeferredObject.this.notify(new OneProgress(
+					(int) (counts >>> 32),
+					(int) counts,
+					numberOfPromises, index, promise, progress));
+		}
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.multiple;
+
+import org.jdeferred.DoneCallback;
+import org.jdeferred.Promise;
+
+/**
+ * Waits for every promise, regardless of whether it resolves or rejects.
+ * {@link Promise#done(DoneCallback)} will be triggered with {@link AllValues} once all
+ * promises finished, this promise never rejects.
+ * 
+ * @see AbstractMasterDeferredObject
+ * @author Ray Tsang
+ * 
+ */
+@SuppressWarnings("rawtypes")
+public class AllSettledDeferredObject extends
+		AbstractMasterDeferredObject<AllValues, Void>
+		implements Promise<AllValues, Void, MasterProgress> {
+	private final AllValues values;
+
+	public AllSettledDeferredObject(Promise... promises) {
+		super(true, promises);
+		values = new AllValues(numberOfPromises);
+		observe(promises, false, null);
+	}
+
+	@Override
+	protected void storeDone(int index, Promise promise, Object result) {
+		values.set(index, new OneResult(index, promise, result));
+	}
+
+	@Override
+	protected void storeFail(int index, Promise promise, Object reject) {
+		values.set(index, new OneReject(index, promise, reject));
+	}
+
+	@Override
+	protected void onChildDone(int index, Promise promise, Object result, int done, int fail) {
+		if (done + fail == numberOfPromises)
+			resolve(values);
+	}
+
+	@Override
+	protected void onChildFail(int index, Promise promise, Object reject, int done, int fail) {
+		if (done + fail == numberOfPromises)
+			resolve(values);
+	}
+}
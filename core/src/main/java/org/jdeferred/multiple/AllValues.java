@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.multiple;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Contains a list of {@link OneValue}, one slot per promise.
+ * A slot holds a {@link OneResult} if the promise resolved, a {@link OneReject}
+ * if it rejected, or <code>null</code> if it had not finished yet.
+ * 
+ * @author Ray Tsang
+ *
+ */
+public class AllValues implements Iterable<OneValue> {
+	private final AtomicReferenceArray<OneValue> values;
+	
+	public AllValues(int size) {
+		this.values = new AtomicReferenceArray<OneValue>(size);
+	}
+	
+	protected void set(int index, OneValue value) {
+		values.set(index, value);
+	}
+	
+	public OneValue get(int index) {
+		return values.get(index);
+	}
+
+	public Iterator<OneValue> iterator() {
+		return new Iterator<OneValue>() {
+			private int index;
+
+			@Override
+			public boolean hasNext() {
+				return index < values.length();
+			}
+
+			@Override
+			public OneValue next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return values.get(index++);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+	
+	public int size() {
+		return values.length();
+	}
+
+	@Override
+	public String toString() {
+		return "AllValues [values=" + values + "]";
+	}
+}
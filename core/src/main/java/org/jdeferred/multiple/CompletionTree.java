@@ -0,0 +1,106 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.multiple;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Detects when all of a large number of parties have arrived, without making them
+ * all update the same counter.
+ *
+ * Parties are grouped by index under leaf counters of {@value #ARITY} parties each,
+ * leaves are grouped under counters of the next level, and so on up to a single root.
+ * Every counter counts down its remaining children, and only the party that brings a
+ * counter to zero moves on to the parent. A counter is therefore shared by at most
+ * {@value #ARITY} threads, and each counter sits on its own cache line.
+ *
+ * @author Ray Tsang
+ */
+public final class CompletionTree {
+	static final int ARITY = 32;
+	// 128 bytes between counters, so neither they nor adjacent-line prefetching share a line
+	private static final int STRIDE = 16;
+
+	private final AtomicLongArray counters;
+	private final int[] levelStart;
+
+	/**
+	 * @param parties number of parties expected to {@link #arrive(int)}
+	 */
+	public CompletionTree(int parties) {
+		if (parties <= 0)
+			throw new IllegalArgumentException("Parties must be positive");
+
+		int levels = 0;
+		int n = parties;
+		do {
+			n = divide(n);
+			levels++;
+		} while (n > 1);
+
+		levelStart = new int[levels];
+		int nodes = 0;
+		n = parties;
+		for (int level = 0; level < levels; level++) {
+			levelStart[level] = nodes;
+			n = divide(n);
+			nodes += n;
+		}
+
+		// leading slot pads the first counter from the array header
+		counters = new AtomicLongArray((nodes + 1) * STRIDE);
+		n = parties;
+		for (int level = 0; level < levels; level++) {
+			int count = divide(n);
+			for (int node = 0; node < count; node++) {
+				int children = Math.min(ARITY, n - node * ARITY);
+				counters.set(slot(levelStart[level] + node), children);
+			}
+			n = count;
+		}
+	}
+
+	/**
+	 * Records the arrival of a party. Each index must arrive at most once.
+	 *
+	 * @param index index of the party, between <code>0</code> and <code>parties - 1</code>
+	 * @return <code>true</code> if this was the last party to arrive
+	 */
+	public boolean arrive(int index) {
+		int node = index / ARITY;
+		for (int level = 0; level < levelStart.length; level++) {
+			if (counters.decrementAndGet(slot(levelStart[level] + node)) != 0)
+				return false;
+			node /= ARITY;
+		}
+		return true;
+	}
+
+	/**
+	 * @return whether all parties have arrived
+	 */
+	public boolean isComplete() {
+		return counters.get(slot(levelStart[levelStart.length - 1])) == 0;
+	}
+
+	private static int slot(int node) {
+		return (node + 1) * STRIDE;
+	}
+
+	private static int divide(int n) {
+		return (n + ARITY - 1) / ARITY;
+	}
+}
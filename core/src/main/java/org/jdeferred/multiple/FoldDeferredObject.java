@@ -0,0 +1,115 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.multiple;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jdeferred.Accumulator;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+
+/**
+ * Folds the results of the promises into an accumulated value as they arrive, in short,
+ * <ul>
+ * <li>the {@link Accumulator} is called with each result in the order the promises
+ * resolve, never concurrently. Results are not kept once accumulated.</li>
+ * <li>{@link Promise#done(DoneCallback)} will be triggered with the accumulated value
+ * once all promises resolved.</li>
+ * <li>{@link Promise#fail(FailCallback)} will be triggered with {@link OneReject}
+ * as soon as any promise rejects, or if the {@link Accumulator} throws an exception,
+ * in which case the {@link OneReject} holds the exception.</li>
+ * </ul>
+ * The lock serializing the {@link Accumulator} is released before the outcome is
+ * decided, with a compare-and-set, so that callbacks never run while it is held.
+ * 
+ * @see AbstractMasterDeferredObject
+ * @author Ray Tsang
+ * 
+ * @param <A> Type of the accumulated value
+ * @param <T> Type of the results
+ */
+@SuppressWarnings("rawtypes")
+public class FoldDeferredObject<A, T> extends
+		AbstractMasterDeferredObject<A, OneReject>
+		implements Promise<A, OneReject, MasterProgress> {
+	private final Accumulator<A, T> accumulator;
+	private final Object lock = new Object();
+	private final AtomicBoolean settled = new AtomicBoolean();
+	private A value;
+	/* the accumulator's failure, rejected once the child is counted */
+	private OneReject failure;
+
+	public FoldDeferredObject(A initial, Accumulator<A, T> accumulator, Promise... promises) {
+		super(true, promises);
+		this.accumulator = checkAccumulator(accumulator);
+		this.value = initial;
+		observe(promises, false, null);
+	}
+
+	public FoldDeferredObject(A initial, Accumulator<A, T> accumulator, Collection<? extends Promise> promises) {
+		super(true, promises == null ? 0 : promises.size());
+		this.accumulator = checkAccumulator(accumulator);
+		this.value = initial;
+		observe(promises, false, null);
+	}
+
+	private static <A, T> Accumulator<A, T> checkAccumulator(Accumulator<A, T> accumulator) {
+		if (accumulator == null)
+			throw new IllegalArgumentException("Accumulator must not be null");
+		return accumulator;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	protected void storeDone(int index, Promise promise, Object result) {
+		synchronized (lock) {
+			if (settled.get() || failure != null)
+				return;
+
+			try {
+				value = accumulator.accumulate(value, (T) result);
+			} catch (RuntimeException e) {
+				failure = new OneReject(index, promise, e);
+			}
+		}
+	}
+
+	@Override
+	protected void onChildDone(int index, Promise promise, Object result, int done, int fail) {
+		OneReject failure;
+		A value;
+		synchronized (lock) {
+			failure = this.failure;
+			value = this.value;
+		}
+		if (failure != null)
+			rejectOnce(failure);
+		else if (done == numberOfPromises && settled.compareAndSet(false, true))
+			resolve(value);
+	}
+
+	@Override
+	protected void onChildFail(int index, Promise promise, Object reject, int done, int fail) {
+		rejectOnce(new OneReject(index, promise, reject));
+	}
+
+	private void rejectOnce(OneReject reject) {
+		if (settled.compareAndSet(false, true))
+			reject(reject);
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.multiple;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DeferredObject;
+
+/**
+ * Joins two to five promises into a typed tuple, in short,
+ * <ul>
+ * <li>{@link Promise#done(DoneCallback)} will be triggered with {@link Tuple2} to {@link Tuple5},
+ * depending on the number of promises, once all promises resolved.</li>
+ * <li>{@link Promise#fail(FailCallback)} will be triggered with {@link OneReject}
+ * as soon as any promise rejects.</li>
+ * </ul>
+ * 
+ * Unlike {@link MasterDeferredObject}, no {@link OneResult} is created per promise and
+ * no progress is reported: the results are kept in a plain array and a single counter
+ * decides the outcome. Use the typed <code>join</code> methods of
+ * {@link org.jdeferred.DeferredManager} rather than this class directly, the type of the
+ * tuple is not checked here.
+ * 
+ * @author Ray Tsang
+ * 
+ * @param <D> Type of the tuple
+ */
+@SuppressWarnings("rawtypes")
+public class JoinDeferredObject<D> extends DeferredObject<D, OneReject, Void>
+		implements Promise<D, OneReject, Void> {
+	private static final int REJECTED = -1;
+
+	private final Object[] results;
+	private final AtomicInteger remaining;
+
+	@SuppressWarnings("unchecked")
+	public JoinDeferredObject(Promise... promises) {
+		if (promises == null || promises.length < 2 || promises.length > 5)
+			throw new IllegalArgumentException("Between 2 and 5 promises are required");
+		this.results = new Object[promises.length];
+		this.remaining = new AtomicInteger(promises.length);
+
+		for (int i = 0; i < promises.length; i++) {
+			Slot slot = new Slot(i, promises[i]);
+			promises[i].done(slot).fail(slot);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private D toTuple() {
+		Object[] r = results;
+		switch (r.length) {
+		case 2:
+			return (D) new Tuple2<Object, Object>(r[0], r[1]);
+		case 3:
+			return (D) new Tuple3<Object, Object, Object>(r[0], r[1], r[2]);
+		case 4:
+			return (D) new Tuple4<Object, Object, Object, Object>(r[0], r[1], r[2], r[3]);
+		default:
+			return (D) new Tuple5<Object, Object, Object, Object, Object>(r[0], r[1], r[2], r[3], r[4]);
+		}
+	}
+
+	/**
+	 * Listens to one promise, writes its result before counting it, so the last one
+	 * to count down sees all results.
+	 */
+	private class Slot implements DoneCallback<Object>, FailCallback<Object> {
+		private final int index;
+		private final Promise promise;
+
+		Slot(int index, Promise promise) {
+			this.index = index;
+			this.promise = promise;
+		}
+
+		public void onDone(Object result) {
+			results[index] = result;
+			if (remaining.decrementAndGet() == 0)
+				resolve(toTuple());
+		}
+
+		public void onFail(Object reject) {
+			if (remaining.getAndSet(REJECTED) > 0)
+				reject(new OneReject(index, promise, reject));
+		}
+	}
+}
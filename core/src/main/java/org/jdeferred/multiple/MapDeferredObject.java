@@ -0,0 +1,233 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.multiple;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jdeferred.DeferredCallable;
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.DeferredManager;
+import org.jdeferred.DeferredManager.StartPolicy;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.DoneFilter;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DeferredObject;
+
+/**
+ * Applies a function to every item of an {@link Iterable} in the background, with
+ * a bounded number of items in flight, in short,
+ * <ul>
+ * <li>items are pulled from the iterator only when a task slot is free, and at most
+ * <code>maxInFlight</code> functions run at the same time.</li>
+ * <li>the consumer is called with a {@link OneResult}, indexed by the position of the
+ * item, as soon as the function returns. Calls are never concurrent.</li>
+ * <li>{@link Promise#done(DoneCallback)} will be triggered with the number of items
+ * once all of them have been consumed.</li>
+ * <li>{@link Promise#fail(FailCallback)} will be triggered with {@link OneReject}
+ * as soon as the function throws for any item, or the iterator, the consumer or the
+ * submission of a task throws.
+ * No more items are pulled afterwards, items in flight finish but are not consumed.</li>
+ * </ul>
+ * 
+ * Nothing is retained per item once it has been consumed, so memory stays proportional
+ * to <code>maxInFlight</code> however many items there are.
+ * 
+ * The promise is settled once, decided with a compare-and-set, after all locks are
+ * released. Freed slots are refilled by a loop on whichever thread frees the first one,
+ * so functions that complete synchronously do not recurse.
+ * 
+ * @see DeferredManager#mapAsync(Iterable, DoneFilter, int, DoneCallback)
+ * @author Ray Tsang
+ * 
+ * @param <T> Type of the items
+ * @param <R> Type of the results
+ */
+@SuppressWarnings("rawtypes")
+public class MapDeferredObject<T, R> extends DeferredObject<Integer, OneReject, Void>
+		implements Promise<Integer, OneReject, Void> {
+	private final DeferredManager deferredManager;
+	private final Iterator<? extends T> items;
+	private final DoneFilter<? super T, ? extends R> function;
+	private final DoneCallback<OneResult> consumer;
+	private final Object lock = new Object();
+	private final Object consumerLock = new Object();
+	private final AtomicBoolean settled = new AtomicBoolean();
+
+	private int started;
+	private int finished;
+	private boolean exhausted;
+	private int freeSlots;
+	private boolean refilling;
+
+	public MapDeferredObject(DeferredManager deferredManager, Iterable<? extends T> items,
+			DoneFilter<? super T, ? extends R> function, int maxInFlight, DoneCallback<OneResult> consumer) {
+		if (deferredManager == null || items == null || function == null || consumer == null)
+			throw new IllegalArgumentException("Arguments must not be null");
+		if (maxInFlight < 1)
+			throw new IllegalArgumentException("maxInFlight must be at least 1");
+		this.deferredManager = deferredManager;
+		this.items = items.iterator();
+		this.function = function;
+		this.consumer = consumer;
+
+		refill(maxInFlight);
+	}
+
+	/**
+	 * Starts an item for each freed slot. Slots freed while a thread is already refilling
+	 * are handed to it instead.
+	 * 
+	 * @param slots number of slots freed
+	 */
+	private void refill(int slots) {
+		synchronized (lock) {
+			freeSlots += slots;
+			if (refilling)
+				return;
+			refilling = true;
+		}
+		while (true) {
+			synchronized (lock) {
+				if (freeSlots == 0) {
+					refilling = false;
+					return;
+				}
+				freeSlots--;
+			}
+			if (!startNext()) {
+				synchronized (lock) {
+					freeSlots = 0;
+					refilling = false;
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Pulls the next item and submits the function for it.
+	 * 
+	 * @return <code>false</code> if there is nothing left to start
+	 */
+	private boolean startNext() {
+		T next = null;
+		boolean pulled = false;
+		int resolved = -1;
+		RuntimeException failure = null;
+		final int index;
+		synchronized (lock) {
+			if (exhausted || settled.get())
+				return false;
+
+			index = started;
+			try {
+				if (items.hasNext()) {
+					next = items.next();
+					pulled = true;
+					started++;
+				} else {
+					exhausted = true;
+					if (finished == started)
+						resolved = finished;
+				}
+			} catch (RuntimeException e) {
+				exhausted = true;
+				failure = e;
+			}
+		}
+		if (failure != null) {
+			rejectOnce(new OneReject(index, null, failure));
+			return false;
+		}
+		if (!pulled) {
+			if (resolved >= 0)
+				resolveOnce(resolved);
+			return false;
+		}
+
+		final T item = next;
+		// AUTO: submitted even if the manager does not auto submit
+		final DeferredFutureTask<R, Void> task = new DeferredFutureTask<R, Void>(new DeferredCallable<R, Void>(StartPolicy.AUTO) {
+			@Override
+			public R call() throws Exception {
+				return function.filterDone(item);
+			}
+		});
+		// callbacks are registered before submitting, so they run on the task's thread
+		task.promise().done(new DoneCallback<R>() {
+			@Override
+			public void onDone(R result) {
+				finish(index, task.promise(), result);
+			}
+		}).fail(new FailCallback<Throwable>() {
+			@Override
+			public void onFail(Throwable result) {
+				rejectOnce(new OneReject(index, task.promise(), result));
+			}
+		});
+		try {
+			deferredManager.when(task);
+		} catch (RuntimeException e) {
+			// e.g. the executor has been shut down
+			synchronized (lock) {
+				exhausted = true;
+			}
+			rejectOnce(new OneReject(index, task.promise(), e));
+			return false;
+		}
+		return true;
+	}
+
+	private void finish(int index, Promise promise, R result) {
+		RuntimeException failure = null;
+		synchronized (consumerLock) {
+			if (settled.get())
+				return;
+
+			try {
+				consumer.onDone(new OneResult(index, promise, result));
+			} catch (RuntimeException e) {
+				failure = e;
+			}
+		}
+		if (failure != null) {
+			rejectOnce(new OneReject(index, promise, failure));
+			return;
+		}
+		int resolved = -1;
+		synchronized (lock) {
+			finished++;
+			if (exhausted && finished == started)
+				resolved = finished;
+		}
+		if (resolved >= 0)
+			resolveOnce(resolved);
+		else
+			refill(1);
+	}
+
+	private void resolveOnce(int count) {
+		if (settled.compareAndSet(false, true))
+			resolve(count);
+	}
+
+	private void rejectOnce(OneReject reject) {
+		if (settled.compareAndSet(false, true))
+			reject(reject);
+	}
+}
@@ -15,14 +15,13 @@
  */
 package org.jdeferred.multiple;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Collection;
 
 import org.jdeferred.AlwaysCallback;
 import org.jdeferred.DoneCallback;
 import org.jdeferred.FailCallback;
 import org.jdeferred.ProgressCallback;
 import org.jdeferred.Promise;
-import org.jdeferred.impl.DeferredObject;
 
 /**
  * This will return a special Promise called {@link MasterDeferredObject}. In short,
@@ -39,70 +38,73 @@ import org.jdeferred.impl.DeferredObject;
  * would be triggered</li>
  * </ul>
  * 
+ * Progress events are only created when a {@link ProgressCallback} has been registered
+ * on this promise. With {@link #MasterDeferredObject(boolean, Promise...)} progress can
+ * be turned off entirely, in which case the progress of the individual promises is not
+ * even observed, and large numbers of resolved promises are counted with a
+ * {@link CompletionTree}.
+ * 
  * @author Ray Tsang
  * 
  */
 @SuppressWarnings("rawtypes")
 public class MasterDeferredObject extends
-		DeferredObject<MultipleResults, OneReject, MasterProgress>
+		AbstractMasterDeferredObject<MultipleResults, OneReject>
 		implements Promise<MultipleResults, OneReject, MasterProgress> {
-	private final int numberOfPromises;
-	private final AtomicInteger doneCount = new AtomicInteger();
-	private final AtomicInteger failCount = new AtomicInteger();
+	/**
+	 * Without progress, at least this many promises are counted with a {@link CompletionTree}.
+	 */
+	static final int COMPLETION_TREE_THRESHOLD = 256;
+
 	private final MultipleResults results;
 
-	@SuppressWarnings("unchecked")
 	public MasterDeferredObject(Promise... promises) {
-		if (promises == null || promises.length == 0)
-			throw new IllegalArgumentException("Promises is null or empty");
-		this.numberOfPromises = promises.length;
-		results = new MultipleResults(numberOfPromises);
+		this(true, promises);
+	}
 
-		int count = 0;
-		for (final Promise promise : promises) {
-			final int index = count++;
-			promise.fail(new FailCallback<Object>() {
-				public void onFail(Object result) {
-					if (!MasterDeferredObject.this.isPending())
-						return;
+	/**
+	 * @param notifyProgress <code>false</code> to never notify {@link MasterProgress}
+	 * or {@link OneProgress}
+	 * @param promises
+	 */
+	public MasterDeferredObject(boolean notifyProgress, Promise... promises) {
+		super(notifyProgress, promises);
+		results = new MultipleResults(numberOfPromises);
+		if (!notifyProgress && numberOfPromises >= COMPLETION_TREE_THRESHOLD)
+			useCompletionTree();
+		observe(promises, false, null);
+	}
 
-					
-					final int fail = failCount.incrementAndGet();
-					MasterDeferredObject.this.notify(new MasterProgress(
-							doneCount.get(),
-							fail,
-							numberOfPromises));
-					
-					MasterDeferredObject.this.reject(new OneReject(index, promise, result));
-				}
-			}).progress(new ProgressCallback() {
-				public void onProgress(Object progress) {
-					if (!MasterDeferredObject.this.isPending())
-						return;
+	/**
+	 * Observes the promises of a collection without copying them. The collection
+	 * must not change while the promises are being observed.
+	 * 
+	 * @param notifyProgress <code>false</code> to never notify {@link MasterProgress}
+	 * or {@link OneProgress}
+	 * @param promises
+	 */
+	public MasterDeferredObject(boolean notifyProgress, Collection<? extends Promise> promises) {
+		super(notifyProgress, promises == null ? 0 : promises.size());
+		results = new MultipleResults(numberOfPromises);
+		if (!notifyProgress && numberOfPromises >= COMPLETION_TREE_THRESHOLD)
+			useCompletionTree();
+		observe(promises, false, null);
+	}
 
-					MasterDeferredObject.this.notify(new OneProgress(
-							doneCount.get(),
-							failCount.get(),
-							numberOfPromises, index, promise, progress));
-				}
-			}).done(new DoneCallback() {
-				public void onDone(Object result) {
-					if (!MasterDeferredObject.this.isPending())
-						return;
+	@Override
+	protected void storeDone(int index, Promise promise, Object result) {
+		results.set(index, new OneResult(index, promise, result));
+	}
 
-					results.set(index, new OneResult(index, promise,
-							result));
-					int done = doneCount.incrementAndGet();
+	@Override
+	protected void onChildDone(int index, Promise promise, Object result, int done, int fail) {
+		if (done == numberOfPromises)
+			resolve(results);
+	}
 
-					MasterDeferredObject.this.notify(new MasterProgress(
-							done,
-							failCount.get(),
-							numberOfPromises));
-					
-					if (done == numberOfPromises)
-						MasterDeferredObject.this.resolve(results);
-				}
-			});
-		}
+	@Override
+	protected void onChildFail(int index, Promise promise, Object reject, int done, int fail) {
+		if (fail == 1)
+			reject(new OneReject(index, promise, reject));
 	}
 }
\ No newline at end of file
@@ -16,19 +16,23 @@
 package org.jdeferred.multiple;
 
 import java.util.Iterator;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Contains a list of {@link OneResult}.
+ * 
+ * Results are kept in a fixed size slot array, so that setting the result of one
+ * promise is a constant time operation that is safely published to other threads.
+ * 
  * @author Ray Tsang
  *
  */
 public class MultipleResults implements Iterable<OneResult> {
-	private final List<OneResult> results;
+	private final AtomicReferenceArray<OneResult> results;
 	
 	public MultipleResults(int size) {
-		this.results = new CopyOnWriteArrayList<OneResult>(new OneResult[size]);
+		this.results = new AtomicReferenceArray<OneResult>(size);
 	}
 	
 	protected void set(int index, OneResult result) {
@@ -40,11 +44,30 @@ public class MultipleResults implements Iterable<OneResult> {
 	}
 
 	public Iterator<OneResult> iterator() {
-		return results.iterator();
+		return new Iterator<OneResult>() {
+			private int index;
+
+			@Override
+			public boolean hasNext() {
+				return index < results.length();
+			}
+
+			@Override
+			public OneResult next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return results.get(index++);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
 	}
 	
 	public int size() {
-		return results.size();
+		return results.length();
 	}
 
 	@Override
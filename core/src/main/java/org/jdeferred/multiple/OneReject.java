@@ -23,7 +23,7 @@ import org.jdeferred.Promise;
  *
  */
 @SuppressWarnings("rawtypes")
-public class OneReject {
+public class OneReject implements OneValue {
 	private final int index;
 	private final Promise promise;
 	private final Object reject;
@@ -47,6 +47,10 @@ public class OneReject {
 		return reject;
 	}
 
+	public Object getValue() {
+		return reject;
+	}
+
 	@Override
 	public String toString() {
 		return "OneReject [index=" + index + ", promise=" + promise
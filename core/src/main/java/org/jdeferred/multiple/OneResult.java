@@ -23,7 +23,7 @@ import org.jdeferred.Promise;
  *
  */
 @SuppressWarnings("rawtypes")
-public class OneResult {
+public class OneResult implements OneValue {
 	private final int index;
 	private final Promise promise;
 	private final Object result;
@@ -43,6 +43,9 @@ public class OneResult {
 	public Object getResult() {
 		return result;
 	}
+	public Object getValue() {
+		return result;
+	}
 	@Override
 	public String toString() {
 		return "OneResult [index=" + index + ", promise=" + promise
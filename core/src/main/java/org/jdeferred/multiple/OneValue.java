@@ -0,0 +1,36 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.multiple;
+
+import org.jdeferred.Promise;
+
+/**
+ * Outcome of one of the {@link Promise}, either a {@link OneResult} or a {@link OneReject}.
+ * 
+ * @author Ray Tsang
+ *
+ */
+@SuppressWarnings("rawtypes")
+public interface OneValue {
+	public int getIndex();
+
+	public Promise getPromise();
+
+	/**
+	 * @return the resolved value of a {@link OneResult}, or the rejection of a {@link OneReject}
+	 */
+	public Object getValue();
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.multiple;
+
+import java.util.concurrent.BlockingQueue;
+
+import org.jdeferred.DoneCallback;
+
+/**
+ * Puts each {@link OneResult} into a {@link BlockingQueue}, to be used with
+ * {@link StreamDeferredObject}. If the queue is bounded and full, the thread that
+ * resolved the promise waits until there is room.
+ * 
+ * @author Ray Tsang
+ * 
+ */
+public class QueueConsumer implements DoneCallback<OneResult> {
+	private final BlockingQueue<? super OneResult> queue;
+
+	public QueueConsumer(BlockingQueue<? super OneResult> queue) {
+		if (queue == null)
+			throw new IllegalArgumentException("Queue must not be null");
+		this.queue = queue;
+	}
+
+	@Override
+	public void onDone(OneResult result) {
+		try {
+			queue.put(result);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for room in the queue", e);
+		}
+	}
+}
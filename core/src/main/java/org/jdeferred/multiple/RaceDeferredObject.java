@@ -0,0 +1,66 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.multiple;
+
+import java.util.concurrent.Future;
+
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+
+/**
+ * Settles like the first of the promises that settles, in short,
+ * <ul>
+ * <li>{@link Promise#done(DoneCallback)} will be triggered with {@link OneResult}
+ * if the first promise to finish resolves.</li>
+ * <li>{@link Promise#fail(FailCallback)} will be triggered with {@link OneReject}
+ * if the first promise to finish rejects.</li>
+ * </ul>
+ * 
+ * @see AbstractMasterDeferredObject
+ * @author Ray Tsang
+ * 
+ */
+@SuppressWarnings("rawtypes")
+public class RaceDeferredObject extends
+		AbstractMasterDeferredObject<OneResult, OneReject>
+		implements Promise<OneResult, OneReject, MasterProgress> {
+
+	public RaceDeferredObject(Promise... promises) {
+		this(promises, null);
+	}
+
+	/**
+	 * @param promises
+	 * @param tasks tasks backing the promises, may be <code>null</code>, cancelled once the race is decided
+	 */
+	public RaceDeferredObject(Promise[] promises, Future[] tasks) {
+		super(true, promises);
+		observe(promises, true, tasks);
+	}
+
+	@Override
+	protected void onChildDone(int index, Promise promise, Object result, int done, int fail) {
+		if (done + fail == 1)
+			resolve(new OneResult(index, promise, result));
+	}
+
+	@Override
+	protected void onChildFail(int index, Promise promise, Object reject, int done, int fail) {
+		if (done + fail == 1)
+			reject(new OneReject(index, promise, reject));
+	}
+}
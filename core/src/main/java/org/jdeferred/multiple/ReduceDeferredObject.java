@@ -0,0 +1,115 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.multiple;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jdeferred.Combiner;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+
+/**
+ * Reduces the results of the promises to a single value as they arrive, without
+ * locking, in short,
+ * <ul>
+ * <li>each result is combined with the current value by the {@link Combiner}, and
+ * swapped in with a compare-and-set, retrying if another result got in first.
+ * Results are not kept once combined.</li>
+ * <li>{@link Promise#done(DoneCallback)} will be triggered with the reduced value
+ * once all promises resolved.</li>
+ * <li>{@link Promise#fail(FailCallback)} will be triggered with {@link OneReject}
+ * as soon as any promise rejects, or if the {@link Combiner} throws an exception,
+ * in which case the {@link OneReject} holds the exception.</li>
+ * </ul>
+ * The outcome is decided with a compare-and-set as well, so that callbacks are never
+ * triggered while a lock is held.
+ * 
+ * @see AbstractMasterDeferredObject
+ * @author Ray Tsang
+ * 
+ * @param <T> Type of the results
+ */
+@SuppressWarnings("rawtypes")
+public class ReduceDeferredObject<T> extends
+		AbstractMasterDeferredObject<T, OneReject>
+		implements Promise<T, OneReject, MasterProgress> {
+	private static final Object EMPTY = new Object();
+
+	private final Combiner<T> combiner;
+	private final AtomicReference<Object> value = new AtomicReference<Object>(EMPTY);
+	private final AtomicBoolean settled = new AtomicBoolean();
+	/* the combiner's failure, rejected once the child is counted */
+	private final AtomicReference<OneReject> failure = new AtomicReference<OneReject>();
+
+	public ReduceDeferredObject(Combiner<T> combiner, Promise... promises) {
+		super(true, promises);
+		this.combiner = checkCombiner(combiner);
+		observe(promises, false, null);
+	}
+
+	public ReduceDeferredObject(Combiner<T> combiner, Collection<? extends Promise> promises) {
+		super(true, promises == null ? 0 : promises.size());
+		this.combiner = checkCombiner(combiner);
+		observe(promises, false, null);
+	}
+
+	private static <T> Combiner<T> checkCombiner(Combiner<T> combiner) {
+		if (combiner == null)
+			throw new IllegalArgumentException("Combiner must not be null");
+		return combiner;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	protected void storeDone(int index, Promise promise, Object result) {
+		if (failure.get() != null)
+			return;
+
+		try {
+			while (true) {
+				Object current = value.get();
+				Object combined = current == EMPTY ? result : combiner.combine((T) current, (T) result);
+				if (value.compareAndSet(current, combined))
+					return;
+			}
+		} catch (RuntimeException e) {
+			failure.compareAndSet(null, new OneReject(index, promise, e));
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	protected void onChildDone(int index, Promise promise, Object result, int done, int fail) {
+		OneReject failure = this.failure.get();
+		if (failure != null)
+			rejectOnce(failure);
+		else if (done == numberOfPromises && settled.compareAndSet(false, true))
+			resolve((T) value.get());
+	}
+
+	@Override
+	protected void onChildFail(int index, Promise promise, Object reject, int done, int fail) {
+		rejectOnce(new OneReject(index, promise, reject));
+	}
+
+	private void rejectOnce(OneReject reject) {
+		if (settled.compareAndSet(false, true))
+			reject(reject);
+	}
+}
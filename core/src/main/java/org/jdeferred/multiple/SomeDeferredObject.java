@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.multiple;
+
+import java.util.concurrent.Future;
+
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+
+/**
+ * Quorum of promises, in short,
+ * <ul>
+ * <li>{@link Promise#done(DoneCallback)} will be triggered as soon as <code>count</code>
+ * promises resolved.</li>
+ * <li>{@link Promise#fail(FailCallback)} will be triggered as soon as so many promises
+ * rejected that <code>count</code> resolutions are no longer possible.</li>
+ * </ul>
+ * Both are triggered with {@link AllValues} holding the outcome of the promises that had
+ * finished by then.
+ * 
+ * @see AbstractMasterDeferredObject
+ * @author Ray Tsang
+ * 
+ */
+@SuppressWarnings("rawtypes")
+public class SomeDeferredObject extends
+		AbstractMasterDeferredObject<AllValues, AllValues>
+		implements Promise<AllValues, AllValues, MasterProgress> {
+	private final int count;
+	private final AllValues values;
+
+	public SomeDeferredObject(int count, Promise... promises) {
+		this(count, promises, null);
+	}
+
+	/**
+	 * @param count number of promises that need to resolve
+	 * @param promises
+	 * @param tasks tasks backing the promises, may be <code>null</code>, cancelled once the quorum is decided
+	 */
+	public SomeDeferredObject(int count, Promise[] promises, Future[] tasks) {
+		super(true, promises);
+		if (count < 1 || count > numberOfPromises)
+			throw new IllegalArgumentException("Count must be between 1 and the number of promises");
+		this.count = count;
+		this.values = new AllValues(numberOfPromises);
+		observe(promises, true, tasks);
+	}
+
+	@Override
+	protected void storeDone(int index, Promise promise, Object result) {
+		values.set(index, new OneResult(index, promise, result));
+	}
+
+	@Override
+	protected void storeFail(int index, Promise promise, Object reject) {
+		values.set(index, new OneReject(index, promise, reject));
+	}
+
+	@Override
+	protected void onChildDone(int index, Promise promise, Object result, int done, int fail) {
+		if (done == count)
+			resolve(values);
+	}
+
+	@Override
+	protected void onChildFail(int index, Promise promise, Object reject, int done, int fail) {
+		if (fail == numberOfPromises - count + 1)
+			reject(values);
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.multiple;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+
+/**
+ * Hands every result to a consumer as soon as its promise resolves, in completion order,
+ * without keeping the results, in short,
+ * <ul>
+ * <li>the consumer is called with a {@link OneResult} for each promise that resolves.
+ * Calls are never concurrent, and never happen once this promise is resolved or rejected.</li>
+ * <li>{@link Promise#done(DoneCallback)} will be triggered with the number of results
+ * once all of them have been consumed.</li>
+ * <li>{@link Promise#fail(FailCallback)} will be triggered with {@link OneReject}
+ * as soon as any promise rejects, or if the consumer throws an exception, in which
+ * case the {@link OneReject} holds the exception. No result is consumed afterwards.</li>
+ * </ul>
+ * 
+ * The consumer runs on the thread that resolved the child promise. A slow consumer
+ * therefore holds back the threads resolving the other promises, which keeps a
+ * bounded consumer, e.g. one that puts into a bounded queue, from being overrun.
+ * Consumer calls are serialized by a private lock, which is released before the outcome
+ * is decided with a compare-and-set and this promise is settled.
+ * 
+ * @see AbstractMasterDeferredObject
+ * @author Ray Tsang
+ * 
+ */
+@SuppressWarnings("rawtypes")
+public class StreamDeferredObject extends
+		AbstractMasterDeferredObject<Integer, OneReject>
+		implements Promise<Integer, OneReject, MasterProgress> {
+	private final DoneCallback<OneResult> consumer;
+	private final Object lock = new Object();
+	private final AtomicBoolean settled = new AtomicBoolean();
+	private int consumed;
+
+	public StreamDeferredObject(DoneCallback<OneResult> consumer, Promise... promises) {
+		this(consumer, promises, null);
+	}
+
+	/**
+	 * @param consumer
+	 * @param promises
+	 * @param tasks tasks backing the promises, may be <code>null</code>, cancelled once one of them rejected
+	 */
+	public StreamDeferredObject(DoneCallback<OneResult> consumer, Promise[] promises, Future[] tasks) {
+		super(true, promises);
+		if (consumer == null)
+			throw new IllegalArgumentException("Consumer must not be null");
+		this.consumer = consumer;
+		observe(promises, true, tasks);
+	}
+
+	@Override
+	protected void onChildDone(int index, Promise promise, Object result, int done, int fail) {
+		RuntimeException failure = null;
+		boolean last = false;
+		synchronized (lock) {
+			if (settled.get())
+				return;
+
+			try {
+				consumer.onDone(new OneResult(index, promise, result));
+				// counted separately, another child may have been counted but not consumed yet
+				last = ++consumed == numberOfPromises;
+			} catch (RuntimeException e) {
+				failure = e;
+			}
+		}
+		if (failure != null)
+			rejectOnce(new OneReject(index, promise, failure));
+		else if (last && settled.compareAndSet(false, true))
+			resolve(numberOfPromises);
+	}
+
+	@Override
+	protected void onChildFail(int index, Promise promise, Object reject, int done, int fail) {
+		rejectOnce(new OneReject(index, promise, reject));
+	}
+
+	private void rejectOnce(OneReject reject) {
+		if (settled.compareAndSet(false, true))
+			reject(reject);
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.multiple;
+
+/**
+ * Results of 5 promises joined with
+ * {@link org.jdeferred.DeferredManager#join(org.jdeferred.Promise, org.jdeferred.Promise, org.jdeferred.Promise, org.jdeferred.Promise, org.jdeferred.Promise)}.
+ * 
+ * @author Ray Tsang
+ *
+ * @param <A> Type of the first result
+ * @param <B> Type of the second result
+ * @param <C> Type of the third result
+ * @param <D> Type of the fourth result
+ * @param <E> Type of the fifth result
+ */
+public class Tuple5<A, B, C, D, E> {
+	private final A first;
+	private final B second;
+	private final C third;
+	private final D fourth;
+	private final E fifth;
+	
+	public Tuple5(A first, B second, C third, D fourth, E fifth) {
+		this.first = first;
+		this.second = second;
+		this.third = third;
+		this.fourth = fourth;
+		this.fifth = fifth;
+	}
+	public A getFirst() {
+		return first;
+	}
+	public B getSecond() {
+		return second;
+	}
+	public C getThird() {
+		return third;
+	}
+	public D getFourth() {
+		return fourth;
+	}
+	public E getFifth() {
+		return fifth;
+	}
+	@Override
+	public String toString() {
+		return "Tuple5 [first=" + first
+				+ ", second=" + second
+				+ ", third=" + third
+				+ ", fourth=" + fourth
+				+ ", fifth=" + fifth + "]";
+	}
+}
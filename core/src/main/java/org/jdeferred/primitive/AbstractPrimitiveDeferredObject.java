@@ -0,0 +1,167 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.primitive;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise.State;
+import org.jdeferred.impl.DeferredObject;
+import org.jdeferred.impl.ExceptionHandler;
+import org.jdeferred.impl.ExceptionHandler.Location;
+
+/**
+ * State and callbacks shared by the primitive deferred objects. Subclasses store the
+ * resolved value in a primitive field and pass it to their own callback type, so that
+ * it is never boxed.
+ *
+ * The callback lists are only allocated once a callback is registered on a pending
+ * object, and dropped once it settled. Unlike {@link org.jdeferred.impl.DeferredObject},
+ * there is no progress, no instrumentation and no context or deadline propagation.
+ *
+ * @author Ray Tsang
+ *
+ * @param <F> Type used for {@link #doReject(Object)}
+ * @param <C> Type of the done callbacks
+ */
+public abstract class AbstractPrimitiveDeferredObject<F, C> {
+	private static final Logger log = Logger.getLogger(AbstractPrimitiveDeferredObject.class.getName());
+
+	private volatile State state = State.PENDING;
+	private F rejectResult;
+	/* guarded by this, null until a callback is registered while pending */
+	private List<C> doneCallbacks;
+	private List<FailCallback<F>> failCallbacks;
+
+	public State state() {
+		return state;
+	}
+
+	public boolean isPending() {
+		return state == State.PENDING;
+	}
+
+	public boolean isResolved() {
+		return state == State.RESOLVED;
+	}
+
+	public boolean isRejected() {
+		return state == State.REJECTED;
+	}
+
+	/**
+	 * Passes the resolved value to the callback.
+	 *
+	 * @param callback
+	 */
+	protected abstract void invokeDone(C callback);
+
+	protected void addDoneCallback(C callback) {
+		synchronized (this) {
+			if (isPending()) {
+				if (doneCallbacks == null)
+					doneCallbacks = new ArrayList<C>(2);
+				doneCallbacks.add(callback);
+				return;
+			}
+		}
+		if (isResolved())
+			invokeDone(callback);
+	}
+
+	protected void addFailCallback(FailCallback<F> callback) {
+		final F rejectResult;
+		synchronized (this) {
+			if (isPending()) {
+				if (failCallbacks == null)
+					failCallbacks = new ArrayList<FailCallback<F>>(2);
+				failCallbacks.add(callback);
+				return;
+			}
+			if (!isRejected())
+				return;
+			rejectResult = this.rejectResult;
+		}
+		callback.onFail(rejectResult);
+	}
+
+	/**
+	 * Has to be called while holding the lock of this object, after storing the value.
+	 *
+	 * @return the callbacks to pass to {@link #triggerDone(List)} once the lock is released
+	 */
+	protected List<C> markResolved() {
+		if (!isPending())
+			throw new IllegalStateException("Deferred object already finished, cannot resolve again");
+		state = State.RESOLVED;
+		List<C> callbacks = doneCallbacks;
+		doneCallbacks = null;
+		failCallbacks = null;
+		return callbacks == null ? Collections.<C> emptyList() : callbacks;
+	}
+
+	protected void triggerDone(List<C> callbacks) {
+		for (int i = 0; i < callbacks.size(); i++) {
+			C callback = callbacks.get(i);
+			try {
+				invokeDone(callback);
+			} catch (Exception e) {
+				invokeOnException(Location.doneCallback, e, callback);
+				log.log(Level.SEVERE, "an uncaught exception occured in a DoneCallback", e);
+			}
+		}
+	}
+
+	protected void doReject(F reject) {
+		final List<FailCallback<F>> callbacks;
+		synchronized (this) {
+			if (!isPending())
+				throw new IllegalStateException("Deferred object already finished, cannot reject again");
+			rejectResult = reject;
+			state = State.REJECTED;
+			callbacks = failCallbacks;
+			doneCallbacks = null;
+			failCallbacks = null;
+		}
+		if (callbacks == null)
+			return;
+		for (int i = 0; i < callbacks.size(); i++) {
+			FailCallback<F> callback = callbacks.get(i);
+			try {
+				callback.onFail(reject);
+			} catch (Exception e) {
+				invokeOnException(Location.failCallback, e, callback);
+				log.log(Level.SEVERE, "an uncaught exception occured in a FailCallback", e);
+			}
+		}
+	}
+
+	/* same handler as the other deferred objects, see DeferredObject#setExceptionHandler */
+	private static void invokeOnException(Location location, Exception exception, Object callback) {
+		ExceptionHandler exceptionHandler = DeferredObject.getExceptionHandler();
+		if (exceptionHandler == null)
+			return;
+		try {
+			exceptionHandler.onException(location, exception, callback);
+		} catch (Exception ex) {
+			log.log(Level.SEVERE, "A exception handler has thrown an exception.", ex);
+		}
+	}
+}
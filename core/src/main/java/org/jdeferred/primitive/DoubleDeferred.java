@@ -0,0 +1,42 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.primitive;
+
+/**
+ * {@link org.jdeferred.Deferred} of a <code>double</code>.
+ *
+ * @see DoubleDeferredObject
+ * @author Ray Tsang
+ *
+ * @param <F> Type used for {@link #reject(Object)}
+ */
+public interface DoubleDeferred<F> extends DoublePromise<F> {
+	/**
+	 * @param resolve
+	 * @return this
+	 * @throws IllegalStateException if already resolved or rejected
+	 */
+	DoubleDeferred<F> resolve(final double resolve);
+
+	/**
+	 * @param reject
+	 * @return this
+	 * @throws IllegalStateException if already resolved or rejected
+	 */
+	DoubleDeferred<F> reject(final F reject);
+
+	DoublePromise<F> promise();
+}
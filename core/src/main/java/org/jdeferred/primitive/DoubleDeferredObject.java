@@ -0,0 +1,154 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.primitive;
+
+import java.util.List;
+
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DeferredObject;
+
+/**
+ * Implementation of {@link DoubleDeferred}.
+ *
+ * <pre>
+ * <code>
+ * {@link DoubleDeferred} deferred = new {@link DoubleDeferredObject}();
+ * deferred.promise()
+ *   .then(new {@link DoubleDoneFilter}() { ... })
+ *   .done(new {@link DoubleDoneCallback}() { ... });
+ * deferred.resolve(42);
+ * </code>
+ * </pre>
+ *
+ * Use {@link #boxed()} and {@link #unbox(Promise)} to interoperate with {@link Promise}.
+ *
+ * @author Ray Tsang
+ *
+ * @param <F> Type used for {@link #reject(Object)}
+ */
+public class DoubleDeferredObject<F> extends AbstractPrimitiveDeferredObject<F, DoubleDoneCallback> implements DoubleDeferred<F> {
+	private double result;
+
+	/**
+	 * @param promise
+	 * @return a promise that resolves with the unboxed value, which must not be <code>null</code>,
+	 * or rejects like the given promise
+	 */
+	public static <F> DoublePromise<F> unbox(Promise<Double, F, ?> promise) {
+		final DoubleDeferredObject<F> unboxed = new DoubleDeferredObject<F>();
+		promise.done(new DoneCallback<Double>() {
+			@Override
+			public void onDone(Double result) {
+				unboxed.resolve(result);
+			}
+		}).fail(new FailCallback<F>() {
+			@Override
+			public void onFail(F result) {
+				unboxed.reject(result);
+			}
+		});
+		return unboxed;
+	}
+
+	@Override
+	public DoubleDeferred<F> resolve(final double resolve) {
+		final List<DoubleDoneCallback> callbacks;
+		synchronized (this) {
+			this.result = resolve;
+			callbacks = markResolved();
+		}
+		triggerDone(callbacks);
+		return this;
+	}
+
+	@Override
+	public DoubleDeferred<F> reject(final F reject) {
+		doReject(reject);
+		return this;
+	}
+
+	@Override
+	public DoublePromise<F> promise() {
+		return this;
+	}
+
+	@Override
+	protected void invokeDone(DoubleDoneCallback callback) {
+		callback.onDone(result);
+	}
+
+	@Override
+	public DoublePromise<F> done(DoubleDoneCallback callback) {
+		addDoneCallback(callback);
+		return this;
+	}
+
+	@Override
+	public DoublePromise<F> fail(FailCallback<F> callback) {
+		addFailCallback(callback);
+		return this;
+	}
+
+	@Override
+	public DoublePromise<F> then(DoubleDoneFilter filter) {
+		Stage<F> stage = new Stage<F>(filter);
+		done(stage);
+		fail(stage);
+		return stage;
+	}
+
+	@Override
+	public Promise<Double, F, Void> boxed() {
+		final DeferredObject<Double, F, Void> boxed = new DeferredObject<Double, F, Void>();
+		done(new DoubleDoneCallback() {
+			@Override
+			public void onDone(double result) {
+				boxed.resolve(result);
+			}
+		});
+		fail(new FailCallback<F>() {
+			@Override
+			public void onFail(F result) {
+				boxed.reject(result);
+			}
+		});
+		return boxed.promise();
+	}
+
+	/**
+	 * Stage created by {@link #then(DoubleDoneFilter)}, which listens to the previous one
+	 * itself rather than through separate callback objects.
+	 */
+	private static final class Stage<F> extends DoubleDeferredObject<F> implements DoubleDoneCallback, FailCallback<F> {
+		private final DoubleDoneFilter filter;
+
+		Stage(DoubleDoneFilter filter) {
+			this.filter = filter;
+		}
+
+		@Override
+		public void onDone(double result) {
+			resolve(filter.filterDone(result));
+		}
+
+		@Override
+		public void onFail(F result) {
+			reject(result);
+		}
+	}
+}
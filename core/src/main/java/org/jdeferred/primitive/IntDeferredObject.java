@@ -0,0 +1,154 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.primitive;
+
+import java.util.List;
+
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DeferredObject;
+
+/**
+ * Implementation of {@link IntDeferred}.
+ *
+ * <pre>
+ * <code>
+ * {@link IntDeferred} deferred = new {@link IntDeferredObject}();
+ * deferred.promise()
+ *   .then(new {@link IntDoneFilter}() { ... })
+ *   .done(new {@link IntDoneCallback}() { ... });
+ * deferred.resolve(42);
+ * </code>
+ * </pre>
+ *
+ * Use {@link #boxed()} and {@link #unbox(Promise)} to interoperate with {@link Promise}.
+ *
+ * @author Ray Tsang
+ *
+ * @param <F> Type used for {@link #reject(Object)}
+ */
+public class IntDeferredObject<F> extends AbstractPrimitiveDeferredObject<F, IntDoneCallback> implements IntDeferred<F> {
+	private int result;
+
+	/**
+	 * @param promise
+	 * @return a promise that resolves with the unboxed value, which must not be <code>null</code>,
+	 * or rejects like the given promise
+	 */
+	public static <F> IntPromise<F> unbox(Promise<Integer, F, ?> promise) {
+		final IntDeferredObject<F> unboxed = new IntDeferredObject<F>();
+		promise.done(new DoneCallback<Integer>() {
+			@Override
+			public void onDone(Integer result) {
+				unboxed.resolve(result);
+			}
+		}).fail(new FailCallback<F>() {
+			@Override
+			public void onFail(F result) {
+				unboxed.reject(result);
+			}
+		});
+		return unboxed;
+	}
+
+	@Override
+	public IntDeferred<F> resolve(final int resolve) {
+		final List<IntDoneCallback> callbacks;
+		synchronized (this) {
+			this.result = resolve;
+			callbacks = markResolved();
+		}
+		triggerDone(callbacks);
+		return this;
+	}
+
+	@Override
+	public IntDeferred<F> reject(final F reject) {
+		doReject(reject);
+		return this;
+	}
+
+	@Override
+	public IntPromise<F> promise() {
+		return this;
+	}
+
+	@Override
+	protected void invokeDone(IntDoneCallback callback) {
+		callback.onDone(result);
+	}
+
+	@Override
+	public IntPromise<F> done(IntDoneCallback callback) {
+		addDoneCallback(callback);
+		return this;
+	}
+
+	@Override
+	public IntPromise<F> fail(FailCallback<F> callback) {
+		addFailCallback(callback);
+		return this;
+	}
+
+	@Override
+	public IntPromise<F> then(IntDoneFilter filter) {
+		Stage<F> stage = new Stage<F>(filter);
+		done(stage);
+		fail(stage);
+		return stage;
+	}
+
+	@Override
+	public Promise<Integer, F, Void> boxed() {
+		final DeferredObject<Integer, F, Void> boxed = new DeferredObject<Integer, F, Void>();
+		done(new IntDoneCallback() {
+			@Override
+			public void onDone(int result) {
+				boxed.resolve(result);
+			}
+		});
+		fail(new FailCallback<F>() {
+			@Override
+			public void onFail(F result) {
+				boxed.reject(result);
+			}
+		});
+		return boxed.promise();
+	}
+
+	/**
+	 * Stage created by {@link #then(IntDoneFilter)}, which listens to the previous one
+	 * itself rather than through separate callback objects.
+	 */
+	private static final class Stage<F> extends IntDeferredObject<F> implements IntDoneCallback, FailCallback<F> {
+		private final IntDoneFilter filter;
+
+		Stage(IntDoneFilter filter) {
+			this.filter = filter;
+		}
+
+		@Override
+		public void onDone(int result) {
+			resolve(filter.filterDone(result));
+		}
+
+		@Override
+		public void onFail(F result) {
+			reject(result);
+		}
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.primitive;
+
+import java.util.List;
+
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DeferredObject;
+
+/**
+ * Implementation of {@link LongDeferred}.
+ *
+ * <pre>
+ * <code>
+ * {@link LongDeferred} deferred = new {@link LongDeferredObject}();
+ * deferred.promise()
+ *   .then(new {@link LongDoneFilter}() { ... })
+ *   .done(new {@link LongDoneCallback}() { ... });
+ * deferred.resolve(42);
+ * </code>
+ * </pre>
+ *
+ * Use {@link #boxed()} and {@link #unbox(Promise)} to interoperate with {@link Promise}.
+ *
+ * @author Ray Tsang
+ *
+ * @param <F> Type used for {@link #reject(Object)}
+ */
+public class LongDeferredObject<F> extends AbstractPrimitiveDeferredObject<F, LongDoneCallback> implements LongDeferred<F> {
+	private long result;
+
+	/**
+	 * @param promise
+	 * @return a promise that resolves with the unboxed value, which must not be <code>null</code>,
+	 * or rejects like the given promise
+	 */
+	public static <F> LongPromise<F> unbox(Promise<Long, F, ?> promise) {
+		final LongDeferredObject<F> unboxed = new LongDeferredObject<F>();
+		promise.done(new DoneCallback<Long>() {
+			@Override
+			public void onDone(Long result) {
+				unboxed.resolve(result);
+			}
+		}).fail(new FailCallback<F>() {
+			@Override
+			public void onFail(F result) {
+				unboxed.reject(result);
+			}
+		});
+		return unboxed;
+	}
+
+	@Override
+	public LongDeferred<F> resolve(final long resolve) {
+		final List<LongDoneCallback> callbacks;
+		synchronized (this) {
+			this.result = resolve;
+			callbacks = markResolved();
+		}
+		triggerDone(callbacks);
+		return this;
+	}
+
+	@Override
+	public LongDeferred<F> reject(final F reject) {
+		doReject(reject);
+		return this;
+	}
+
+	@Override
+	public LongPromise<F> promise() {
+		return this;
+	}
+
+	@Override
+	protected void invokeDone(LongDoneCallback callback) {
+		callback.onDone(result);
+	}
+
+	@Override
+	public LongPromise<F> done(LongDoneCallback callback) {
+		addDoneCallback(callback);
+		return this;
+	}
+
+	@Override
+	public LongPromise<F> fail(FailCallback<F> callback) {
+		addFailCallback(callback);
+		return this;
+	}
+
+	@Override
+	public LongPromise<F> then(LongDoneFilter filter) {
+		Stage<F> stage = new Stage<F>(filter);
+		done(stage);
+		fail(stage);
+		return stage;
+	}
+
+	@Override
+	public Promise<Long, F, Void> boxed() {
+		final DeferredObject<Long, F, Void> boxed = new DeferredObject<Long, F, Void>();
+		done(new LongDoneCallback() {
+			@Override
+			public void onDone(long result) {
+				boxed.resolve(result);
+			}
+		});
+		fail(new FailCallback<F>() {
+			@Override
+			public void onFail(F result) {
+				boxed.reject(result);
+			}
+		});
+		return boxed.promise();
+	}
+
+	/**
+	 * Stage created by {@link #then(LongDoneFilter)}, which listens to the previous one
+	 * itself rather than through separate callback objects.
+	 */
+	private static final class Stage<F> extends LongDeferredObject<F> implements LongDoneCallback, FailCallback<F> {
+		private final LongDoneFilter filter;
+
+		Stage(LongDoneFilter filter) {
+			this.filter = filter;
+		}
+
+		@Override
+		public void onDone(long result) {
+			resolve(filter.filterDone(result));
+		}
+
+		@Override
+		public void onFail(F result) {
+			reject(result);
+		}
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.primitive;
+
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.Promise.State;
+
+/**
+ * {@link Promise} of a <code>long</code> that is never boxed, neither when resolved nor
+ * when passed to callbacks and filters. There is no progress.
+ *
+ * @see LongDeferredObject
+ * @author Ray Tsang
+ *
+ * @param <F> Type used for {@link LongDeferred#reject(Object)}
+ */
+public interface LongPromise<F> {
+	public State state();
+
+	public boolean isPending();
+
+	public boolean isResolved();
+
+	public boolean isRejected();
+
+	public LongPromise<F> done(LongDoneCallback callback);
+
+	public LongPromise<F> fail(FailCallback<F> callback);
+
+	/**
+	 * Chains a stage that resolves with the filtered value, or rejects like this promise.
+	 *
+	 * @param filter
+	 * @return the stage
+	 */
+	public LongPromise<F> then(LongDoneFilter filter);
+
+	/**
+	 * @return a {@link Promise} that resolves with the boxed value, or rejects like this promise
+	 */
+	public Promise<Long, F, Void> boxed();
+}
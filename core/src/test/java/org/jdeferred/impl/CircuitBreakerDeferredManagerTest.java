@@ -0,0 +1,164 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.CircuitBreakerDeferredManager.State;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CircuitBreakerDeferredManagerTest extends AbstractDeferredTest {
+	private final AtomicLong time = new AtomicLong();
+	private final AtomicInteger calls = new AtomicInteger();
+	private CircuitBreakerDeferredManager breaker;
+	
+	@Before
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		breaker = new CircuitBreakerDeferredManager(deferredManager) {
+			@Override
+			protected long ticker() {
+				return time.get();
+			}
+		};
+		breaker.setSlidingWindowSize(4);
+		breaker.setMinimumNumberOfCalls(4);
+		breaker.setWaitDurationInOpenState(10, TimeUnit.SECONDS);
+		breaker.setPermittedCallsInHalfOpenState(2);
+	}
+	
+	/**
+	 * Runs the body through the breaker and waits for the breaker's callbacks. The body is
+	 * held until the waiting callback is registered, so that it runs after the breaker's
+	 * rather than right away on a promise that just settled.
+	 */
+	private Promise<Integer, Throwable, Void> run(final Callable<Integer> body) {
+		final CountDownLatch registered = new CountDownLatch(1);
+		Promise<Integer, Throwable, Void> promise = breaker.when(new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				registered.await();
+				return body.call();
+			}
+		});
+		final CountDownLatch latch = new CountDownLatch(1);
+		promise.always(new AlwaysCallback<Integer, Throwable>() {
+			@Override
+			public void onAlways(Promise.State state, Integer resolved, Throwable rejected) {
+				latch.countDown();
+			}
+		});
+		registered.countDown();
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			throw new IllegalStateException(e);
+		}
+		return promise;
+	}
+	
+	private Promise<Integer, Throwable, Void> call(final boolean fail) {
+		return run(new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				calls.incrementAndGet();
+				if (fail)
+					throw new IllegalStateException("oops");
+				return 1;
+			}
+		});
+	}
+	
+	@Test
+	public void testOpensOnFailureRate() {
+		call(false);
+		call(true);
+		call(false);
+		Assert.assertEquals(State.CLOSED, breaker.getState());
+		call(true);
+		Assert.assertEquals(State.OPEN, breaker.getState());
+		
+		Promise<Integer, Throwable, Void> rejected = call(false);
+		Assert.assertTrue(rejected.isRejected());
+		Assert.assertSame(rejected, call(false));
+		Assert.assertEquals(4, calls.get());
+	}
+	
+	@Test
+	public void testMinimumClampedToWindow() {
+		breaker.setMinimumNumberOfCalls(10);
+		for (int i = 0; i < 4; i++) {
+			call(true);
+		}
+		Assert.assertEquals(State.OPEN, breaker.getState());
+	}
+	
+	@Test
+	public void testHalfOpenCloses() {
+		for (int i = 0; i < 4; i++) {
+			call(true);
+		}
+		Assert.assertEquals(State.OPEN, breaker.getState());
+		
+		time.addAndGet(TimeUnit.SECONDS.toNanos(10));
+		call(false);
+		Assert.assertEquals(State.HALF_OPEN, breaker.getState());
+		call(false);
+		Assert.assertEquals(State.CLOSED, breaker.getState());
+		Assert.assertEquals(6, calls.get());
+	}
+	
+	@Test
+	public void testHalfOpenReopens() {
+		for (int i = 0; i < 4; i++) {
+			call(true);
+		}
+		time.addAndGet(TimeUnit.SECONDS.toNanos(10));
+		call(true);
+		call(false);
+		Assert.assertEquals(State.OPEN, breaker.getState());
+		Assert.assertTrue(call(false).isRejected());
+		Assert.assertEquals(6, calls.get());
+	}
+	
+	@Test
+	public void testOpensOnSlowCallRate() {
+		breaker.setSlowCallDuration(1, TimeUnit.SECONDS);
+		breaker.setSlowCallRateThreshold(0.5);
+		
+		for (int i = 0; i < 4; i++) {
+			final boolean slow = i % 2 == 0;
+			run(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					if (slow)
+						time.addAndGet(TimeUnit.SECONDS.toNanos(2));
+					return 1;
+				}
+			});
+		}
+		Assert.assertEquals(State.OPEN, breaker.getState());
+	}
+}
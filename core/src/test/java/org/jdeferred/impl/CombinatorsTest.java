@@ -0,0 +1,529 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdeferred.Accumulator;
+import org.jdeferred.Combiner;
+import org.jdeferred.Deferred;
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.ProgressCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.ExceptionHandler.Location;
+import org.jdeferred.multiple.AllValues;
+import org.jdeferred.multiple.MasterProgress;
+import org.jdeferred.multiple.OneReject;
+import org.jdeferred.multiple.OneResult;
+import org.jdeferred.multiple.Tuple2;
+import org.jdeferred.multiple.Tuple3;
+import org.junit.Assert;
+import org.junit.Test;
+
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class CombinatorsTest extends AbstractDeferredTest {
+	@Test
+	public void testRaceFirstSettledWins() {
+		final ValueHolder<OneResult> holder = new ValueHolder<OneResult>();
+		final AtomicInteger failCount = new AtomicInteger();
+		
+		deferredManager.race(successCallable("slow", 1000), successCallable("fast", 50))
+		.done(new DoneCallback<OneResult>() {
+			public void onDone(OneResult result) {
+				holder.set(result);
+			}
+		}).fail(new FailCallback<OneReject>() {
+			public void onFail(OneReject result) {
+				failCount.incrementAndGet();
+			}
+		});
+		
+		waitForCompletion();
+		Assert.assertEquals(1, holder.get().getIndex());
+		Assert.assertEquals("fast", holder.get().getResult());
+		Assert.assertEquals(0, failCount.get());
+	}
+	
+	@Test
+	public void testRaceFirstRejectionWins() {
+		Deferred d1 = new DeferredObject();
+		Deferred d2 = new DeferredObject();
+		final ValueHolder<OneReject> holder = new ValueHolder<OneReject>();
+		
+		deferredManager.race(d1.promise(), d2.promise()).fail(new FailCallback<OneReject>() {
+			public void onFail(OneReject result) {
+				holder.set(result);
+			}
+		});
+		
+		d2.reject("oops");
+		d1.resolve("late");
+		Assert.assertEquals(1, holder.get().getIndex());
+		Assert.assertEquals("oops", holder.get().getReject());
+	}
+	
+	@Test
+	public void testRaceCancelsLosers() {
+		final AtomicInteger completed = new AtomicInteger();
+		final AtomicInteger interrupted = new AtomicInteger();
+		Callable<String> loser = new Callable<String>() {
+			public String call() {
+				try {
+					Thread.sleep(2000);
+					completed.incrementAndGet();
+				} catch (InterruptedException e) {
+					interrupted.incrementAndGet();
+				}
+				return "loser";
+			}
+		};
+		
+		deferredManager.race(loser, successCallable("winner", 100), loser);
+		
+		waitForCompletion();
+		Assert.assertEquals(0, completed.get());
+		Assert.assertEquals(2, interrupted.get());
+	}
+	
+	@Test
+	public void testAnyFirstSuccessWins() {
+		final ValueHolder<OneResult> holder = new ValueHolder<OneResult>();
+		
+		deferredManager.any(
+				failedCallable(new RuntimeException("oops"), 0),
+				successCallable(100, 200),
+				successCallable(200, 1000))
+		.done(new DoneCallback<OneResult>() {
+			public void onDone(OneResult result) {
+				holder.set(result);
+			}
+		});
+		
+		waitForCompletion();
+		Assert.assertEquals(1, holder.get().getIndex());
+		Assert.assertEquals(100, holder.get().getResult());
+	}
+	
+	@Test
+	public void testAnyAllRejected() {
+		Deferred d1 = new DeferredObject();
+		Deferred d2 = new DeferredObject();
+		final ValueHolder<AllValues> holder = new ValueHolder<AllValues>();
+		
+		deferredManager.any(d1.promise(), d2.promise()).fail(new FailCallback<AllValues>() {
+			public void onFail(AllValues result) {
+				holder.set(result);
+			}
+		});
+		
+		d1.reject("a");
+		Assert.assertNull(holder.get());
+		d2.reject("b");
+		Assert.assertEquals(2, holder.get().size());
+		Assert.assertEquals("a", holder.get().get(0).getValue());
+		Assert.assertEquals("b", holder.get().get(1).getValue());
+	}
+	
+	@Test
+	public void testAllSettled() {
+		Deferred d1 = new DeferredObject();
+		Deferred d2 = new DeferredObject();
+		Deferred d3 = new DeferredObject();
+		final ValueHolder<AllValues> holder = new ValueHolder<AllValues>();
+		
+		deferredManager.allSettled(d1.promise(), d2.promise(), d3.promise())
+		.done(new DoneCallback<AllValues>() {
+			public void onDone(AllValues result) {
+				holder.set(result);
+			}
+		});
+		
+		d2.reject("oops");
+		d1.resolve(1);
+		Assert.assertNull(holder.get());
+		d3.resolve(3);
+		
+		AllValues values = holder.get();
+		Assert.assertTrue(values.get(0) instanceof OneResult);
+		Assert.assertEquals(1, values.get(0).getValue());
+		Assert.assertTrue(values.get(1) instanceof OneReject);
+		Assert.assertEquals("oops", values.get(1).getValue());
+		Assert.assertEquals(3, values.get(2).getValue());
+	}
+	
+	@Test
+	public void testSomeQuorum() {
+		Deferred d1 = new DeferredObject();
+		Deferred d2 = new DeferredObject();
+		Deferred d3 = new DeferredObject();
+		final ValueHolder<AllValues> holder = new ValueHolder<AllValues>();
+		
+		deferredManager.some(2, d1.promise(), d2.promise(), d3.promise())
+		.done(new DoneCallback<AllValues>() {
+			public void onDone(AllValues result) {
+				holder.set(result);
+			}
+		});
+		
+		d1.resolve(1);
+		d2.reject("oops");
+		Assert.assertNull(holder.get());
+		d3.resolve(3);
+		
+		Assert.assertEquals(1, holder.get().get(0).getValue());
+		Assert.assertEquals(3, holder.get().get(2).getValue());
+	}
+	
+	@Test
+	public void testSomeQuorumImpossible() {
+		Deferred d1 = new DeferredObject();
+		Deferred d2 = new DeferredObject();
+		Deferred d3 = new DeferredObject();
+		final AtomicInteger failCount = new AtomicInteger();
+		
+		deferredManager.some(2, d1.promise(), d2.promise(), d3.promise())
+		.fail(new FailCallback<AllValues>() {
+			public void onFail(AllValues result) {
+				failCount.incrementAndGet();
+			}
+		});
+		
+		d1.reject("a");
+		Assert.assertEquals(0, failCount.get());
+		d2.reject("b");
+		Assert.assertEquals(1, failCount.get());
+		d3.resolve(3);
+		Assert.assertEquals(1, failCount.get());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testSomeInvalidCount() {
+		deferredManager.some(3, new DeferredObject().promise(), new DeferredObject().promise());
+	}
+	
+	@Test
+	public void testCancelledTaskRejects() {
+		final ValueHolder<Throwable> holder = new ValueHolder<Throwable>();
+		deferredManager.setAutoSubmit(false);
+		
+		DeferredFutureTask<String, Void> task = new DeferredFutureTask<String, Void>(successCallable("never", 0));
+		deferredManager.when(task).fail(new FailCallback<Throwable>() {
+			public void onFail(Throwable result) {
+				holder.set(result);
+			}
+		});
+		
+		Assert.assertTrue(task.cancel(true));
+		Assert.assertTrue(holder.get() instanceof CancellationException);
+	}
+	
+	@Test
+	public void testStreamInCompletionOrder() {
+		final List<Object> results = new ArrayList<Object>();
+		final ValueHolder<Integer> count = new ValueHolder<Integer>();
+		
+		deferredManager.stream(new DoneCallback<OneResult>() {
+			public void onDone(OneResult result) {
+				results.add(result.getResult());
+			}
+		}, successCallable("slow", 300), successCallable("fast", 50), successCallable("medium", 150))
+		.done(new DoneCallback<Integer>() {
+			public void onDone(Integer result) {
+				count.set(result);
+			}
+		});
+		
+		waitForCompletion();
+		Assert.assertEquals(Arrays.asList("fast", "medium", "slow"), results);
+		Assert.assertEquals((Integer) 3, count.get());
+	}
+	
+	@Test
+	public void testStreamSettlesWithoutHoldingConsumer() {
+		final ValueHolder<Boolean> held = new ValueHolder<Boolean>();
+		final DoneCallback<OneResult> consumer = new DoneCallback<OneResult>() {
+			public void onDone(OneResult result) {
+			}
+		};
+		
+		deferredManager.stream(consumer, successCallable("a", 0))
+		.done(new DoneCallback<Integer>() {
+			public void onDone(Integer result) {
+				held.set(Thread.holdsLock(consumer));
+			}
+		});
+		
+		waitForCompletion();
+		held.assertEquals(false);
+	}
+	
+	@Test
+	public void testStreamStopsOnFailure() {
+		Deferred d1 = new DeferredObject();
+		Deferred d2 = new DeferredObject();
+		Deferred d3 = new DeferredObject();
+		final List<Object> results = new ArrayList<Object>();
+		final ValueHolder<OneReject> holder = new ValueHolder<OneReject>();
+		
+		deferredManager.stream(new DoneCallback<OneResult>() {
+			public void onDone(OneResult result) {
+				results.add(result.getResult());
+			}
+		}, d1.promise(), d2.promise(), d3.promise())
+		.fail(new FailCallback<OneReject>() {
+			public void onFail(OneReject result) {
+				holder.set(result);
+			}
+		});
+		
+		d3.resolve(3);
+		d2.reject("oops");
+		d1.resolve(1);
+		Assert.assertEquals(Arrays.<Object> asList(3), results);
+		Assert.assertEquals(1, holder.get().getIndex());
+	}
+	
+	@Test
+	public void testStreamToQueue() throws InterruptedException {
+		BlockingQueue<OneResult> queue = new LinkedBlockingQueue<OneResult>();
+		
+		Promise<Integer, OneReject, MasterProgress> p = deferredManager.stream(queue,
+				deferredManager.when(successCallable(1, 0)),
+				deferredManager.when(successCallable(2, 0)),
+				deferredManager.when(successCallable(3, 0)));
+		
+		int sum = 0;
+		for (int i = 0; i < 3; i++) {
+			sum += (Integer) queue.take().getResult();
+		}
+		Assert.assertEquals(6, sum);
+		waitForCompletion();
+		Assert.assertTrue(p.isResolved());
+	}
+	
+	@Test
+	public void testJoin() {
+		final ValueHolder<Tuple3<Integer, String, Boolean>> holder = new ValueHolder<Tuple3<Integer, String, Boolean>>();
+		Deferred<String, Void, Void> d = new DeferredObject<String, Void, Void>();
+		
+		deferredManager.join(
+				deferredManager.when(successCallable(1, 100)),
+				d.promise(),
+				new DeferredObject<Boolean, Void, Void>().resolve(true).promise())
+		.done(new DoneCallback<Tuple3<Integer, String, Boolean>>() {
+			public void onDone(Tuple3<Integer, String, Boolean> result) {
+				holder.set(result);
+			}
+		});
+		
+		d.resolve("two");
+		waitForCompletion();
+		Assert.assertEquals((Integer) 1, holder.get().getFirst());
+		Assert.assertEquals("two", holder.get().getSecond());
+		Assert.assertTrue(holder.get().getThird());
+	}
+	
+	@Test
+	public void testJoinFailsFast() {
+		Deferred<Integer, String, Void> d1 = new DeferredObject<Integer, String, Void>();
+		Deferred<Integer, String, Void> d2 = new DeferredObject<Integer, String, Void>();
+		final ValueHolder<OneReject> holder = new ValueHolder<OneReject>();
+		final AtomicInteger doneCount = new AtomicInteger();
+		
+		deferredManager.join(d1.promise(), d2.promise())
+		.done(new DoneCallback<Tuple2<Integer, Integer>>() {
+			public void onDone(Tuple2<Integer, Integer> result) {
+				doneCount.incrementAndGet();
+			}
+		}).fail(new FailCallback<OneReject>() {
+			public void onFail(OneReject result) {
+				holder.set(result);
+			}
+		});
+		
+		d2.reject("oops");
+		d1.resolve(1);
+		Assert.assertEquals(1, holder.get().getIndex());
+		Assert.assertEquals("oops", holder.get().getReject());
+		Assert.assertEquals(0, doneCount.get());
+	}
+	
+	@Test
+	public void testFoldAsync() {
+		final ValueHolder<StringBuilder> holder = new ValueHolder<StringBuilder>();
+		Deferred d1 = new DeferredObject();
+		Deferred d2 = new DeferredObject();
+		Deferred d3 = new DeferredObject();
+		
+		deferredManager.foldAsync(new StringBuilder(), new Accumulator<StringBuilder, String>() {
+			public StringBuilder accumulate(StringBuilder accumulator, String value) {
+				return accumulator.append(value);
+			}
+		}, d1.promise(), d2.promise(), d3.promise())
+		.done(new DoneCallback<StringBuilder>() {
+			public void onDone(StringBuilder result) {
+				holder.set(result);
+			}
+		});
+		
+		d2.resolve("b");
+		d3.resolve("c");
+		d1.resolve("a");
+		Assert.assertEquals("bca", holder.get().toString());
+	}
+	
+	@Test
+	public void testFoldAsyncAccumulatorFails() {
+		final ValueHolder<OneReject> holder = new ValueHolder<OneReject>();
+		Deferred d1 = new DeferredObject();
+		Deferred d2 = new DeferredObject();
+		
+		deferredManager.foldAsync(0, new Accumulator<Integer, Integer>() {
+			public Integer accumulate(Integer accumulator, Integer value) {
+				if (value < 0)
+					throw new IllegalArgumentException("negative");
+				return accumulator + value;
+			}
+		}, d1.promise(), d2.promise())
+		.fail(new FailCallback<OneReject>() {
+			public void onFail(OneReject result) {
+				holder.set(result);
+			}
+		});
+		
+		d1.resolve(-1);
+		d2.resolve(2);
+		Assert.assertEquals(0, holder.get().getIndex());
+		Assert.assertTrue(holder.get().getReject() instanceof IllegalArgumentException);
+	}
+	
+	@Test
+	public void testReduceAsync() {
+		final ValueHolder<Long> holder = new ValueHolder<Long>();
+		List<Promise> promises = new ArrayList<Promise>();
+		for (int i = 1; i <= 1000; i++) {
+			promises.add(deferredManager.when(successCallable((long) i, 0)));
+		}
+		
+		deferredManager.reduceAsync(new Combiner<Long>() {
+			public Long combine(Long first, Long second) {
+				return first + second;
+			}
+		}, promises).done(new DoneCallback<Long>() {
+			public void onDone(Long result) {
+				holder.set(result);
+			}
+		});
+		
+		waitForCompletion();
+		Assert.assertEquals((Long) 500500L, holder.get());
+	}
+	
+	@Test
+	public void testFoldAndReduceSettleWithoutLocks() {
+		final ValueHolder<Boolean> folded = new ValueHolder<Boolean>();
+		final ValueHolder<Boolean> reduced = new ValueHolder<Boolean>();
+		Deferred d1 = new DeferredObject();
+		Deferred d2 = new DeferredObject();
+		
+		final Promise<Integer, OneReject, MasterProgress> fold = deferredManager.foldAsync(0, new Accumulator<Integer, Integer>() {
+			public Integer accumulate(Integer accumulator, Integer value) {
+				return accumulator + value;
+			}
+		}, d1.promise());
+		fold.done(new DoneCallback<Integer>() {
+			public void onDone(Integer result) {
+				folded.set(Thread.holdsLock(fold));
+			}
+		});
+		final Promise<Integer, OneReject, MasterProgress> reduce = deferredManager.reduceAsync(new Combiner<Integer>() {
+			public Integer combine(Integer first, Integer second) {
+				return first + second;
+			}
+		}, d2.promise());
+		reduce.fail(new FailCallback<OneReject>() {
+			public void onFail(OneReject result) {
+				reduced.set(Thread.holdsLock(reduce));
+			}
+		});
+		
+		d1.resolve(1);
+		d2.reject("failed");
+		folded.assertEquals(false);
+		reduced.assertEquals(false);
+	}
+	
+	@Test
+	public void testFoldAndReduceFailureWithProgressCallbacks() {
+		final List<Exception> uncaught = new ArrayList<Exception>();
+		final AtomicInteger progress = new AtomicInteger();
+		final ValueHolder<OneReject> folded = new ValueHolder<OneReject>();
+		final ValueHolder<OneReject> reduced = new ValueHolder<OneReject>();
+		DeferredObject.setExceptionHandler(new ExceptionHandler() {
+			public void onException(Location location, Exception exception, Object handler) {
+				uncaught.add(exception);
+			}
+		});
+		try {
+			Deferred d1 = new DeferredObject();
+			Deferred d2 = new DeferredObject();
+			Deferred d3 = new DeferredObject();
+			ProgressCallback<MasterProgress> counter = new ProgressCallback<MasterProgress>() {
+				public void onProgress(MasterProgress result) {
+					progress.incrementAndGet();
+				}
+			};
+			
+			deferredManager.foldAsync(0, new Accumulator<Integer, Integer>() {
+				public Integer accumulate(Integer accumulator, Integer value) {
+					throw new IllegalArgumentException("fold");
+				}
+			}, d1.promise()).progress(counter).fail(new FailCallback<OneReject>() {
+				public void onFail(OneReject result) {
+					folded.set(result);
+				}
+			});
+			deferredManager.reduceAsync(new Combiner<Integer>() {
+				public Integer combine(Integer first, Integer second) {
+					throw new IllegalArgumentException("reduce");
+				}
+			}, d2.promise(), d3.promise()).progress(counter).fail(new FailCallback<OneReject>() {
+				public void onFail(OneReject result) {
+					reduced.set(result);
+				}
+			});
+			
+			d1.resolve(1);
+			d2.resolve(2);
+			d3.resolve(3);
+		} finally {
+			DeferredObject.setExceptionHandler(null);
+		}
+		Assert.assertEquals("fold", ((Exception) folded.get().getReject()).getMessage());
+		Assert.assertEquals("reduce", ((Exception) reduced.get().getReject()).getMessage());
+		Assert.assertEquals(3, progress.get());
+		Assert.assertEquals(new ArrayList<Exception>(), uncaught);
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.multiple.MultipleResults;
+import org.jdeferred.multiple.OneReject;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompletionSignalTest extends AbstractDeferredTest {
+	private final List<String> calls = new ArrayList<String>();
+
+	private DoneCallback<Void> done(final String name) {
+		return new DoneCallback<Void>() {
+			@Override
+			public void onDone(Void result) {
+				calls.add(name);
+			}
+		};
+	}
+
+	@Test
+	public void testRegistrationOrder() {
+		CompletionSignal<Void, Void> signal = new CompletionSignal<Void, Void>();
+		signal.always(new AlwaysCallback<Void, Throwable>() {
+			@Override
+			public void onAlways(Promise.State state, Void resolved, Throwable rejected) {
+				calls.add("always");
+			}
+		});
+		signal.done(done("a")).done(done("b"));
+		signal.fail(new FailCallback<Throwable>() {
+			@Override
+			public void onFail(Throwable result) {
+				calls.add("fail");
+			}
+		});
+
+		signal.resolve(null);
+		signal.done(done("c"));
+		Assert.assertEquals("[a, b, always, c]", calls.toString());
+		Assert.assertTrue(signal.isResolved());
+	}
+
+	@Test
+	public void testReject() {
+		final ValueHolder<Throwable> failed = new ValueHolder<Throwable>();
+		final ValueHolder<Promise.State> always = new ValueHolder<Promise.State>();
+		CompletionSignal<Void, Void> signal = new CompletionSignal<Void, Void>();
+		signal.done(done("done"));
+		signal.reject(new IllegalStateException("oops"));
+		signal.fail(new FailCallback<Throwable>() {
+			@Override
+			public void onFail(Throwable result) {
+				failed.set(result);
+			}
+		}).always(new AlwaysCallback<Void, Throwable>() {
+			@Override
+			public void onAlways(Promise.State state, Void resolved, Throwable rejected) {
+				always.set(state);
+			}
+		});
+
+		Assert.assertTrue(calls.isEmpty());
+		Assert.assertEquals("oops", failed.get().getMessage());
+		always.assertEquals(Promise.State.REJECTED);
+		try {
+			signal.resolve(null);
+			Assert.fail("resolved a rejected signal");
+		} catch (IllegalStateException e) {
+		}
+	}
+
+	@Test
+	public void testRunnablesFanIn() {
+		final ValueHolder<Integer> size = new ValueHolder<Integer>();
+		Runnable noop = new Runnable() {
+			@Override
+			public void run() {
+			}
+		};
+		Promise<Void, Throwable, Void> single = deferredManager.when(noop);
+		Assert.assertTrue(single instanceof CompletionSignal);
+
+		deferredManager.when(single, deferredManager.when(noop)).done(new DoneCallback<MultipleResults>() {
+			@Override
+			public void onDone(MultipleResults result) {
+				size.set(result.size());
+			}
+		}).fail(new FailCallback<OneReject>() {
+			@Override
+			public void onFail(OneReject result) {
+				Assert.fail("rejected");
+			}
+		});
+		waitForCompletion();
+		while (size.get() == null) {
+			Thread.yield();
+		}
+		size.assertEquals(2);
+	}
+}
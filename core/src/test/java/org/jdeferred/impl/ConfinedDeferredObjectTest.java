@@ -0,0 +1,114 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import org.jdeferred.Deferred;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.DoneFilter;
+import org.jdeferred.FailCallback;
+import org.jdeferred.ProgressCallback;
+import org.jdeferred.ProgressFilter;
+import org.jdeferred.Promise;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConfinedDeferredObjectTest extends AbstractDeferredTest {
+	@Test
+	public void testFilterChainStaysConfined() {
+		final ValueHolder<String> done = new ValueHolder<String>();
+		final ValueHolder<Integer> progress = new ValueHolder<Integer>();
+		Deferred<Integer, Void, Integer> deferred = DeferredFactory.confined(true).create();
+		Promise<String, Void, Integer> stage = deferred.promise().then(new DoneFilter<Integer, String>() {
+			@Override
+			public String filterDone(Integer result) {
+				return "result " + result;
+			}
+		}, null, new ProgressFilter<Integer, Integer>() {
+			@Override
+			public Integer filterProgress(Integer result) {
+				return result * 10;
+			}
+		});
+		stage.done(new DoneCallback<String>() {
+			@Override
+			public void onDone(String result) {
+				done.set(result);
+			}
+		}).progress(new ProgressCallback<Integer>() {
+			@Override
+			public void onProgress(Integer result) {
+				progress.set(result);
+			}
+		});
+
+		Assert.assertTrue(stage instanceof ConfinedDeferredObject);
+		deferred.notify(5);
+		progress.assertEquals(50);
+		deferred.resolve(42);
+		done.assertEquals("result 42");
+		Assert.assertTrue(stage.isResolved());
+	}
+
+	@Test
+	public void testRejectsOtherThreads() throws InterruptedException {
+		final Deferred<Integer, String, Void> deferred = DeferredFactory.confined(true).create();
+		final Promise<Integer, String, Void> stage = deferred.then(new DoneFilter<Integer, Integer>() {
+			@Override
+			public Integer filterDone(Integer result) {
+				return result;
+			}
+		});
+		final ValueHolder<Exception> caught = new ValueHolder<Exception>();
+		Thread other = new Thread() {
+			@Override
+			public void run() {
+				try {
+					stage.fail(new FailCallback<String>() {
+						@Override
+						public void onFail(String result) {
+						}
+					});
+				} catch (IllegalStateException e) {
+					caught.set(e);
+				}
+			}
+		};
+		other.start();
+		other.join();
+
+		Assert.assertNotNull(caught.get());
+		Assert.assertTrue(caught.get().getMessage().startsWith("Confined to thread " + Thread.currentThread().getName()));
+		Assert.assertTrue(stage.isPending());
+	}
+
+	@Test
+	public void testUncheckedAndShared() {
+		Assert.assertTrue(DeferredFactory.shared().create() instanceof DeferredObject);
+		final Deferred<Integer, Void, Void> deferred = DeferredFactory.confined(false).create();
+		Thread other = new Thread() {
+			@Override
+			public void run() {
+				deferred.resolve(1);
+			}
+		};
+		other.start();
+		try {
+			other.join();
+		} catch (InterruptedException e) {
+		}
+		Assert.assertTrue(deferred.isResolved());
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.DoneFilter;
+import org.jdeferred.Promise;
+import org.jdeferred.Promise.State;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ContextPropagatorTest extends AbstractDeferredTest {
+	private static final ThreadLocal<String> TRACE_ID = new ThreadLocal<String>();
+	private final AtomicInteger captures = new AtomicInteger();
+	
+	@Before
+	public void enable() {
+		ContextPropagator.set(new ContextPropagator() {
+			@Override
+			public Object capture() {
+				captures.incrementAndGet();
+				return TRACE_ID.get();
+			}
+			
+			@Override
+			public Object restore(Object snapshot) {
+				String previous = TRACE_ID.get();
+				TRACE_ID.set((String) snapshot);
+				return previous;
+			}
+		});
+	}
+	
+	@After
+	public void disable() {
+		ContextPropagator.set(null);
+		TRACE_ID.remove();
+	}
+	
+	@Test
+	public void testTaskAndCallbacks() {
+		final ValueHolder<String> task = new ValueHolder<String>();
+		final ValueHolder<String> callback = new ValueHolder<String>();
+		final ValueHolder<String> stage = new ValueHolder<String>();
+		final ValueHolder<String> after = new ValueHolder<String>();
+		
+		TRACE_ID.set("request-1");
+		final DeferredObject<String, Void, Void> deferred = new DeferredObject<String, Void, Void>();
+		deferred.then(new DoneFilter<String, String>() {
+			@Override
+			public String filterDone(String result) {
+				stage.set(TRACE_ID.get());
+				return result;
+			}
+		}).done(new DoneCallback<String>() {
+			@Override
+			public void onDone(String result) {
+				callback.set(TRACE_ID.get());
+			}
+		});
+		Promise<String, Throwable, Void> promise = deferredManager.when(new Callable<String>() {
+			@Override
+			public String call() {
+				task.set(TRACE_ID.get());
+				return "done";
+			}
+		});
+		TRACE_ID.remove();
+		// one per registration on a pending promise and one for the task
+		Assert.assertEquals(5, captures.get());
+		
+		// resolved from a thread without context
+		promise.done(new DoneCallback<String>() {
+			@Override
+			public void onDone(String result) {
+				deferred.resolve(result);
+				after.set(TRACE_ID.get());
+			}
+		});
+		waitForCompletion();
+		
+		Assert.assertEquals("request-1", task.get());
+		Assert.assertEquals("request-1", stage.get());
+		Assert.assertEquals("request-1", callback.get());
+		Assert.assertNull(after.get());
+	}
+	
+	@Test
+	public void testCallersSharingPendingPromise() {
+		final ValueHolder<String> first = new ValueHolder<String>();
+		final ValueHolder<String> second = new ValueHolder<String>();
+		final ValueHolder<String> always = new ValueHolder<String>();
+		final DeferredObject<String, Void, Void> deferred = new DeferredObject<String, Void, Void>();
+		
+		TRACE_ID.set("request-1");
+		deferred.done(new DoneCallback<String>() {
+			@Override
+			public void onDone(String result) {
+				first.set(TRACE_ID.get());
+			}
+		});
+		TRACE_ID.set("request-2");
+		deferred.done(new DoneCallback<String>() {
+			@Override
+			public void onDone(String result) {
+				second.set(TRACE_ID.get());
+			}
+		}).always(new AlwaysCallback<String, Void>() {
+			@Override
+			public void onAlways(State state, String resolved, Void rejected) {
+				always.set(TRACE_ID.get());
+			}
+		});
+		
+		// resolved from a thread without context
+		TRACE_ID.remove();
+		deferred.resolve("done");
+		
+		Assert.assertEquals("request-1", first.get());
+		Assert.assertEquals("request-2", second.get());
+		Assert.assertEquals("request-2", always.get());
+		Assert.assertNull(TRACE_ID.get());
+	}
+	
+	@Test
+	public void testCallersSharingPendingSignal() {
+		final ValueHolder<String> first = new ValueHolder<String>();
+		final ValueHolder<String> second = new ValueHolder<String>();
+		final CompletionSignal<Void, Void> signal = new CompletionSignal<Void, Void>();
+		
+		TRACE_ID.set("request-1");
+		signal.done(new DoneCallback<Void>() {
+			@Override
+			public void onDone(Void result) {
+				first.set(TRACE_ID.get());
+			}
+		});
+		TRACE_ID.set("request-2");
+		signal.done(new DoneCallback<Void>() {
+			@Override
+			public void onDone(Void result) {
+				second.set(TRACE_ID.get());
+			}
+		});
+		
+		TRACE_ID.remove();
+		signal.resolve(null);
+		
+		Assert.assertEquals("request-1", first.get());
+		Assert.assertEquals("request-2", second.get());
+		Assert.assertNull(TRACE_ID.get());
+	}
+}
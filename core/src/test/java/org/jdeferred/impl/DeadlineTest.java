@@ -0,0 +1,185 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.Deadline;
+import org.jdeferred.DeadlineExceededException;
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.DoneFilter;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DeadlineTest extends AbstractDeferredTest {
+	private final AtomicInteger calls = new AtomicInteger();
+	private final AtomicBoolean interrupted = new AtomicBoolean();
+	
+	@After
+	public void detach() {
+		Deadline.restore(null);
+	}
+	
+	private <D> Throwable await(Promise<D, Throwable, ?> promise) {
+		final CountDownLatch latch = new CountDownLatch(1);
+		final ValueHolder<Throwable> holder = new ValueHolder<Throwable>();
+		promise.always(new AlwaysCallback<D, Throwable>() {
+			@Override
+			public void onAlways(Promise.State state, D resolved, Throwable rejected) {
+				holder.set(rejected);
+				latch.countDown();
+			}
+		});
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			throw new IllegalStateException(e);
+		}
+		return holder.get();
+	}
+	
+	private Callable<Deadline> sleeping(final long millis) {
+		return new Callable<Deadline>() {
+			@Override
+			public Deadline call() {
+				calls.incrementAndGet();
+				try {
+					Thread.sleep(millis);
+				} catch (InterruptedException e) {
+					interrupted.set(true);
+				}
+				return Deadline.current();
+			}
+		};
+	}
+	
+	@Test
+	public void testExpiredTaskIsSkipped() throws Exception {
+		Deadline.after(0, TimeUnit.MILLISECONDS).attach();
+		Promise<Deadline, Throwable, Void> promise = deferredManager.when(sleeping(0));
+		Assert.assertSame(DeadlineExceededException.INSTANCE, await(promise));
+		Assert.assertEquals(0, calls.get());
+	}
+	
+	@Test
+	public void testRunningTaskIsRejected() {
+		Deadline.after(100, TimeUnit.MILLISECONDS).attach();
+		Promise<Deadline, Throwable, Void> promise = deferredManager.when(sleeping(5000));
+		Assert.assertSame(DeadlineExceededException.INSTANCE, await(promise));
+		
+		waitForCompletion();
+		Assert.assertTrue(interrupted.get());
+	}
+	
+	@Test
+	public void testCompletedTaskIsNotRetainedUntilDeadline() throws Exception {
+		Deadline deadline = Deadline.after(1, TimeUnit.HOURS);
+		deadline.attach();
+		DeferredFutureTask<Deadline, Void> task = new DeferredFutureTask<Deadline, Void>(sleeping(0));
+		Deadline.restore(null);
+		
+		WeakReference<DeferredFutureTask<Deadline, Void>> reference = new WeakReference<DeferredFutureTask<Deadline, Void>>(task);
+		Assert.assertNull(await(deferredManager.when(task)));
+		task = null;
+		for (int i = 0; i < 50 && reference.get() != null; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		Assert.assertNull(reference.get());
+	}
+	
+	@Test
+	public void testExpiredStageKeepsItsRejectionType() {
+		DeferredObject<Integer, String, Void> deferred = new DeferredObject<Integer, String, Void>();
+		Deadline.after(0, TimeUnit.MILLISECONDS).attach();
+		Promise<Integer, String, Void> stage = deferred.then(new DoneFilter<Integer, Integer>() {
+			@Override
+			public Integer filterDone(Integer result) {
+				return result * 2;
+			}
+		});
+		Deadline.restore(null);
+		
+		final ValueHolder<Integer> holder = new ValueHolder<Integer>();
+		stage.done(new DoneCallback<Integer>() {
+			@Override
+			public void onDone(Integer result) {
+				holder.set(result);
+			}
+		}).fail(new FailCallback<String>() {
+			@Override
+			public void onFail(String result) {
+				Assert.fail("stage rejected with " + result);
+			}
+		});
+		deferred.resolve(21);
+		holder.assertEquals(42);
+	}
+	
+	@Test
+	public void testNestedTasksAndStagesInherit() {
+		final Deadline deadline = Deadline.after(10, TimeUnit.SECONDS);
+		Deadline.restore(deadline.attach());
+		Assert.assertNull(Deadline.current());
+		
+		deadline.attach();
+		final ValueHolder<Deadline> nested = new ValueHolder<Deadline>();
+		final ValueHolder<Deadline> stage = new ValueHolder<Deadline>();
+		Promise<Deadline, Throwable, Void> promise = deferredManager.when(new Callable<Deadline>() {
+			@Override
+			public Deadline call() throws Exception {
+				Promise<Deadline, Throwable, Void> inner = deferredManager.when(sleeping(0));
+				while (inner.isPending()) {
+					Thread.sleep(10);
+				}
+				inner.then(new DoneFilter<Deadline, Deadline>() {
+					@Override
+					public Deadline filterDone(Deadline result) {
+						nested.set(result);
+						return result;
+					}
+				});
+				return Deadline.current();
+			}
+		}).then(new DoneFilter<Deadline, Deadline>() {
+			@Override
+			public Deadline filterDone(Deadline result) {
+				stage.set(Deadline.current());
+				return result;
+			}
+		});
+		Deadline.restore(null);
+		
+		Assert.assertNull(await(promise));
+		Assert.assertSame(deadline, nested.get());
+		Assert.assertSame(deadline, stage.get());
+		
+		// a later deadline does not extend the attached one
+		deadline.attach();
+		Deadline.after(20, TimeUnit.SECONDS).attach();
+		Assert.assertSame(deadline, Deadline.current());
+	}
+}
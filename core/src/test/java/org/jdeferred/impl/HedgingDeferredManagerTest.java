@@ -0,0 +1,207 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.Deadline;
+import org.jdeferred.Promise;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HedgingDeferredManagerTest extends AbstractDeferredTest {
+	private final AtomicInteger calls = new AtomicInteger();
+	private final AtomicInteger interrupted = new AtomicInteger();
+	private HedgingDeferredManager hedging;
+	
+	@Before
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		hedging = new HedgingDeferredManager(deferredManager);
+		hedging.setHedgeDelay(50, TimeUnit.MILLISECONDS);
+	}
+	
+	private <D> D await(Promise<D, Throwable, Void> promise) {
+		final CountDownLatch latch = new CountDownLatch(1);
+		final ValueHolder<D> holder = new ValueHolder<D>();
+		promise.always(new AlwaysCallback<D, Throwable>() {
+			@Override
+			public void onAlways(Promise.State state, D resolved, Throwable rejected) {
+				holder.set(resolved);
+				latch.countDown();
+			}
+		});
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			throw new IllegalStateException(e);
+		}
+		return holder.get();
+	}
+	
+	/**
+	 * The first call of every pair is slow, the backup is fast.
+	 */
+	private Callable<Integer> slowThenFast(final long slowMillis) {
+		final AtomicInteger copies = new AtomicInteger();
+		return new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				calls.incrementAndGet();
+				int copy = copies.incrementAndGet();
+				if (copy == 1) {
+					try {
+						Thread.sleep(slowMillis);
+					} catch (InterruptedException e) {
+						interrupted.incrementAndGet();
+					}
+				}
+				return copy;
+			}
+		};
+	}
+	
+	@Test
+	public void testBackupWinsAndPrimaryIsCancelled() {
+		Promise<Integer, Throwable, Void> promise = hedging.when(slowThenFast(5000));
+		Assert.assertEquals((Integer) 2, await(promise));
+		Assert.assertEquals(2, calls.get());
+		
+		waitForCompletion();
+		Assert.assertEquals(1, interrupted.get());
+	}
+	
+	@Test
+	public void testBackupInheritsDeadline() {
+		final Deadline deadline = Deadline.after(5, TimeUnit.SECONDS);
+		final AtomicReferenceArray<Deadline> seen = new AtomicReferenceArray<Deadline>(2);
+		final AtomicInteger copies = new AtomicInteger();
+		Deadline previous = deadline.attach();
+		Promise<Integer, Throwable, Void> promise;
+		try {
+			promise = hedging.when(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					int copy = copies.getAndIncrement();
+					seen.set(copy, Deadline.current());
+					if (copy == 0) {
+						try {
+							Thread.sleep(5000);
+						} catch (InterruptedException e) {
+						}
+					}
+					return copy;
+				}
+			});
+		} finally {
+			Deadline.restore(previous);
+		}
+		Assert.assertEquals((Integer) 1, await(promise));
+		Assert.assertSame(deadline, seen.get(0));
+		Assert.assertSame(deadline, seen.get(1));
+	}
+	
+	@Test
+	public void testFastCallIsNotHedged() throws Exception {
+		hedging.setHedgeDelay(1, TimeUnit.SECONDS);
+		Assert.assertEquals((Integer) 1, await(hedging.when(slowThenFast(0))));
+		Thread.sleep(100);
+		Assert.assertEquals(1, calls.get());
+	}
+	
+	@Test
+	public void testBudgetCapsHedges() {
+		hedging.setHedgeBudget(0, 1);
+		for (int i = 0; i < 3; i++) {
+			await(hedging.when(slowThenFast(200)));
+		}
+		Assert.assertEquals(4, calls.get());
+	}
+	
+	@Test
+	public void testBudgetRefundedWhenBackupNotSubmitted() {
+		final AtomicInteger submitted = new AtomicInteger();
+		DefaultDeferredManager saturated = new DefaultDeferredManager() {
+			@Override
+			protected void submit(Runnable runnable) {
+				if (submitted.incrementAndGet() == 2)
+					throw new RejectedExecutionException("saturated");
+				super.submit(runnable);
+			}
+		};
+		hedging = new HedgingDeferredManager(saturated);
+		hedging.setHedgeDelay(50, TimeUnit.MILLISECONDS);
+		hedging.setHedgeBudget(0, 1);
+		
+		Assert.assertEquals((Integer) 1, await(hedging.when(slowThenFast(200))));
+		Assert.assertEquals((Integer) 2, await(hedging.when(slowThenFast(5000))));
+		Assert.assertEquals(3, calls.get());
+		saturated.shutdown();
+	}
+	
+	@Test
+	public void testNotHedgedOnceShutDown() {
+		hedging.shutdown();
+		Assert.assertEquals((Integer) 1, await(hedging.when(slowThenFast(200))));
+		Assert.assertEquals(1, calls.get());
+	}
+	
+	@Test
+	public void testRejectedOnlyWhenAllCopiesFail() {
+		final AtomicInteger copies = new AtomicInteger();
+		Promise<Integer, Throwable, Void> promise = hedging.when(new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				if (copies.incrementAndGet() == 1) {
+					Thread.sleep(200);
+					throw new IllegalStateException("primary");
+				}
+				Thread.sleep(400);
+				throw new IllegalStateException("backup");
+			}
+		});
+		await(promise);
+		Assert.assertTrue(promise.isRejected());
+		Assert.assertEquals(2, copies.get());
+	}
+	
+	@Test
+	public void testObservedPercentile() {
+		hedging.removeHedgeDelay();
+		hedging.setMinimumNumberOfCalls(3);
+		Assert.assertEquals(-1, hedging.getHedgeDelayNanos());
+		for (int i = 0; i < 3; i++) {
+			await(hedging.when(slowThenFast(0)));
+		}
+		Assert.assertTrue(hedging.getHedgeDelayNanos() >= 0);
+		
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i, TimeUnit.MILLISECONDS);
+		}
+		long p95 = histogram.getValueAtPercentile(0.95);
+		Assert.assertTrue(p95 >= TimeUnit.MILLISECONDS.toNanos(950));
+		Assert.assertTrue(p95 <= TimeUnit.MILLISECONDS.toNanos(1010));
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.Callable;
+
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InstrumentationTest extends AbstractDeferredTest {
+	private final MetricsInstrumentation metrics = new MetricsInstrumentation();
+	
+	@After
+	public void disable() {
+		Instrumentation.set(null);
+	}
+	
+	@Test
+	public void testDisabledByDefault() {
+		Assert.assertNotNull(Instrumentation.get());
+		Assert.assertFalse(Instrumentation.get() instanceof MetricsInstrumentation);
+	}
+	
+	@Test
+	public void testMetrics() {
+		Instrumentation.set(metrics);
+		
+		Promise<Integer, Throwable, Void> resolved = deferredManager.when(new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				Thread.sleep(20);
+				return 1;
+			}
+		});
+		resolved.done(new DoneCallback<Integer>() {
+			@Override
+			public void onDone(Integer result) {
+			}
+		});
+		
+		Promise<Integer, Throwable, Void> rejected = deferredManager.when(new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				Thread.sleep(20);
+				throw new IllegalStateException("oops");
+			}
+		});
+		rejected.fail(new FailCallback<Throwable>() {
+			@Override
+			public void onFail(Throwable result) {
+			}
+		});
+		waitForCompletion();
+		
+		Assert.assertEquals(2, metrics.getPromisesCreated());
+		Assert.assertEquals(1, metrics.getPromisesResolved());
+		Assert.assertEquals(1, metrics.getPromisesRejected());
+		Assert.assertEquals(0, metrics.getPromisesPending());
+		Assert.assertEquals(2, metrics.getCallbacks());
+		Assert.assertEquals(2, metrics.getTasksSubmitted());
+		Assert.assertEquals(2, metrics.getTasksFinished());
+		Assert.assertEquals(2, metrics.getQueueWait().getCount());
+		Assert.assertTrue(metrics.getExecutionTime().getValueAtPercentile(0.5) >= 20000000L);
+		Assert.assertEquals(2, metrics.getCallbackTime().getCount());
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.jdeferred.DoneCallback;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LeakDetectorTest extends AbstractDeferredTest {
+	private final List<String> reports = new CopyOnWriteArrayList<String>();
+	private LeakDetector detector;
+	
+	@Before
+	public void enable() {
+		detector = new LeakDetector() {
+			@Override
+			protected void report(String message, Throwable creation) {
+				boolean createdHere = false;
+				for (StackTraceElement element : creation.getStackTrace()) {
+					createdHere |= element.getClassName().equals(LeakDetectorTest.class.getName());
+				}
+				reports.add(createdHere ? message : "unknown creation");
+			}
+		};
+		detector.setSamplingRate(1);
+		detector.setMaxAge(50, TimeUnit.MILLISECONDS);
+		LeakDetector.set(detector);
+	}
+	
+	@After
+	public void disable() {
+		LeakDetector.set(null);
+	}
+	
+	private DeferredObject<Integer, Void, Void> withCallback() {
+		DeferredObject<Integer, Void, Void> deferred = new DeferredObject<Integer, Void, Void>();
+		deferred.done(new DoneCallback<Integer>() {
+			@Override
+			public void onDone(Integer result) {
+			}
+		});
+		return deferred;
+	}
+	
+	@Test
+	public void testOldPendingPromiseIsReported() throws Exception {
+		DeferredObject<Integer, Void, Void> leaked = withCallback();
+		withCallback().resolve(1);
+		new DeferredObject<Integer, Void, Void>();
+		Assert.assertEquals(2, detector.getTrackedCount());
+		
+		Thread.sleep(100);
+		detector.check();
+		detector.check();
+		Assert.assertEquals(1, reports.size());
+		Assert.assertTrue(reports.get(0).startsWith(DeferredObject.class.getName() + " is pending"));
+		Assert.assertTrue(leaked.isPending());
+	}
+	
+	@Test
+	public void testCompletionSignalIsTracked() throws Exception {
+		DoneCallback<Void> callback = new DoneCallback<Void>() {
+			@Override
+			public void onDone(Void result) {
+			}
+		};
+		CompletionSignal<Void, Void> leaked = new CompletionSignal<Void, Void>();
+		leaked.done(callback);
+		CompletionSignal<Void, Void> signalled = new CompletionSignal<Void, Void>();
+		signalled.done(callback);
+		signalled.resolve(null);
+		Assert.assertEquals(1, detector.getTrackedCount());
+		
+		Thread.sleep(100);
+		detector.check();
+		Assert.assertEquals(1, reports.size());
+		Assert.assertTrue(reports.get(0).startsWith(CompletionSignal.class.getName() + " is pending"));
+		Assert.assertTrue(leaked.isPending());
+	}
+	
+	@Test
+	public void testCollectedPendingPromiseIsReported() throws Exception {
+		detector.setMaxAge(1, TimeUnit.HOURS);
+		withCallback();
+		for (int i = 0; i < 50 && reports.isEmpty(); i++) {
+			System.gc();
+			Thread.sleep(20);
+			detector.check();
+		}
+		Assert.assertEquals(1, reports.size());
+		Assert.assertTrue(reports.get(0).contains("garbage collected"));
+		Assert.assertEquals(0, detector.getTrackedCount());
+	}
+}
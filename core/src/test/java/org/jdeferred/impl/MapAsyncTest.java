@@ -0,0 +1,218 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdeferred.DoneCallback;
+import org.jdeferred.DoneFilter;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.multiple.OneReject;
+import org.jdeferred.multiple.OneResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MapAsyncTest extends AbstractDeferredTest {
+	private final AtomicInteger pulled = new AtomicInteger();
+	private final AtomicInteger running = new AtomicInteger();
+	private final AtomicInteger maxRunning = new AtomicInteger();
+	
+	private Iterable<Integer> range(final int size) {
+		return new Iterable<Integer>() {
+			@Override
+			public Iterator<Integer> iterator() {
+				return new Iterator<Integer>() {
+					@Override
+					public boolean hasNext() {
+						return pulled.get() < size;
+					}
+					
+					@Override
+					public Integer next() {
+						return pulled.getAndIncrement();
+					}
+					
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+	
+	private DoneFilter<Integer, Integer> square(final int failAt) {
+		return new DoneFilter<Integer, Integer>() {
+			@Override
+			public Integer filterDone(Integer item) {
+				int current = running.incrementAndGet();
+				while (true) {
+					int max = maxRunning.get();
+					if (current <= max || maxRunning.compareAndSet(max, current))
+						break;
+				}
+				try {
+					Thread.sleep(item % 3);
+				} catch (InterruptedException e) {
+				}
+				running.decrementAndGet();
+				if (item == failAt)
+					throw new IllegalStateException("oops");
+				return item * item;
+			}
+		};
+	}
+	
+	private void await(Promise<?, ?, ?> promise) {
+		while (promise.isPending()) {
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+			}
+		}
+	}
+	
+	@Test
+	public void testResultsInItemOrder() {
+		final ValueHolder<List<Integer>> holder = new ValueHolder<List<Integer>>();
+		
+		Promise<List<Integer>, OneReject, Void> p = deferredManager.mapAsync(range(500), square(-1), 4);
+		p.done(new DoneCallback<List<Integer>>() {
+			@Override
+			public void onDone(List<Integer> result) {
+				holder.set(result);
+			}
+		});
+		
+		await(p);
+		Assert.assertEquals(500, holder.get().size());
+		for (int i = 0; i < 500; i++) {
+			Assert.assertEquals((Integer) (i * i), holder.get().get(i));
+		}
+		Assert.assertTrue(maxRunning.get() <= 4);
+	}
+	
+	@Test
+	public void testPullsLazily() {
+		deferredManager.mapAsync(range(1000), new DoneFilter<Integer, Integer>() {
+			@Override
+			public Integer filterDone(Integer item) {
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+				}
+				return item;
+			}
+		}, 3, new DoneCallback<OneResult>() {
+			@Override
+			public void onDone(OneResult result) {
+			}
+		});
+		
+		Assert.assertEquals(3, pulled.get());
+	}
+	
+	@Test
+	public void testStopsOnFailure() {
+		final ValueHolder<OneReject> holder = new ValueHolder<OneReject>();
+		
+		Promise<List<Integer>, OneReject, Void> p = deferredManager.mapAsync(range(10000), square(10), 2);
+		p.fail(new FailCallback<OneReject>() {
+			@Override
+			public void onFail(OneReject result) {
+				holder.set(result);
+			}
+		});
+		
+		await(p);
+		Assert.assertEquals(10, holder.get().getIndex());
+		Assert.assertTrue(holder.get().getReject() instanceof IllegalStateException);
+		Assert.assertTrue(pulled.get() < 20);
+	}
+	
+	@Test
+	public void testEmpty() {
+		final ValueHolder<List<Integer>> holder = new ValueHolder<List<Integer>>();
+		
+		deferredManager.mapAsync(range(0), square(-1), 4).done(new DoneCallback<List<Integer>>() {
+			@Override
+			public void onDone(List<Integer> result) {
+				holder.set(result);
+			}
+		});
+		
+		Assert.assertTrue(holder.get().isEmpty());
+	}
+	
+	@Test
+	public void testSynchronousTasksDoNotRecurse() {
+		DefaultDeferredManager inline = new DefaultDeferredManager(new AbstractExecutorService() {
+			@Override
+			public void execute(Runnable command) {
+				command.run();
+			}
+			
+			@Override
+			public void shutdown() {
+			}
+			
+			@Override
+			public List<Runnable> shutdownNow() {
+				return Collections.emptyList();
+			}
+			
+			@Override
+			public boolean isShutdown() {
+				return false;
+			}
+			
+			@Override
+			public boolean isTerminated() {
+				return false;
+			}
+			
+			@Override
+			public boolean awaitTermination(long timeout, TimeUnit unit) {
+				return false;
+			}
+		});
+		final ValueHolder<Integer> holder = new ValueHolder<Integer>();
+		
+		inline.mapAsync(range(100000), new DoneFilter<Integer, Integer>() {
+			@Override
+			public Integer filterDone(Integer item) {
+				return item;
+			}
+		}, 2, new DoneCallback<OneResult>() {
+			@Override
+			public void onDone(OneResult result) {
+			}
+		}).done(new DoneCallback<Integer>() {
+			@Override
+			public void onDone(Integer result) {
+				holder.set(result);
+			}
+		});
+		
+		holder.assertEquals(100000);
+	}
+}
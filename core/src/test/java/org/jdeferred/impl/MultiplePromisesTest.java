@@ -15,12 +15,17 @@
  */
 package org.jdeferred.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jdeferred.AlwaysCallback;
+import org.jdeferred.Deferred;
 import org.jdeferred.DeferredCallable;
 import org.jdeferred.DeferredFutureTask;
 import org.jdeferred.DeferredRunnable;
@@ -33,10 +38,11 @@ import org.jdeferred.multiple.MasterProgress;
 import org.jdeferred.multiple.MultipleResults;
 import org.jdeferred.multiple.OneProgress;
 import org.jdeferred.multiple.OneReject;
+import org.jdeferred.multiple.OneResult;
 import org.junit.Assert;
 import org.junit.Test;
 
-@SuppressWarnings({"rawtypes"})
+@SuppressWarnings({"rawtypes", "unchecked"})
 public class MultiplePromisesTest extends AbstractDeferredTest {
 	@Test
 	public void testMultipleDoneWait() {
@@ -330,4 +336,159 @@ public class MultiplePromisesTest extends AbstractDeferredTest {
 		waitForCompletion();
 		Assert.assertEquals(1, doneCount.get());
 	}
+	
+	@Test(timeout = 30000)
+	public void testLargeFanIn() {
+		final int size = 50000;
+		Deferred[] deferreds = new Deferred[size];
+		Promise[] promises = new Promise[size];
+		for (int i = 0; i < size; i++) {
+			deferreds[i] = new DeferredObject();
+			promises[i] = deferreds[i].promise();
+		}
+		
+		final ValueHolder<MultipleResults> holder = new ValueHolder<MultipleResults>();
+		deferredManager.when(promises).done(new DoneCallback<MultipleResults>() {
+			@Override
+			public void onDone(MultipleResults result) {
+				holder.set(result);
+			}
+		});
+		
+		for (int i = size - 1; i >= 0; i--) {
+			deferreds[i].resolve(i);
+		}
+		
+		MultipleResults results = holder.get();
+		Assert.assertEquals(size, results.size());
+		int index = 0;
+		for (OneResult result : results) {
+			Assert.assertEquals(index, result.getIndex());
+			Assert.assertEquals(index, result.getResult());
+			index++;
+		}
+		Assert.assertEquals(size, index);
+	}
+	
+	@Test
+	public void testWithoutProgress() {
+		final Deferred d1 = new DeferredObject();
+		final Deferred d2 = new DeferredObject();
+		final AtomicInteger progressCount = new AtomicInteger();
+		final AtomicInteger doneCount = new AtomicInteger();
+		
+		deferredManager.whenWithoutProgress(d1.promise(), d2.promise())
+		.progress(new ProgressCallback<MasterProgress>() {
+			@Override
+			public void onProgress(MasterProgress progress) {
+				progressCount.incrementAndGet();
+			}
+		}).done(new DoneCallback<MultipleResults>() {
+			@Override
+			public void onDone(MultipleResults results) {
+				Assert.assertEquals(2, results.size());
+				doneCount.incrementAndGet();
+			}
+		});
+		
+		d1.notify(50);
+		d1.resolve(1);
+		d2.notify(50);
+		d2.resolve(2);
+		
+		Assert.assertEquals(0, progressCount.get());
+		Assert.assertEquals(1, doneCount.get());
+	}
+	
+	@Test(timeout = 30000)
+	public void testLargeFanInFromCollection() {
+		final int size = 100000;
+		List<Deferred> deferreds = new ArrayList<Deferred>(size);
+		List<Promise> promises = new ArrayList<Promise>(size);
+		for (int i = 0; i < size; i++) {
+			Deferred deferred = new DeferredObject();
+			deferreds.add(deferred);
+			promises.add(deferred.promise());
+		}
+		
+		final ValueHolder<MultipleResults> holder = new ValueHolder<MultipleResults>();
+		deferredManager.whenWithoutProgress(promises).done(new DoneCallback<MultipleResults>() {
+			@Override
+			public void onDone(MultipleResults result) {
+				holder.set(result);
+			}
+		});
+		
+		for (int i = 0; i < size; i++) {
+			deferreds.get(i).resolve(i);
+		}
+		
+		MultipleResults results = holder.get();
+		Assert.assertEquals(size, results.size());
+		Assert.assertEquals(size - 1, results.get(size - 1).getResult());
+	}
+	
+	@Test
+	public void testIterable() {
+		final Deferred d1 = new DeferredObject();
+		final Deferred d2 = new DeferredObject();
+		final ValueHolder<OneReject> holder = new ValueHolder<OneReject>();
+		Iterable<Promise> promises = new Iterable<Promise>() {
+			@Override
+			public Iterator<Promise> iterator() {
+				return Arrays.asList(d1.promise(), d2.promise()).iterator();
+			}
+		};
+		
+		deferredManager.when(promises).fail(new FailCallback<OneReject>() {
+			@Override
+			public void onFail(OneReject result) {
+				holder.set(result);
+			}
+		});
+		
+		d1.resolve(1);
+		d2.reject("oops");
+		Assert.assertEquals(1, holder.get().getIndex());
+		Assert.assertEquals("oops", holder.get().getReject());
+	}
+	
+	@Test(timeout = 30000)
+	public void testLargeFanInConcurrently() throws InterruptedException {
+		final int size = 100000;
+		final int threads = 8;
+		final Deferred[] deferreds = new Deferred[size];
+		Promise[] promises = new Promise[size];
+		for (int i = 0; i < size; i++) {
+			deferreds[i] = new DeferredObject();
+			promises[i] = deferreds[i].promise();
+		}
+		
+		final AtomicInteger doneCount = new AtomicInteger();
+		deferredManager.whenWithoutProgress(promises).done(new DoneCallback<MultipleResults>() {
+			@Override
+			public void onDone(MultipleResults result) {
+				doneCount.incrementAndGet();
+			}
+		});
+		
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int offset = t;
+			workers[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = offset; i < size; i += threads) {
+						deferreds[i].resolve(i);
+					}
+				}
+			};
+			workers[t].start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		
+		Assert.assertEquals(1, doneCount.get());
+	}
 }
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.ExceptionHandler.Location;
+import org.jdeferred.primitive.DoubleDeferredObject;
+import org.jdeferred.primitive.DoubleDoneCallback;
+import org.jdeferred.primitive.IntDeferredObject;
+import org.jdeferred.primitive.IntDoneCallback;
+import org.jdeferred.primitive.IntDoneFilter;
+import org.jdeferred.primitive.LongDeferred;
+import org.jdeferred.primitive.LongDeferredObject;
+import org.jdeferred.primitive.LongDoneCallback;
+import org.jdeferred.primitive.LongDoneFilter;
+import org.jdeferred.primitive.LongPromise;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PrimitiveDeferredObjectTest extends AbstractDeferredTest {
+	private static final LongDoneFilter INCREMENT = new LongDoneFilter() {
+		@Override
+		public long filterDone(long result) {
+			return result + 1;
+		}
+	};
+
+	@Test
+	public void testFilterChain() {
+		final AtomicLong before = new AtomicLong();
+		final AtomicLong after = new AtomicLong();
+		LongDeferred<Void> deferred = new LongDeferredObject<Void>();
+		LongPromise<Void> last = deferred.promise().then(INCREMENT).then(INCREMENT);
+		last.done(new LongDoneCallback() {
+			@Override
+			public void onDone(long result) {
+				before.set(result);
+			}
+		});
+
+		deferred.resolve(40);
+		last.done(new LongDoneCallback() {
+			@Override
+			public void onDone(long result) {
+				after.set(result);
+			}
+		});
+
+		Assert.assertEquals(42, before.get());
+		Assert.assertEquals(42, after.get());
+		Assert.assertTrue(last.isResolved());
+	}
+
+	@Test
+	public void testRejectPropagates() {
+		final ValueHolder<String> holder = new ValueHolder<String>();
+		IntDeferredObject<String> deferred = new IntDeferredObject<String>();
+		deferred.then(new IntDoneFilter() {
+			@Override
+			public int filterDone(int result) {
+				Assert.fail("filter applied to a rejected promise");
+				return result;
+			}
+		}).fail(new FailCallback<String>() {
+			@Override
+			public void onFail(String result) {
+				holder.set(result);
+			}
+		});
+
+		deferred.reject("oops");
+		holder.assertEquals("oops");
+		try {
+			deferred.resolve(1);
+			Assert.fail("resolved a rejected deferred");
+		} catch (IllegalStateException e) {
+		}
+	}
+
+	@Test
+	public void testBridges() {
+		final ValueHolder<Long> boxed = new ValueHolder<Long>();
+		LongDeferredObject<Void> deferred = new LongDeferredObject<Void>();
+		deferred.then(INCREMENT).boxed().done(new DoneCallback<Long>() {
+			@Override
+			public void onDone(Long result) {
+				boxed.set(result);
+			}
+		});
+		deferred.resolve(1);
+		boxed.assertEquals(2L);
+
+		final ValueHolder<Double> unboxed = new ValueHolder<Double>();
+		DeferredObject<Double, Void, Void> generic = new DeferredObject<Double, Void, Void>();
+		Promise<Double, Void, Void> promise = generic.promise();
+		DoubleDeferredObject.unbox(promise).done(new DoubleDoneCallback() {
+			@Override
+			public void onDone(double result) {
+				unboxed.set(result);
+			}
+		});
+		generic.resolve(0.5);
+		unboxed.assertEquals(0.5);
+	}
+
+	@Test
+	public void testCallbackExceptionsReachHandler() {
+		final ValueHolder<Location> done = new ValueHolder<Location>();
+		final ValueHolder<Location> failed = new ValueHolder<Location>();
+		final IntDoneCallback throwing = new IntDoneCallback() {
+			@Override
+			public void onDone(int result) {
+				throw new IllegalStateException("done");
+			}
+		};
+		DeferredObject.setExceptionHandler(new ExceptionHandler() {
+			@Override
+			public void onException(Location location, Exception exception, Object handler) {
+				if (handler == throwing)
+					done.set(location);
+				else
+					failed.set(location);
+			}
+		});
+		try {
+			IntDeferredObject<String> resolved = new IntDeferredObject<String>();
+			resolved.done(throwing);
+			resolved.resolve(1);
+
+			IntDeferredObject<String> rejected = new IntDeferredObject<String>();
+			rejected.fail(new FailCallback<String>() {
+				@Override
+				public void onFail(String result) {
+					throw new IllegalStateException(result);
+				}
+			});
+			rejected.reject("fail");
+		} finally {
+			DeferredObject.setExceptionHandler(null);
+		}
+		done.assertEquals(Location.doneCallback);
+		failed.assertEquals(Location.failCallback);
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jdeferred.DoneCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.cache.CacheLoader;
+import org.jdeferred.cache.PromiseCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PromiseCacheTest extends AbstractDeferredTest {
+	private final AtomicInteger loads = new AtomicInteger();
+	private final AtomicLong time = new AtomicLong();
+
+	private PromiseCache<String, Integer> createCache(final boolean failing) {
+		return new PromiseCache<String, Integer>(deferredManager, new CacheLoader<String, Integer>() {
+			@Override
+			public Integer load(String key) throws Exception {
+				int count = loads.incrementAndGet();
+				Thread.sleep(50);
+				if (failing)
+					throw new RuntimeException("oops");
+				return count;
+			}
+		}) {
+			@Override
+			protected long ticker() {
+				return time.get();
+			}
+		};
+	}
+
+	private <D> D await(Promise<D, Throwable, Void> promise) {
+		while (promise.isPending()) {
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+			}
+		}
+		Assert.assertTrue(promise.isResolved());
+		final ValueHolder<D> holder = new ValueHolder<D>();
+		promise.done(new DoneCallback<D>() {
+			@Override
+			public void onDone(D result) {
+				holder.set(result);
+			}
+		});
+		return holder.get();
+	}
+
+	@Test
+	public void testConcurrentGetsShareLoad() {
+		PromiseCache<String, Integer> cache = createCache(false);
+		Promise<Integer, Throwable, Void> p1 = cache.get("a");
+		Promise<Integer, Throwable, Void> p2 = cache.get("a");
+
+		Assert.assertSame(p1, p2);
+		Assert.assertEquals((Integer) 1, await(p1));
+		Assert.assertEquals((Integer) 1, await(cache.get("a")));
+		Assert.assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void testFailureNotCached() {
+		PromiseCache<String, Integer> cache = createCache(true);
+		Promise<Integer, Throwable, Void> p1 = cache.get("a");
+		while (p1.isPending()) {
+			Thread.yield();
+		}
+		Assert.assertTrue(p1.isRejected());
+
+		// served as absent even if the failure has not been evicted yet
+		Promise<Integer, Throwable, Void> p2 = cache.get("a");
+		Assert.assertNotSame(p1, p2);
+		while (p2.isPending()) {
+			Thread.yield();
+		}
+		Assert.assertEquals(2, loads.get());
+		Assert.assertNull(cache.getIfPresent("a"));
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testExpireAfterWrite() {
+		PromiseCache<String, Integer> cache = createCache(false);
+		cache.setExpireAfterWrite(10, TimeUnit.SECONDS);
+
+		Assert.assertEquals((Integer) 1, await(cache.get("a")));
+		time.addAndGet(TimeUnit.SECONDS.toNanos(5));
+		Assert.assertEquals((Integer) 1, await(cache.get("a")));
+		time.addAndGet(TimeUnit.SECONDS.toNanos(5));
+		Assert.assertEquals((Integer) 2, await(cache.get("a")));
+	}
+
+	@Test
+	public void testExpireAfterAccess() {
+		PromiseCache<String, Integer> cache = createCache(false);
+		cache.setExpireAfterAccess(10, TimeUnit.SECONDS);
+
+		Assert.assertEquals((Integer) 1, await(cache.get("a")));
+		time.addAndGet(TimeUnit.SECONDS.toNanos(9));
+		Assert.assertEquals((Integer) 1, await(cache.get("a")));
+		time.addAndGet(TimeUnit.SECONDS.toNanos(9));
+		Assert.assertEquals((Integer) 1, await(cache.get("a")));
+		time.addAndGet(TimeUnit.SECONDS.toNanos(10));
+		Assert.assertNull(cache.getIfPresent("a"));
+	}
+
+	@Test
+	public void testRefreshAhead() {
+		PromiseCache<String, Integer> cache = createCache(false);
+		cache.setRefreshAfterWrite(1, TimeUnit.SECONDS);
+
+		Assert.assertEquals((Integer) 1, await(cache.get("a")));
+		time.addAndGet(TimeUnit.SECONDS.toNanos(2));
+
+		// old value is served while reloading in the background
+		Assert.assertEquals((Integer) 1, await(cache.get("a")));
+		while (loads.get() < 2 || cache.getIfPresent("a").isPending()
+				|| await(cache.getIfPresent("a")) != 2) {
+			Thread.yield();
+		}
+		Assert.assertEquals((Integer) 2, await(cache.get("a")));
+		Assert.assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void testMaximumSizeKeepsFrequentEntries() {
+		PromiseCache<String, Integer> cache = createCache(false);
+		cache.setMaximumSize(2);
+
+		for (int i = 0; i < 5; i++) {
+			await(cache.get("hot"));
+		}
+		await(cache.get("warm"));
+		await(cache.get("cold"));
+		Assert.assertEquals(2, cache.size());
+		Assert.assertNotNull(cache.getIfPresent("hot"));
+
+		for (int i = 0; i < 3; i++) {
+			await(cache.get("warm"));
+		}
+		Assert.assertNotNull(cache.getIfPresent("hot"));
+		Assert.assertNotNull(cache.getIfPresent("warm"));
+		Assert.assertEquals(2, cache.size());
+	}
+}
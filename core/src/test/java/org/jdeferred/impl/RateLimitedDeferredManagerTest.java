@@ -0,0 +1,121 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.jdeferred.Promise;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RateLimitedDeferredManagerTest extends AbstractDeferredTest {
+	private final List<Long> startTimes = Collections.synchronizedList(new ArrayList<Long>());
+	
+	private Callable<Integer> recording(final int value) {
+		return new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				startTimes.add(System.nanoTime());
+				return value;
+			}
+		};
+	}
+	
+	private void await(Promise<?, ?, ?> promise) {
+		while (promise.isPending()) {
+			try {
+				Thread.sleep(5);
+			} catch (InterruptedException e) {
+			}
+		}
+	}
+	
+	@Test
+	public void testLimitsRatePerKey() {
+		RateLimitedDeferredManager dm = new RateLimitedDeferredManager(deferredManager);
+		dm.setRateLimit("slow", 20, 2);
+		
+		long start = System.nanoTime();
+		Promise<Integer, Throwable, Void> last = null;
+		for (int i = 0; i < 6; i++) {
+			last = dm.when("slow", recording(i));
+		}
+		// queued tasks do not hold the caller or a pool thread
+		Assert.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100));
+		
+		await(last);
+		// two tasks right away, then one every 50ms
+		long elapsed = System.nanoTime() - start;
+		Assert.assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(190));
+		Assert.assertEquals(6, startTimes.size());
+	}
+	
+	@Test
+	public void testUnlimitedKeysAreNotQueued() {
+		RateLimitedDeferredManager dm = new RateLimitedDeferredManager(deferredManager);
+		dm.setRateLimit("slow", 1, 1);
+		
+		dm.when("slow", recording(1));
+		Promise<Integer, Throwable, Void> queued = dm.when("slow", recording(2));
+		Promise<Integer, Throwable, Void> other = dm.when("other", recording(3));
+		
+		await(other);
+		Assert.assertTrue(queued.isPending());
+		await(queued);
+	}
+	
+	@Test
+	public void testDefaultLimit() {
+		RateLimitedDeferredManager dm = new RateLimitedDeferredManager(deferredManager);
+		dm.setDefaultRateLimit(1, 1);
+		
+		dm.when(recording(1));
+		Promise<Integer, Throwable, Void> queued = dm.when(recording(2));
+		try {
+			Thread.sleep(100);
+		} catch (InterruptedException e) {
+		}
+		Assert.assertTrue(queued.isPending());
+		await(queued);
+	}
+	
+	@Test
+	public void testShutdownCancelsQueuedTasks() {
+		RateLimitedDeferredManager dm = new RateLimitedDeferredManager(deferredManager);
+		dm.setRateLimit("slow", 10, 1);
+		
+		dm.when("slow", recording(1));
+		Promise<Integer, Throwable, Void> released = dm.when("slow", recording(2));
+		Promise<Integer, Throwable, Void> queued = dm.when("slow", recording(3));
+		dm.shutdown();
+		try {
+			dm.when("slow", recording(4));
+			Assert.fail("should be rejected once shut down");
+		} catch (RejectedExecutionException e) {
+		}
+		
+		await(released);
+		await(queued);
+		Assert.assertTrue(released.isResolved());
+		Assert.assertTrue(queued.isRejected());
+		Assert.assertEquals(2, startTimes.size());
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.jdeferred.DoneCallback;
+import org.jdeferred.Promise;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SlowCallbackWatchdogTest extends AbstractDeferredTest {
+	private final List<String> reports = new CopyOnWriteArrayList<String>();
+	private final List<StackTraceElement[]> stackTraces = new CopyOnWriteArrayList<StackTraceElement[]>();
+	private SlowCallbackWatchdog watchdog;
+	
+	@After
+	public void disable() {
+		Instrumentation.set(null);
+		watchdog.shutdown();
+	}
+	
+	private void enable(Instrumentation delegate, boolean sampleStackTraces) {
+		watchdog = new SlowCallbackWatchdog(delegate, 20, TimeUnit.MILLISECONDS, sampleStackTraces) {
+			@Override
+			protected void report(Promise<?, ?, ?> promise, Object callback, long durationNanos, StackTraceElement[] stackTrace) {
+				reports.add(callback.getClass().getName());
+				stackTraces.add(stackTrace);
+			}
+		};
+		Instrumentation.set(watchdog);
+	}
+	
+	private static class SlowCallback implements DoneCallback<Integer> {
+		@Override
+		public void onDone(Integer result) {
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+			}
+		}
+	}
+	
+	private void resolveWithCallbacks() {
+		DeferredObject<Integer, Void, Void> deferred = new DeferredObject<Integer, Void, Void>();
+		deferred.done(new DoneCallback<Integer>() {
+			@Override
+			public void onDone(Integer result) {
+			}
+		}).done(new SlowCallback());
+		deferred.resolve(1);
+	}
+	
+	private static boolean contains(StackTraceElement[] stackTrace, String methodName) {
+		for (StackTraceElement element : stackTrace) {
+			if (element.getMethodName().equals(methodName))
+				return true;
+		}
+		return false;
+	}
+	
+	@Test
+	public void testSlowCallbackIsReported() {
+		MetricsInstrumentation metrics = new MetricsInstrumentation();
+		enable(metrics, false);
+		resolveWithCallbacks();
+		
+		Assert.assertEquals(1, reports.size());
+		Assert.assertEquals(SlowCallback.class.getName(), reports.get(0));
+		Assert.assertTrue(contains(stackTraces.get(0), "resolveWithCallbacks"));
+		Assert.assertEquals(2, metrics.getCallbacks());
+	}
+	
+	@Test
+	public void testStackTraceIsSampledWhileRunning() {
+		enable(null, true);
+		resolveWithCallbacks();
+		
+		Assert.assertEquals(1, reports.size());
+		Assert.assertTrue(contains(stackTraces.get(0), "sleep"));
+	}
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred;
+
+/**
+ * GWT replacement of {@link Deadline}: there are no tasks to expire in the browser, so
+ * no deadline is ever attached and stages run their filters as is.
+ *
+ * @author Ray Tsang
+ */
+public final class Deadline {
+	private Deadline() {
+	}
+
+	public static Deadline current() {
+		return null;
+	}
+
+	public Deadline attach() {
+		return null;
+	}
+
+	public static void restore(Deadline previous) {
+	}
+}
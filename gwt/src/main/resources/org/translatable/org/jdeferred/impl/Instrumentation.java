@@ -0,0 +1,52 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+import org.jdeferred.Promise;
+
+/**
+ * GWT replacement of {@link Instrumentation}, without the task hooks since there are no
+ * tasks in the browser.
+ *
+ * @author Ray Tsang
+ */
+public abstract class Instrumentation {
+	private static final Instrumentation NOOP = new Instrumentation() {
+	};
+
+	private static Instrumentation current = NOOP;
+
+	public static Instrumentation get() {
+		return current;
+	}
+
+	public static void set(Instrumentation instrumentation) {
+		current = instrumentation == null ? NOOP : instrumentation;
+	}
+
+	public void promiseCreated(Promise<?, ?, ?> promise) {
+	}
+
+	public void promiseSettled(Promise<?, ?, ?> promise, Promise.State state) {
+	}
+
+	public long callbackStarted(Promise<?, ?, ?> promise, Object callback) {
+		return 0;
+	}
+
+	public void callbackFinished(Promise<?, ?, ?> promise, Object callback, long started) {
+	}
+}
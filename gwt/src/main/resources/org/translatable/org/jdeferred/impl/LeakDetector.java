@@ -0,0 +1,39 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.impl;
+
+/**
+ * GWT replacement of {@link LeakDetector}: there are no phantom references in the
+ * browser, so no promise is ever tracked.
+ *
+ * @author Ray Tsang
+ */
+public class LeakDetector {
+	static Tracker track(Object promise) {
+		return null;
+	}
+
+	static final class Tracker {
+		private Tracker() {
+		}
+
+		void callbackAdded() {
+		}
+
+		void settled() {
+		}
+	}
+}
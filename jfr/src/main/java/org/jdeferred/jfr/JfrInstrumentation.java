@@ -0,0 +1,128 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.jfr;
+
+import java.util.concurrent.TimeUnit;
+
+import jdk.jfr.EventType;
+
+import org.jdeferred.DeferredFutureTask;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.Instrumentation;
+
+/**
+ * Emits JDK Flight Recorder events for tasks, promises and slow callbacks.
+ *
+ * <pre>
+ * <code>
+ * {@link Instrumentation}.set(new {@link JfrInstrumentation}(10, TimeUnit.MILLISECONDS));
+ * </code>
+ * </pre>
+ *
+ * <ul>
+ * <li>{@link TaskSubmittedEvent}, disabled by default</li>
+ * <li>{@link TaskExecutionEvent}</li>
+ * <li>{@link PromiseSettledEvent}, disabled by default</li>
+ * <li>{@link SlowCallbackEvent}, for callbacks running at least the threshold</li>
+ * </ul>
+ *
+ * The events carry their durations as fields, since they start in one hook and end in
+ * another. While an event is not enabled in the running recording, its hooks only check a
+ * flag and do not even read the clock.
+ *
+ * @author Ray Tsang
+ */
+public class JfrInstrumentation extends Instrumentation {
+	private static final EventType TASK_SUBMITTED = EventType.getEventType(TaskSubmittedEvent.class);
+	private static final EventType TASK_EXECUTION = EventType.getEventType(TaskExecutionEvent.class);
+	private static final EventType PROMISE_SETTLED = EventType.getEventType(PromiseSettledEvent.class);
+	private static final EventType SLOW_CALLBACK = EventType.getEventType(SlowCallbackEvent.class);
+
+	private final long callbackThresholdNanos;
+
+	/**
+	 * Reports callbacks running at least 10 milliseconds.
+	 */
+	public JfrInstrumentation() {
+		this(10, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param callbackThreshold callbacks running at least this long are reported
+	 * @param unit
+	 */
+	public JfrInstrumentation(long callbackThreshold, TimeUnit unit) {
+		if (callbackThreshold < 0)
+			throw new IllegalArgumentException("Threshold must not be negative");
+		this.callbackThresholdNanos = unit.toNanos(callbackThreshold);
+	}
+
+	@Override
+	public void promiseSettled(Promise<?, ?, ?> promise, Promise.State state) {
+		if (!PROMISE_SETTLED.isEnabled())
+			return;
+		PromiseSettledEvent event = new PromiseSettledEvent();
+		event.promiseClass = promise.getClass();
+		event.state = state.name();
+		event.commit();
+	}
+
+	@Override
+	public long callbackStarted(Promise<?, ?, ?> promise, Object callback) {
+		return SLOW_CALLBACK.isEnabled() ? System.nanoTime() : 0;
+	}
+
+	@Override
+	public void callbackFinished(Promise<?, ?, ?> promise, Object callback, long started) {
+		if (started == 0)
+			return;
+		long callbackTime = System.nanoTime() - started;
+		if (callbackTime < callbackThresholdNanos)
+			return;
+		SlowCallbackEvent event = new SlowCallbackEvent();
+		event.callbackClass = callback.getClass();
+		event.promiseClass = promise.getClass();
+		event.callbackTime = callbackTime;
+		event.commit();
+	}
+
+	@Override
+	public long taskSubmitted(DeferredFutureTask<?, ?> task) {
+		if (TASK_SUBMITTED.isEnabled()) {
+			TaskSubmittedEvent event = new TaskSubmittedEvent();
+			event.taskClass = task.getTask().getClass();
+			event.commit();
+		}
+		return TASK_EXECUTION.isEnabled() ? System.nanoTime() : 0;
+	}
+
+	@Override
+	public long taskStarted(DeferredFutureTask<?, ?> task, long submitted) {
+		return TASK_EXECUTION.isEnabled() ? System.nanoTime() : 0;
+	}
+
+	@Override
+	public void taskFinished(DeferredFutureTask<?, ?> task, long submitted, long started) {
+		if (started == 0)
+			return;
+		TaskExecutionEvent event = new TaskExecutionEvent();
+		event.taskClass = task.getTask().getClass();
+		event.state = task.promise().state().name();
+		event.queueTime = submitted == 0 ? 0 : started - submitted;
+		event.executionTime = System.nanoTime() - started;
+		event.commit();
+	}
+}
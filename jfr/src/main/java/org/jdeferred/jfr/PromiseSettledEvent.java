@@ -0,0 +1,42 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A promise was resolved or rejected. Disabled by default, as there is one per promise.
+ *
+ * @author Ray Tsang
+ */
+@Name("org.jdeferred.PromiseSettled")
+@Label("Promise Settled")
+@Category("JDeferred")
+@Description("A promise was resolved or rejected")
+@Enabled(false)
+@StackTrace(false)
+public final class PromiseSettledEvent extends jdk.jfr.Event {
+	@Label("Promise Class")
+	Class<?> promiseClass;
+
+	@Label("State")
+	String state;
+}
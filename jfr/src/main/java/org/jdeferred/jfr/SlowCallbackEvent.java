@@ -0,0 +1,46 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A callback ran longer than the threshold of the {@link JfrInstrumentation}. The stack
+ * trace is the one of the thread that triggered it, e.g. the one resolving the promise.
+ *
+ * @author Ray Tsang
+ */
+@Name("org.jdeferred.SlowCallback")
+@Label("Slow Callback")
+@Category("JDeferred")
+@Description("A done, fail, progress or always callback ran longer than the threshold")
+@StackTrace(true)
+public final class SlowCallbackEvent extends jdk.jfr.Event {
+	@Label("Callback Class")
+	Class<?> callbackClass;
+
+	@Label("Promise Class")
+	Class<?> promiseClass;
+
+	@Label("Callback Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long callbackTime;
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A {@link org.jdeferred.DeferredFutureTask} finished running.
+ *
+ * @author Ray Tsang
+ */
+@Name("org.jdeferred.TaskExecution")
+@Label("Task Execution")
+@Category("JDeferred")
+@Description("A task ran, including the callbacks triggered by its promise")
+@StackTrace(false)
+public final class TaskExecutionEvent extends jdk.jfr.Event {
+	@Label("Task Class")
+	Class<?> taskClass;
+
+	@Label("Promise State")
+	String state;
+
+	@Label("Queue Time")
+	@Description("Time from submission until the task started, 0 if it was not submitted by a manager")
+	@Timespan(Timespan.NANOSECONDS)
+	long queueTime;
+
+	@Label("Execution Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long executionTime;
+}
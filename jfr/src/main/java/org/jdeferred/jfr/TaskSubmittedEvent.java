@@ -0,0 +1,40 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A {@link org.jdeferred.DeferredFutureTask} was submitted by a
+ * {@link org.jdeferred.DeferredManager}. Disabled by default.
+ *
+ * @author Ray Tsang
+ */
+@Name("org.jdeferred.TaskSubmitted")
+@Label("Task Submitted")
+@Category("JDeferred")
+@Description("A task was submitted for execution")
+@Enabled(false)
+@StackTrace(true)
+public final class TaskSubmittedEvent extends jdk.jfr.Event {
+	@Label("Task Class")
+	Class<?> taskClass;
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.jfr;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.jdeferred.DoneCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DefaultDeferredManager;
+import org.jdeferred.impl.Instrumentation;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JfrInstrumentationTest {
+	private final DefaultDeferredManager deferredManager = new DefaultDeferredManager();
+	
+	@After
+	public void tearDown() {
+		Instrumentation.set(null);
+		deferredManager.shutdownNow();
+	}
+	
+	@Test
+	public void testEvents() throws Exception {
+		Instrumentation.set(new JfrInstrumentation(10, TimeUnit.MILLISECONDS));
+		Path file = Files.createTempFile("jdeferred", ".jfr");
+		Recording recording = new Recording();
+		try {
+			recording.enable(TaskSubmittedEvent.class);
+			recording.enable(TaskExecutionEvent.class);
+			recording.enable(PromiseSettledEvent.class);
+			recording.enable(SlowCallbackEvent.class);
+			recording.start();
+			
+			// the slow callback must be registered before the task completes, to run on its thread
+			final CountDownLatch registered = new CountDownLatch(1);
+			Callable<Integer> task = new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					registered.await();
+					return 1;
+				}
+			};
+			Promise<Integer, Throwable, Void> promise = deferredManager.when(task);
+			promise.done(new DoneCallback<Integer>() {
+				@Override
+				public void onDone(Integer result) {
+					try {
+						Thread.sleep(20);
+					} catch (InterruptedException e) {
+					}
+				}
+			});
+			registered.countDown();
+			deferredManager.shutdown();
+			deferredManager.awaitTermination(10, TimeUnit.SECONDS);
+			
+			recording.stop();
+			recording.dump(file);
+			
+			Map<String, RecordedEvent> events = new HashMap<String, RecordedEvent>();
+			for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+				if (event.getEventType().getName().startsWith("org.jdeferred."))
+					events.put(event.getEventType().getName(), event);
+			}
+			Assert.assertEquals(task.getClass().getName(), events.get("org.jdeferred.TaskSubmitted").getClass("taskClass").getName());
+			Assert.assertEquals(task.getClass().getName(), events.get("org.jdeferred.TaskExecution").getClass("taskClass").getName());
+			Assert.assertTrue(events.containsKey("org.jdeferred.PromiseSettled"));
+			Assert.assertEquals("RESOLVED", events.get("org.jdeferred.TaskExecution").getString("state"));
+			Assert.assertTrue(events.get("org.jdeferred.TaskExecution").getDuration("executionTime").toMillis() >= 20);
+			Assert.assertTrue(events.get("org.jdeferred.SlowCallback").getDuration("callbackTime").toMillis() >= 20);
+		} finally {
+			recording.close();
+			Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.loadsim;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response time of a {@link StubBackend}. Parsed from the command line as
+ * <code>kind:args</code>, in milliseconds:
+ *
+ * <ul>
+ * <li><code>const:5</code> always 5ms</li>
+ * <li><code>exp:5</code> exponential with a mean of 5ms</li>
+ * <li><code>lognormal:5:50</code> log-normal with a median of 5ms and a p99 of 50ms</li>
+ * <li><code>bimodal:2:200:0.01</code> 2ms, except for 1% of the calls which take 200ms</li>
+ * </ul>
+ *
+ * @author Ray Tsang
+ */
+public abstract class LatencyDistribution {
+	/* standard normal quantile of 0.99 */
+	private static final double Z99 = 2.326;
+
+	private final String spec;
+
+	protected LatencyDistribution(String spec) {
+		this.spec = spec;
+	}
+
+	/**
+	 * @param random
+	 * @return the next latency, in nanoseconds
+	 */
+	public abstract long nextNanos(Random random);
+
+	public static LatencyDistribution parse(String spec) {
+		String[] parts = spec.split(":");
+		try {
+			if ("const".equals(parts[0]) && parts.length == 2)
+				return constant(spec, nanos(parts[1]));
+			if ("exp".equals(parts[0]) && parts.length == 2)
+				return exponential(spec, nanos(parts[1]));
+			if ("lognormal".equals(parts[0]) && parts.length == 3)
+				return logNormal(spec, nanos(parts[1]), nanos(parts[2]));
+			if ("bimodal".equals(parts[0]) && parts.length == 4)
+				return bimodal(spec, nanos(parts[1]), nanos(parts[2]), Double.parseDouble(parts[3]));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid latency distribution: " + spec, e);
+		}
+		throw new IllegalArgumentException("Invalid latency distribution: " + spec);
+	}
+
+	private static LatencyDistribution constant(String spec, final long nanos) {
+		return new LatencyDistribution(spec) {
+			@Override
+			public long nextNanos(Random random) {
+				return nanos;
+			}
+		};
+	}
+
+	private static LatencyDistribution exponential(String spec, final long meanNanos) {
+		return new LatencyDistribution(spec) {
+			@Override
+			public long nextNanos(Random random) {
+				return (long) (-Math.log(1 - random.nextDouble()) * meanNanos);
+			}
+		};
+	}
+
+	private static LatencyDistribution logNormal(String spec, final long medianNanos, long p99Nanos) {
+		if (p99Nanos < medianNanos)
+			throw new IllegalArgumentException("p99 must not be below the median: " + spec);
+		final double sigma = Math.log((double) p99Nanos / medianNanos) / Z99;
+		return new LatencyDistribution(spec) {
+			@Override
+			public long nextNanos(Random random) {
+				return (long) (medianNanos * Math.exp(sigma * random.nextGaussian()));
+			}
+		};
+	}
+
+	private static LatencyDistribution bimodal(String spec, final long fastNanos, final long slowNanos, final double slowRatio) {
+		if (slowRatio < 0 || slowRatio > 1)
+			throw new IllegalArgumentException("Ratio of slow calls must be between 0 and 1: " + spec);
+		return new LatencyDistribution(spec) {
+			@Override
+			public long nextNanos(Random random) {
+				return random.nextDouble() < slowRatio ? slowNanos : fastNanos;
+			}
+		};
+	}
+
+	private static long nanos(String millis) {
+		double value = Double.parseDouble(millis);
+		if (value < 0)
+			throw new NumberFormatException("Negative latency " + millis);
+		return (long) (value * TimeUnit.MILLISECONDS.toNanos(1));
+	}
+
+	@Override
+	public String toString() {
+		return spec;
+	}
+}
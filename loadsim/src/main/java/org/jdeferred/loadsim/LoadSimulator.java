@@ -0,0 +1,250 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.loadsim;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.Deadline;
+import org.jdeferred.DeadlineExceededException;
+import org.jdeferred.DeferredManager;
+import org.jdeferred.DoneFilter;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.CircuitBreakerDeferredManager;
+import org.jdeferred.impl.DefaultDeferredManager;
+import org.jdeferred.impl.HedgingDeferredManager;
+import org.jdeferred.multiple.MasterProgress;
+import org.jdeferred.multiple.MultipleResults;
+import org.jdeferred.multiple.OneReject;
+import org.jdeferred.multiple.OneResult;
+
+/**
+ * Drives a {@link Scenario} against several {@link DeferredManager} implementations in
+ * turn and prints throughput and latency percentiles for each.
+ *
+ * <pre>
+ * <code>
+ * java -jar loadsim/target/loadsim.jar \
+ *   --rate 2000 --fan-out 4 --filters 3 --timeout 100 \
+ *   --backend lognormal:5:40 --backend bimodal:2:150:0.01 \
+ *   --managers cached,fixed,hedging
+ * </code>
+ * </pre>
+ *
+ * Options: <code>--rate</code> requests per second, <code>--duration</code> and
+ * <code>--warmup</code> in seconds, <code>--fan-out</code>, <code>--filters</code>,
+ * <code>--timeout</code> in milliseconds, <code>--threads</code> of the fixed pools,
+ * <code>--max-in-flight</code>, <code>--failure-rate</code> of the backends declared
+ * after it, <code>--backend</code> as in {@link LatencyDistribution}, and
+ * <code>--managers</code> among <code>cached</code>, <code>fixed</code>,
+ * <code>hedging</code> and <code>circuit-breaker</code>.
+ *
+ * @author Ray Tsang
+ */
+public class LoadSimulator {
+	private static final List<String> MANAGERS = Arrays.asList("cached", "fixed", "hedging", "circuit-breaker");
+
+	/* combines the results of the backends, like a service assembling a response */
+	private static final DoneFilter<MultipleResults, Integer> COMBINE = new DoneFilter<MultipleResults, Integer>() {
+		@Override
+		public Integer filterDone(MultipleResults results) {
+			int combined = 0;
+			for (OneResult result : results) {
+				combined = combined * 31 + (Integer) result.getResult();
+			}
+			return combined;
+		}
+	};
+
+	/* a cheap transformation per stage, so that the filter chain itself is what is measured */
+	private static final DoneFilter<Integer, Integer> STAGE = new DoneFilter<Integer, Integer>() {
+		@Override
+		public Integer filterDone(Integer result) {
+			int h = result * 0x45d9f3b;
+			return h ^ (h >>> 16);
+		}
+	};
+
+	private final Scenario scenario;
+
+	public LoadSimulator(Scenario scenario) {
+		if (scenario.getBackends().isEmpty())
+			throw new IllegalArgumentException("At least one backend is needed");
+		this.scenario = scenario;
+	}
+
+	/**
+	 * Runs the warmup, then the measured part of the scenario, and waits for the
+	 * pending requests to complete.
+	 *
+	 * @param name
+	 * @param deferredManager
+	 * @return the measurements after the warmup
+	 * @throws InterruptedException
+	 */
+	public Report run(String name, DeferredManager deferredManager) throws InterruptedException {
+		Report report = new Report(name);
+		Semaphore inFlight = new Semaphore(scenario.getMaxInFlight());
+		drive(deferredManager, report, inFlight, scenario.getWarmupNanos());
+		report.reset();
+
+		long start = System.nanoTime();
+		drive(deferredManager, report, inFlight, scenario.getDurationNanos());
+		report.setElapsedNanos(System.nanoTime() - start);
+		return report;
+	}
+
+	private void drive(DeferredManager deferredManager, Report report, Semaphore inFlight, long durationNanos) throws InterruptedException {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		double meanIntervalNanos = TimeUnit.SECONDS.toNanos(1) / scenario.getRate();
+		long start = System.nanoTime();
+		long end = start + durationNanos;
+		long due = start;
+		for (int request = 0;; request++) {
+			// Poisson arrivals
+			due += (long) (-Math.log(1 - random.nextDouble()) * meanIntervalNanos);
+			if (due >= end)
+				break;
+			for (long wait; (wait = due - System.nanoTime()) > 0;) {
+				LockSupport.parkNanos(wait);
+			}
+
+			if (inFlight.tryAcquire())
+				issue(deferredManager, request, due, report, inFlight);
+			else
+				report.dropped();
+		}
+
+		int permits = scenario.getMaxInFlight();
+		inFlight.acquire(permits);
+		inFlight.release(permits);
+	}
+
+	@SuppressWarnings("rawtypes")
+	private void issue(DeferredManager deferredManager, int request, final long due, final Report report, final Semaphore inFlight) {
+		Deadline previous = null;
+		if (scenario.getTimeoutNanos() > 0)
+			previous = Deadline.after(scenario.getTimeoutNanos(), TimeUnit.NANOSECONDS).attach();
+		try {
+			List<StubBackend> backends = scenario.getBackends();
+			Promise[] calls = new Promise[scenario.getFanOut()];
+			for (int i = 0; i < calls.length; i++) {
+				calls[i] = deferredManager.when(backends.get((request + i) % backends.size()).call(request));
+			}
+
+			Promise<Integer, OneReject, MasterProgress> response = deferredManager.whenWithoutProgress(calls).then(COMBINE);
+			for (int i = 0; i < scenario.getFilterDepth(); i++) {
+				response = response.then(STAGE);
+			}
+
+			response.always(new AlwaysCallback<Integer, OneReject>() {
+				@Override
+				public void onAlways(Promise.State state, Integer resolved, OneReject rejected) {
+					long latency = System.nanoTime() - due;
+					if (state == Promise.State.RESOLVED)
+						report.succeeded(latency);
+					else
+						report.failed(latency, isTimeout(rejected));
+					inFlight.release();
+				}
+			});
+		} finally {
+			if (scenario.getTimeoutNanos() > 0)
+				Deadline.restore(previous);
+		}
+	}
+
+	private static boolean isTimeout(OneReject rejected) {
+		return rejected.getReject() instanceof DeadlineExceededException;
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		Scenario scenario = new Scenario();
+		List<String> managers = MANAGERS;
+		double failureRate = 0;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String option = args[i];
+				if (i + 1 == args.length)
+					throw new IllegalArgumentException("Missing value of " + option);
+				String value = args[++i];
+				if ("--rate".equals(option))
+					scenario.setRate(Double.parseDouble(value));
+				else if ("--duration".equals(option))
+					scenario.setDuration(Long.parseLong(value), TimeUnit.SECONDS);
+				else if ("--warmup".equals(option))
+					scenario.setWarmup(Long.parseLong(value), TimeUnit.SECONDS);
+				else if ("--fan-out".equals(option))
+					scenario.setFanOut(Integer.parseInt(value));
+				else if ("--filters".equals(option))
+					scenario.setFilterDepth(Integer.parseInt(value));
+				else if ("--timeout".equals(option))
+					scenario.setTimeout(Long.parseLong(value), TimeUnit.MILLISECONDS);
+				else if ("--threads".equals(option))
+					scenario.setThreads(Integer.parseInt(value));
+				else if ("--max-in-flight".equals(option))
+					scenario.setMaxInFlight(Integer.parseInt(value));
+				else if ("--failure-rate".equals(option))
+					failureRate = Double.parseDouble(value);
+				else if ("--backend".equals(option))
+					scenario.addBackend(new StubBackend("backend" + scenario.getBackends().size(), LatencyDistribution.parse(value), failureRate));
+				else if ("--managers".equals(option))
+					managers = Arrays.asList(value.split(","));
+				else
+					throw new IllegalArgumentException("Unknown option " + option);
+			}
+			if (scenario.getBackends().isEmpty())
+				scenario.addBackend(new StubBackend("backend0", LatencyDistribution.parse("lognormal:5:50"), failureRate));
+			if (!MANAGERS.containsAll(managers))
+				throw new IllegalArgumentException("Unknown manager in " + managers + ", expected " + MANAGERS);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+
+		System.out.println(scenario);
+		System.out.print(Report.header());
+		LoadSimulator simulator = new LoadSimulator(scenario);
+		for (String name : managers) {
+			DefaultDeferredManager base = "fixed".equals(name)
+					? new DefaultDeferredManager(Executors.newFixedThreadPool(scenario.getThreads()))
+					: new DefaultDeferredManager();
+			DeferredManager deferredManager = decorate(name, base);
+			try {
+				System.out.print(simulator.run(name, deferredManager));
+			} finally {
+				if (deferredManager instanceof HedgingDeferredManager)
+					((HedgingDeferredManager) deferredManager).shutdown();
+				base.shutdownNow();
+			}
+		}
+	}
+
+	private static DeferredManager decorate(String name, DefaultDeferredManager base) {
+		if ("hedging".equals(name))
+			return new HedgingDeferredManager(base);
+		if ("circuit-breaker".equals(name))
+			return new CircuitBreakerDeferredManager(base);
+		return base;
+	}
+}
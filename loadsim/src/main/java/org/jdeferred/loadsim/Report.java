@@ -0,0 +1,125 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.loadsim;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jdeferred.impl.LatencyHistogram;
+
+/**
+ * Outcome of one {@link LoadSimulator} run. Latencies are measured from the time a
+ * request was due to arrive, so a stalled driver shows up as latency instead of
+ * silently lowering the load, and include failed and timed out requests. Percentiles
+ * are accurate to about 6%, see {@link LatencyHistogram}.
+ *
+ * @author Ray Tsang
+ */
+public class Report {
+	private static final String FORMAT = "%-16s %9s %9s %9s %9s %10s %9s %9s %9s%n";
+
+	private final String name;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final AtomicLong succeeded = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong timedOut = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private long elapsedNanos;
+
+	public Report(String name) {
+		this.name = name;
+	}
+
+	void succeeded(long latencyNanos) {
+		succeeded.incrementAndGet();
+		latency.record(latencyNanos);
+	}
+
+	void failed(long latencyNanos, boolean timeout) {
+		(timeout ? timedOut : failed).incrementAndGet();
+		latency.record(latencyNanos);
+	}
+
+	void dropped() {
+		dropped.incrementAndGet();
+	}
+
+	void reset() {
+		latency.reset();
+		succeeded.set(0);
+		failed.set(0);
+		timedOut.set(0);
+		dropped.set(0);
+	}
+
+	void setElapsedNanos(long elapsedNanos) {
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getSucceeded() {
+		return succeeded.get();
+	}
+
+	public long getFailed() {
+		return failed.get();
+	}
+
+	public long getTimedOut() {
+		return timedOut.get();
+	}
+
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return requests completed per second, successfully or not
+	 */
+	public double getThroughput() {
+		if (elapsedNanos == 0)
+			return 0;
+		return (getSucceeded() + getFailed() + getTimedOut()) * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+	}
+
+	/**
+	 * @param percentile between 0 and 1
+	 * @return latency in nanoseconds, <code>-1</code> if no request completed
+	 */
+	public long getLatency(double percentile) {
+		return latency.getValueAtPercentile(percentile);
+	}
+
+	public static String header() {
+		return String.format(FORMAT, "manager", "ok", "failed", "timeout", "dropped", "req/s", "p50 ms", "p99 ms", "p999 ms");
+	}
+
+	@Override
+	public String toString() {
+		return String.format(FORMAT, name, getSucceeded(), getFailed(), getTimedOut(), getDropped(),
+				String.format("%.1f", getThroughput()),
+				millis(getLatency(0.5)), millis(getLatency(0.99)), millis(getLatency(0.999)));
+	}
+
+	private static String millis(long nanos) {
+		if (nanos < 0)
+			return "-";
+		return String.format("%.2f", nanos / 1e6);
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.loadsim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shape of the simulated traffic. Every request calls {@link #getFanOut()} backends,
+ * waits for all of them, combines the results and passes them through
+ * {@link #getFilterDepth()} filters, all within {@link #getTimeoutNanos()}.
+ * Requests arrive at random intervals averaging {@link #getRate()} per second.
+ *
+ * @author Ray Tsang
+ */
+public class Scenario {
+	private final List<StubBackend> backends = new ArrayList<StubBackend>();
+	private double rate = 1000;
+	private long durationNanos = TimeUnit.SECONDS.toNanos(20);
+	private long warmupNanos = TimeUnit.SECONDS.toNanos(5);
+	private int fanOut = 3;
+	private int filterDepth = 3;
+	private long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(200);
+	private int maxInFlight = 10000;
+	private int threads = 200;
+
+	public List<StubBackend> getBackends() {
+		return backends;
+	}
+
+	/**
+	 * Backends are assigned round-robin to the calls of a request.
+	 *
+	 * @param backend
+	 */
+	public void addBackend(StubBackend backend) {
+		backends.add(backend);
+	}
+
+	public double getRate() {
+		return rate;
+	}
+
+	/**
+	 * @param rate average number of requests per second
+	 */
+	public void setRate(double rate) {
+		if (rate <= 0)
+			throw new IllegalArgumentException("Rate must be positive");
+		this.rate = rate;
+	}
+
+	public long getDurationNanos() {
+		return durationNanos;
+	}
+
+	public void setDuration(long duration, TimeUnit unit) {
+		if (duration <= 0)
+			throw new IllegalArgumentException("Duration must be positive");
+		this.durationNanos = unit.toNanos(duration);
+	}
+
+	public long getWarmupNanos() {
+		return warmupNanos;
+	}
+
+	public void setWarmup(long duration, TimeUnit unit) {
+		if (duration < 0)
+			throw new IllegalArgumentException("Warmup must not be negative");
+		this.warmupNanos = unit.toNanos(duration);
+	}
+
+	public int getFanOut() {
+		return fanOut;
+	}
+
+	public void setFanOut(int fanOut) {
+		if (fanOut <= 0)
+			throw new IllegalArgumentException("Fan-out must be positive");
+		this.fanOut = fanOut;
+	}
+
+	public int getFilterDepth() {
+		return filterDepth;
+	}
+
+	public void setFilterDepth(int filterDepth) {
+		if (filterDepth < 0)
+			throw new IllegalArgumentException("Filter depth must not be negative");
+		this.filterDepth = filterDepth;
+	}
+
+	public long getTimeoutNanos() {
+		return timeoutNanos;
+	}
+
+	/**
+	 * @param timeout per request, <code>0</code> for none
+	 * @param unit
+	 */
+	public void setTimeout(long timeout, TimeUnit unit) {
+		if (timeout < 0)
+			throw new IllegalArgumentException("Timeout must not be negative");
+		this.timeoutNanos = unit.toNanos(timeout);
+	}
+
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * @param maxInFlight requests arriving while that many are pending are dropped
+	 */
+	public void setMaxInFlight(int maxInFlight) {
+		if (maxInFlight <= 0)
+			throw new IllegalArgumentException("Maximum number of requests in flight must be positive");
+		this.maxInFlight = maxInFlight;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @param threads size of the fixed thread pools
+	 */
+	public void setThreads(int threads) {
+		if (threads <= 0)
+			throw new IllegalArgumentException("Number of threads must be positive");
+		this.threads = threads;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("rate=%.0f/s fanOut=%d filters=%d timeout=%dms backends=%s",
+				rate, fanOut, filterDepth, TimeUnit.NANOSECONDS.toMillis(timeoutNanos), backends);
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.loadsim;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A remote service simulated by a blocking call: the calling thread is parked for a
+ * latency drawn from a {@link LatencyDistribution}, and the call fails with the given
+ * probability. Blocking is what a synchronous client would do on a pool thread.
+ *
+ * @author Ray Tsang
+ */
+public class StubBackend {
+	private final String name;
+	private final LatencyDistribution latency;
+	private final double failureRate;
+
+	public StubBackend(String name, LatencyDistribution latency, double failureRate) {
+		if (failureRate < 0 || failureRate > 1)
+			throw new IllegalArgumentException("Failure rate must be between 0 and 1");
+		this.name = name;
+		this.latency = latency;
+		this.failureRate = failureRate;
+	}
+
+	/**
+	 * @param request
+	 * @return a call of this backend for the given request, to be run by a DeferredManager
+	 */
+	public Callable<Integer> call(final int request) {
+		return new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				long deadline = System.nanoTime() + latency.nextNanos(random);
+				for (long remaining; (remaining = deadline - System.nanoTime()) > 0;) {
+					LockSupport.parkNanos(remaining);
+					if (Thread.interrupted())
+						throw new InterruptedException();
+				}
+				if (random.nextDouble() < failureRate)
+					throw new BackendException(name);
+				return request * 31 + name.hashCode();
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return name + "(" + latency + ")";
+	}
+
+	static class BackendException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		BackendException(String name) {
+			super(name + " failed", null, false, false);
+		}
+	}
+}
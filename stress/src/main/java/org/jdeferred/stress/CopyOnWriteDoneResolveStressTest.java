@@ -0,0 +1,68 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.stress;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.ProgressCallback;
+import org.jdeferred.impl.AbstractDeferredObject;
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.Description;
+import org.openjdk.jcstress.annotations.Expect;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+/**
+ * Same as {@link DoneResolveStressTest}, with copy-on-write callback lists.
+ *
+ * @author Ray Tsang
+ */
+@JCStressTest
+@Description("done() racing resolve(), copy-on-write lists")
+@Outcome(id = "1, 42", expect = Expect.ACCEPTABLE, desc = "Callback ran once with the value")
+@Outcome(id = "0, .*", expect = Expect.FORBIDDEN, desc = "Callback lost")
+@Outcome(id = "2, .*", expect = Expect.FORBIDDEN, desc = "Callback ran twice")
+@Outcome(expect = Expect.FORBIDDEN, desc = "Callback saw a stale value")
+@State
+public class CopyOnWriteDoneResolveStressTest {
+	private final AbstractDeferredObject<Integer, Void, Void> deferred = new AbstractDeferredObject<Integer, Void, Void>(null, true,
+			new CopyOnWriteArrayList<DoneCallback<Integer>>(), new CopyOnWriteArrayList<FailCallback<Void>>(),
+			new CopyOnWriteArrayList<ProgressCallback<Void>>(), new CopyOnWriteArrayList<AlwaysCallback<Integer, Void>>()) {
+	};
+	private final DoneResolveStressTest.Callback callback = new DoneResolveStressTest.Callback();
+
+	@Actor
+	public void register() {
+		deferred.done(callback);
+	}
+
+	@Actor
+	public void resolve() {
+		deferred.resolve(42);
+	}
+
+	@Arbiter
+	public void arbiter(II_Result r) {
+		r.r1 = callback.calls;
+		r.r2 = callback.value;
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.stress;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdeferred.DoneCallback;
+import org.jdeferred.impl.DeferredObject;
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.Description;
+import org.openjdk.jcstress.annotations.Expect;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+/**
+ * Two callbacks registered one after the other while another thread resolves. Callbacks
+ * registered before resolve() run in registration order; a callback registered afterwards
+ * runs right away on the registering thread, so it may overtake one that resolve() has not
+ * reached yet.
+ *
+ * @author Ray Tsang
+ */
+@JCStressTest
+@Description("done(), done() racing resolve()")
+@Outcome(id = "0, 1", expect = Expect.ACCEPTABLE, desc = "Registration order")
+@Outcome(id = "1, 0", expect = Expect.ACCEPTABLE_INTERESTING, desc = "Second callback registered after resolve(), ran before resolve() got to the first")
+@Outcome(expect = Expect.FORBIDDEN, desc = "A callback was lost or ran twice")
+@State
+public class OrderingStressTest {
+	private final DeferredObject<Integer, Void, Void> deferred = new DeferredObject<Integer, Void, Void>();
+	private final AtomicInteger sequence = new AtomicInteger();
+	private final Callback first = new Callback();
+	private final Callback second = new Callback();
+
+	@Actor
+	public void register() {
+		deferred.done(first);
+		deferred.done(second);
+	}
+
+	@Actor
+	public void resolve() {
+		deferred.resolve(42);
+	}
+
+	@Arbiter
+	public void arbiter(II_Result r) {
+		r.r1 = first.order;
+		r.r2 = second.order;
+	}
+
+	class Callback implements DoneCallback<Integer> {
+		int order = -1;
+
+		@Override
+		public void onDone(Integer result) {
+			order = order == -1 ? sequence.getAndIncrement() : -2;
+		}
+	}
+}
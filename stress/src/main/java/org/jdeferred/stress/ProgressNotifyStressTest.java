@@ -0,0 +1,82 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.stress;
+
+import org.jdeferred.ProgressCallback;
+import org.jdeferred.impl.DeferredObject;
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.Description;
+import org.openjdk.jcstress.annotations.Expect;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.III_Result;
+
+/**
+ * Progress callbacks registered while another thread notifies. Each callback receives
+ * a suffix of the notifications, in order and once, the callback registered first at
+ * least as many as the second, and notify() never fails. The notifications a callback
+ * received are encoded as digits, 12 for [1, 2].
+ *
+ * @author Ray Tsang
+ */
+@JCStressTest
+@Description("progress(), progress() racing notify(), notify()")
+@Outcome(id = { "0, 0, 0", "2, 0, 0", "12, 0, 0" }, expect = Expect.ACCEPTABLE, desc = "Second registered after the last notification")
+@Outcome(id = { "2, 2, 0", "12, 2, 0" }, expect = Expect.ACCEPTABLE, desc = "Second registered between the notifications")
+@Outcome(id = "12, 12, 0", expect = Expect.ACCEPTABLE, desc = "Both registered before the first notification")
+@Outcome(expect = Expect.FORBIDDEN, desc = "Out of order, duplicated, missed by the first callback, or notify() failed")
+@State
+public class ProgressNotifyStressTest {
+	private final DeferredObject<Void, Void, Integer> deferred = new DeferredObject<Void, Void, Integer>();
+	private final Callback first = new Callback();
+	private final Callback second = new Callback();
+	private int failures;
+
+	@Actor
+	public void register() {
+		deferred.progress(first);
+		deferred.progress(second);
+	}
+
+	@Actor
+	public void notifyProgress() {
+		try {
+			deferred.notify(1);
+			deferred.notify(2);
+		} catch (RuntimeException e) {
+			failures++;
+		}
+	}
+
+	@Arbiter
+	public void arbiter(III_Result r) {
+		r.r1 = first.received;
+		r.r2 = second.received;
+		r.r3 = failures;
+	}
+
+	static class Callback implements ProgressCallback<Integer> {
+		/* the notifications received, one digit each */
+		private int received;
+
+		@Override
+		public void onProgress(Integer progress) {
+			received = received * 10 + progress;
+		}
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.stress;
+
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.Promise.State;
+import org.jdeferred.impl.DeferredObject;
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.Description;
+import org.openjdk.jcstress.annotations.Expect;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.infra.results.IIII_Result;
+
+/**
+ * Only one of a racing resolve() and reject() wins, the other one fails, and an
+ * {@link AlwaysCallback} registered meanwhile sees the winner exactly once.
+ *
+ * @author Ray Tsang
+ */
+@JCStressTest
+@Description("resolve() racing reject() and always()")
+@Outcome(id = "1, 1, 1, 1", expect = Expect.ACCEPTABLE, desc = "Resolved")
+@Outcome(id = "1, 1, 2, 2", expect = Expect.ACCEPTABLE, desc = "Rejected")
+@Outcome(expect = Expect.FORBIDDEN, desc = "Both or none settled, or the callback disagrees with the state")
+@org.openjdk.jcstress.annotations.State
+public class ResolveRejectStressTest {
+	private final DeferredObject<Integer, Integer, Void> deferred = new DeferredObject<Integer, Integer, Void>();
+	private int calls;
+	private int seen;
+	private int failures;
+
+	@Actor
+	public void resolve() {
+		try {
+			deferred.resolve(1);
+		} catch (IllegalStateException e) {
+			failures++;
+		}
+	}
+
+	@Actor
+	public void reject() {
+		try {
+			deferred.reject(2);
+		} catch (IllegalStateException e) {
+			failures++;
+		}
+	}
+
+	@Actor
+	public void register() {
+		deferred.always(new AlwaysCallback<Integer, Integer>() {
+			@Override
+			public void onAlways(State state, Integer resolved, Integer rejected) {
+				calls++;
+				seen = state == State.RESOLVED ? resolved : rejected;
+			}
+		});
+	}
+
+	@Arbiter
+	public void arbiter(IIII_Result r) {
+		r.r1 = calls;
+		r.r2 = failures;
+		r.r3 = seen;
+		r.r4 = deferred.isResolved() ? 1 : deferred.isRejected() ? 2 : 0;
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2013 Ray Tsang
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jdeferred.stress;
+
+import org.jdeferred.DoneCallback;
+import org.jdeferred.impl.DeferredObject;
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Description;
+import org.openjdk.jcstress.annotations.Expect;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+/**
+ * The result is published safely: a callback running on either thread sees the fields
+ * written before resolve(), even though they are neither final nor volatile. The
+ * callback records on which thread it ran.
+ *
+ * @author Ray Tsang
+ */
+@JCStressTest
+@Description("Visibility of a mutable result")
+@Outcome(id = "42, 1", expect = Expect.ACCEPTABLE, desc = "Ran on the registering thread")
+@Outcome(id = "42, 2", expect = Expect.ACCEPTABLE, desc = "Ran on the resolving thread")
+@Outcome(expect = Expect.FORBIDDEN, desc = "Stale result")
+@State
+public class ResultVisibilityStressTest {
+	private final DeferredObject<Result, Void, Void> deferred = new DeferredObject<Result, Void, Void>();
+
+	@Actor
+	public void resolve() {
+		Result result = new Result();
+		result.value = 42;
+		deferred.resolve(result);
+	}
+
+	@Actor
+	public void register(final II_Result r) {
+		final Thread registering = Thread.currentThread();
+		deferred.done(new DoneCallback<Result>() {
+			@Override
+			public void onDone(Result result) {
+				r.r1 = result.value;
+				r.r2 = Thread.currentThread() == registering ? 1 : 2;
+			}
+		});
+	}
+
+	static class Result {
+		int value;
+	}
+}